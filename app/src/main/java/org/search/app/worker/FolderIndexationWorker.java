@@ -1,6 +1,7 @@
 package org.search.app.worker;
 
 import org.search.engine.SearchEngine;
+import org.search.engine.index.IndexJob;
 import org.search.engine.index.IndexationEventListener;
 
 import javax.swing.*;
@@ -28,7 +29,11 @@ public class FolderIndexationWorker extends SwingWorker<Void, Integer> implement
 
     @Override
     protected Void doInBackground() {
-        searchEngine.indexFolder(folderPath, this);
+        IndexJob job = searchEngine.indexFolder(folderPath, this);
+        if (job != null) {
+            // Canceled job is completed exceptionally, listener is notified anyway
+            job.getCompletion().handle((it, ex) -> it).join();
+        }
         return null;
     }
 
@@ -0,0 +1,144 @@
+package org.search.engine;
+
+/**
+ * Immutable settings of the thread pools of one search engine. Instance should be created
+ * by the {@link Builder}, not specified settings have default values.
+ */
+public class ExecutorConfiguration {
+
+    public static final int DEFAULT_INDEXING_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 3);
+    public static final int DEFAULT_INDEXING_QUEUE_CAPACITY = Integer.MAX_VALUE;
+    public static final int DEFAULT_SCHEDULER_THREADS = 2;
+    public static final int DEFAULT_WALKER_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    public static final String DEFAULT_THREAD_NAME_PREFIX = "search-engine";
+    public static final ExecutorConfiguration DEFAULT = builder().build();
+
+    // Threads which read, update and remove documents
+    private final int indexingThreads;
+    // Submitting of indexing task waits while this count of tasks is waiting in the queue
+    private final int indexingQueueCapacity;
+    // Threads of the scheduled jobs, one of them is held by the filesystem watcher
+    private final int schedulerThreads;
+    // Threads which walk indexed folders
+    private final int walkerParallelism;
+    private final String threadNamePrefix;
+    // Daemon threads don't prevent application from exit
+    private final boolean daemon;
+
+    private ExecutorConfiguration(Builder builder) {
+        this.indexingThreads = builder.indexingThreads;
+        this.indexingQueueCapacity = builder.indexingQueueCapacity;
+        this.schedulerThreads = builder.schedulerThreads;
+        this.walkerParallelism = builder.walkerParallelism;
+        this.threadNamePrefix = builder.threadNamePrefix;
+        this.daemon = builder.daemon;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getIndexingThreads() {
+        return indexingThreads;
+    }
+
+    public int getIndexingQueueCapacity() {
+        return indexingQueueCapacity;
+    }
+
+    public int getSchedulerThreads() {
+        return schedulerThreads;
+    }
+
+    public int getWalkerParallelism() {
+        return walkerParallelism;
+    }
+
+    public String getThreadNamePrefix() {
+        return threadNamePrefix;
+    }
+
+    public boolean isDaemon() {
+        return daemon;
+    }
+
+    public static class Builder {
+
+        private int indexingThreads = DEFAULT_INDEXING_THREADS;
+        private int indexingQueueCapacity = DEFAULT_INDEXING_QUEUE_CAPACITY;
+        private int schedulerThreads = DEFAULT_SCHEDULER_THREADS;
+        private int walkerParallelism = DEFAULT_WALKER_PARALLELISM;
+        private String threadNamePrefix = DEFAULT_THREAD_NAME_PREFIX;
+        private boolean daemon;
+
+        private Builder() {
+        }
+
+        /**
+         * @param indexingThreads The count of threads which read, update and remove documents
+         */
+        public Builder indexingThreads(int indexingThreads) {
+            if (indexingThreads <= 0) {
+                throw new IllegalArgumentException("Indexing threads must be positive");
+            }
+            this.indexingThreads = indexingThreads;
+            return this;
+        }
+
+        /**
+         * @param indexingQueueCapacity The count of waiting indexing tasks after which submitting waits
+         */
+        public Builder indexingQueueCapacity(int indexingQueueCapacity) {
+            if (indexingQueueCapacity <= 0) {
+                throw new IllegalArgumentException("Indexing queue capacity must be positive");
+            }
+            this.indexingQueueCapacity = indexingQueueCapacity;
+            return this;
+        }
+
+        /**
+         * @param schedulerThreads The count of threads of scheduled jobs, filesystem watcher holds one of them
+         */
+        public Builder schedulerThreads(int schedulerThreads) {
+            if (schedulerThreads < 2) {
+                throw new IllegalArgumentException("Scheduler threads must be at least two");
+            }
+            this.schedulerThreads = schedulerThreads;
+            return this;
+        }
+
+        /**
+         * @param walkerParallelism The count of threads which walk indexed folders
+         */
+        public Builder walkerParallelism(int walkerParallelism) {
+            if (walkerParallelism <= 0) {
+                throw new IllegalArgumentException("Walker parallelism must be positive");
+            }
+            this.walkerParallelism = walkerParallelism;
+            return this;
+        }
+
+        /**
+         * @param threadNamePrefix The prefix of names of all engine threads
+         */
+        public Builder threadNamePrefix(String threadNamePrefix) {
+            if (threadNamePrefix == null || threadNamePrefix.isEmpty()) {
+                throw new IllegalArgumentException("Thread name prefix must not be empty");
+            }
+            this.threadNamePrefix = threadNamePrefix;
+            return this;
+        }
+
+        /**
+         * @param daemon Identify if engine threads should not prevent application from exit
+         */
+        public Builder daemon(boolean daemon) {
+            this.daemon = daemon;
+            return this;
+        }
+
+        public ExecutorConfiguration build() {
+            return new ExecutorConfiguration(this);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.search.engine;
+
+/**
+ * Snapshot of the thread pool state. Latency of tasks is known only for the indexing pools,
+ * for other pools it's negative.
+ */
+public class ExecutorMetrics {
+
+    private final String name;
+    private final int poolSize;
+    private final int activeCount;
+    private final long queueDepth;
+    private final long completedTasks;
+    private final double averageWaitMillis;
+    private final double averageRunMillis;
+
+    public ExecutorMetrics(String name, int poolSize, int activeCount, long queueDepth, long completedTasks,
+                           double averageWaitMillis, double averageRunMillis) {
+        this.name = name;
+        this.poolSize = poolSize;
+        this.activeCount = activeCount;
+        this.queueDepth = queueDepth;
+        this.completedTasks = completedTasks;
+        this.averageWaitMillis = averageWaitMillis;
+        this.averageRunMillis = averageRunMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public long getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getCompletedTasks() {
+        return completedTasks;
+    }
+
+    /**
+     * @return average time between submitting of task and its start
+     */
+    public double getAverageWaitMillis() {
+        return averageWaitMillis;
+    }
+
+    public double getAverageRunMillis() {
+        return averageRunMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutorMetrics{" +
+                "name='" + name + '\'' +
+                ", poolSize=" + poolSize +
+                ", activeCount=" + activeCount +
+                ", queueDepth=" + queueDepth +
+                ", completedTasks=" + completedTasks +
+                ", averageWaitMillis=" + averageWaitMillis +
+                ", averageRunMillis=" + averageRunMillis +
+                '}';
+    }
+}
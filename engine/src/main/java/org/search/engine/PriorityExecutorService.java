@@ -0,0 +1,185 @@
+package org.search.engine;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed thread pool which starts waiting tasks in order of their priority. Each task gets
+ * the deadline which is the submission time plus the aging delay of its priority, tasks are
+ * started in order of deadlines. So high priority tasks go first, but low priority task which
+ * waits long enough is not overtaken by the new ones. Deadline doesn't change while task waits,
+ * so order of the queue stays consistent. Tasks submitted by the standard methods of executor
+ * service have {@link TaskPriority#INTERACTIVE} priority. If capacity of the queue is limited,
+ * submitting waits until there is free place in the queue. Workers of the pool don't wait, because
+ * waiting worker could hold the thread which frees the queue. Time of waiting in the queue and
+ * time of running are collected for metrics.
+ */
+public class PriorityExecutorService extends ThreadPoolExecutor {
+
+    private final AtomicLong sequence = new AtomicLong();
+    // Null if queue is not limited
+    private final Semaphore queuePermits;
+    private final LongAdder startedTasks = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+    private final ThreadLocal<Long> taskStart = new ThreadLocal<>();
+
+    public PriorityExecutorService(int threads) {
+        this(threads, Executors.defaultThreadFactory());
+    }
+
+    public PriorityExecutorService(int threads, ThreadFactory threadFactory) {
+        this(threads, Integer.MAX_VALUE, threadFactory);
+    }
+
+    /**
+     * @param queueCapacity The count of waiting tasks after which submitting waits
+     */
+    public PriorityExecutorService(int threads, int queueCapacity, ThreadFactory threadFactory) {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), threadFactory);
+        this.queuePermits = queueCapacity == Integer.MAX_VALUE ? null : new Semaphore(queueCapacity);
+    }
+
+    public Future<?> submit(Runnable task, TaskPriority priority) {
+        if (task == null || priority == null) {
+            throw new NullPointerException();
+        }
+        PriorityTask<Object> future = new PriorityTask<>(task, priority, sequence.incrementAndGet());
+        enqueue(future, true);
+        return future;
+    }
+
+    public void execute(Runnable task, TaskPriority priority) {
+        submit(task, priority);
+    }
+
+    /**
+     * Task is queued even if the queue is full. It's used by the threads which must never wait
+     * for the workers, like the scheduler thread which applies the indexation queue: workers
+     * could wait for it while they put their tokens to the full indexation queue.
+     */
+    public void executeUnbounded(Runnable task, TaskPriority priority) {
+        if (task == null || priority == null) {
+            throw new NullPointerException();
+        }
+        enqueue(new PriorityTask<>(task, priority, sequence.incrementAndGet()), false);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command instanceof PriorityTask) {
+            enqueue((PriorityTask<?>) command, true);
+        } else {
+            submit(command, TaskPriority.INTERACTIVE);
+        }
+    }
+
+    /**
+     * @return snapshot of the pool state
+     */
+    public ExecutorMetrics getMetrics(String name) {
+        long started = startedTasks.sum();
+        long completed = getCompletedTaskCount();
+        return new ExecutorMetrics(name, getPoolSize(), getActiveCount(), getQueue().size(), completed,
+                started == 0 ? 0 : waitNanos.sum() / 1e6 / started,
+                completed == 0 ? 0 : runNanos.sum() / 1e6 / completed);
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        super.beforeExecute(thread, task);
+        long now = System.nanoTime();
+        if (task instanceof PriorityTask) {
+            if (((PriorityTask<?>) task).holdsPermit) {
+                queuePermits.release();
+            }
+            waitNanos.add(now - ((PriorityTask<?>) task).submitTime);
+            startedTasks.increment();
+        }
+        taskStart.set(now);
+    }
+
+    @Override
+    protected void afterExecute(Runnable task, Throwable throwable) {
+        Long start = taskStart.get();
+        if (start != null) {
+            runNanos.add(System.nanoTime() - start);
+            taskStart.remove();
+        }
+        super.afterExecute(task, throwable);
+    }
+
+    private void enqueue(PriorityTask<?> task, boolean canWait) {
+        // Task start is set only for the workers of this pool
+        if (queuePermits != null && canWait && taskStart.get() == null) {
+            try {
+                queuePermits.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Waiting for the place in the queue interrupted", ex);
+            }
+            task.holdsPermit = true;
+        }
+        try {
+            super.execute(task);
+        } catch (RejectedExecutionException ex) {
+            if (task.holdsPermit) {
+                task.holdsPermit = false;
+                queuePermits.release();
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new PriorityTask<>(runnable, value, TaskPriority.INTERACTIVE, sequence.incrementAndGet());
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new PriorityTask<>(callable, TaskPriority.INTERACTIVE, sequence.incrementAndGet());
+    }
+
+    private static class PriorityTask<T> extends FutureTask<T> implements Comparable<PriorityTask<?>> {
+
+        private final long submitTime = System.nanoTime();
+        private final long deadline;
+        private final long sequence;
+        // Set before the task is queued, so it's visible to the worker which takes it
+        private boolean holdsPermit;
+
+        private PriorityTask(Runnable runnable, TaskPriority priority, long sequence) {
+            this(runnable, null, priority, sequence);
+        }
+
+        private PriorityTask(Runnable runnable, T value, TaskPriority priority, long sequence) {
+            super(runnable, value);
+            this.deadline = submitTime + priority.getAgingDelayNanos();
+            this.sequence = sequence;
+        }
+
+        private PriorityTask(Callable<T> callable, TaskPriority priority, long sequence) {
+            super(callable);
+            this.deadline = submitTime + priority.getAgingDelayNanos();
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PriorityTask<?> other) {
+            int result = Long.compare(deadline - other.deadline, 0);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.search.engine;
+
+/**
+ * Kind of threads which read documents. Reading is mostly waiting for the storage, so on slow
+ * disks or network folders many virtual threads keep the storage busy without platform thread
+ * per waiting read. Writing to the index is done by its own platform thread in any mode.
+ */
+public enum ReadExecutionMode {
+    // Fixed pool of platform threads shared with other indexation tasks
+    PLATFORM,
+    // Pool of virtual threads, available since Java 21, platform threads are used on older versions
+    VIRTUAL
+}
@@ -6,8 +6,12 @@ import org.search.engine.analyzer.Tokenizer;
 import org.search.engine.exception.SearchEngineInitializationException;
 import org.search.engine.filesystem.FilesystemNotificationManager;
 import org.search.engine.filesystem.FilesystemNotifier;
+import org.search.engine.filesystem.PathFilter;
 import org.search.engine.index.DocumentIndexManager;
+import org.search.engine.index.DocumentSource;
+import org.search.engine.index.IndexJob;
 import org.search.engine.index.IndexationEventListener;
+import org.search.engine.model.IndexationStatistics;
 import org.search.engine.model.SearchResultEvent;
 import org.search.engine.model.SearchType;
 import org.search.engine.search.SearchManager;
@@ -16,9 +20,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.file.FileSystems;
+import java.nio.file.Path;
 import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * The main class of the library for in-memory documents/folders indexation.
@@ -26,7 +38,8 @@ import java.util.List;
  * You can user your oun implementation of it for splitting the your document's
  * to the needed lexemes. Under the hood this lib use radix tree structure
  * for storing lexemes and document identifiers. NOTE: Each instance of this class
- * contains it's own index.
+ * contains it's own index. Thread pools are shared by all engines unless engine is created
+ * by the {@link Builder} with its own executor configuration.
  */
 public class SearchEngine {
 
@@ -34,6 +47,10 @@ public class SearchEngine {
 
     private final WatchService watchService;
     private final Tokenizer tokenizer;
+    private final SearchEngineConfiguration configuration;
+    private final SearchEngineExecutors executors;
+    // Shared executors are not stopped by the engine
+    private final boolean ownsExecutors;
     private DocumentIndexManager indexManager;
     private SearchManager searchManager;
     private FilesystemNotifier filesystemManager;
@@ -44,62 +61,180 @@ public class SearchEngine {
     }
 
     public SearchEngine(Tokenizer tokenizer) {
+        this(tokenizer, SearchEngineConfiguration.DEFAULT);
+    }
+
+    /**
+     * @param tokenizer        The tokenizer which split documents to the lexemes
+     * @param fallbackCharsets The charsets which are tried in order for files which are not valid UTF-8
+     */
+    public SearchEngine(Tokenizer tokenizer, List<Charset> fallbackCharsets) {
+        this(tokenizer, SearchEngineConfiguration.builder().fallbackCharsets(fallbackCharsets).build());
+    }
+
+    /**
+     * @param tokenizer     The tokenizer which split documents to the lexemes
+     * @param configuration The settings of documents indexation
+     */
+    public SearchEngine(Tokenizer tokenizer, SearchEngineConfiguration configuration) {
+        this(tokenizer, configuration, SearchEngineExecutors.getShared(), false);
+    }
+
+    private SearchEngine(Tokenizer tokenizer, SearchEngineConfiguration configuration, SearchEngineExecutors executors,
+                         boolean ownsExecutors) {
         try {
             watchService = FileSystems.getDefault().newWatchService();
             this.tokenizer = tokenizer;
+            this.configuration = configuration;
+            this.executors = executors;
+            this.ownsExecutors = ownsExecutors;
         } catch (IOException e) {
             throw new SearchEngineInitializationException("Can't initialize filesystem WatchService or can't create app system folder");
         }
     }
 
     public void initialize(SearchEngineInitializationListener listener) {
-        engineInitializer = new SearchEngineInitializer(listener);
+        PathFilter pathFilter = new PathFilter(configuration.getDefaultPathRules(), configuration.getRootPathRules());
+        engineInitializer = new SearchEngineInitializer(listener, pathFilter, executors);
 
         filesystemManager = new FilesystemNotificationManager(watchService, engineInitializer.getTrackedFiles(),
-                engineInitializer.getTrackedFolders(), listener);
+                engineInitializer.getTrackedFolders(), pathFilter, configuration.getEventQuietWindowMillis(), executors, listener);
         searchManager = new SimpleSearchManager(engineInitializer.getIndex(), engineInitializer.getIndexedDocuments(),
                 tokenizer);
         indexManager = new DocumentIndexManager(engineInitializer.getIndex(), engineInitializer.getIndexedDocuments(),
-                filesystemManager, tokenizer, engineInitializer.getUniqueDocumentId(), engineInitializer.getIndexChanges());
+                filesystemManager, tokenizer, engineInitializer.getUniqueDocumentId(), engineInitializer.getIndexChanges(),
+                configuration, pathFilter, executors);
         indexManager.addListener(engineInitializer);
+        for (Path folder : engineInitializer.getUnfinishedFolders()) {
+            LOG.info("Indexation of folder: {} is resumed from the checkpoint", folder);
+            indexManager.resumeFolder(folder.toString(), engineInitializer);
+        }
     }
 
     /**
-     * Method for indexing folder documents.
+     * Method for indexing folder documents. Folders are indexed in the background and several
+     * of them can be indexed in parallel.
      *
      * @param path The path to the indexing folder
+     * @return The handle of the indexation job or null if engine not yet initialized
      */
-    public void indexFolder(String path, IndexationEventListener listener) {
+    public IndexJob indexFolder(String path, IndexationEventListener listener) {
         if (indexManager != null) {
-            indexManager.indexFolder(path, listener);
+            return indexManager.indexFolder(path, listener);
         } else {
             listener.onIndexationFinished();
             LOG.warn("Search engine not yet initialized");
+            return null;
+        }
+    }
+
+    /**
+     * @return The jobs of folder indexation which are not finished yet
+     */
+    public Collection<IndexJob> getIndexJobs() {
+        if (indexManager != null) {
+            return indexManager.getIndexJobs();
+        } else {
+            LOG.warn("Search engine not yet initialized");
+            return Collections.emptyList();
         }
     }
 
     /**
-     * Method for indexing document.
+     * Method for indexing document. Document is searchable after the returned sequence becomes visible.
      *
      * @param path The path to the indexing document
+     * @return The sequence number of the write or 0 if engine not yet initialized
+     */
+    public long indexFile(String path) {
+        if (indexManager != null) {
+            return indexManager.indexFile(path);
+        } else {
+            LOG.warn("Search engine not yet initialized");
+            return 0;
+        }
+    }
+
+    /**
+     * Method for indexing document which content is supplied by the source, like content kept in memory.
+     * Document with the same path is updated if version of the source is changed.
+     *
+     * @param source The source of the indexing document
+     * @return The sequence number of the write or 0 if engine not yet initialized
+     */
+    public long indexDocument(DocumentSource source) {
+        if (indexManager != null) {
+            return indexManager.indexDocument(source);
+        } else {
+            LOG.warn("Search engine not yet initialized");
+            return 0;
+        }
+    }
+
+    /**
+     * Method for removing document from the index, like document indexed by {@link #indexDocument(DocumentSource)}
+     *
+     * @param path The path which identifies the document
+     */
+    public void removeDocument(Path path) {
+        if (indexManager != null) {
+            indexManager.removeDocument(path);
+        } else {
+            LOG.warn("Search engine not yet initialized");
+        }
+    }
+
+    /**
+     * @param sequence The sequence number returned by {@link #indexFile(String)}
+     * @return future which is completed when the document and all documents indexed before it are searchable
+     */
+    public CompletableFuture<Void> awaitVisible(long sequence) {
+        if (indexManager != null) {
+            return indexManager.awaitVisible(sequence);
+        } else {
+            LOG.warn("Search engine not yet initialized");
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Method blocks the caller until the sequence becomes visible
+     *
+     * @return true if the sequence is visible, false if the timeout elapsed before
+     */
+    public boolean awaitVisible(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            awaitVisible(sequence).get(timeout, unit);
+            return true;
+        } catch (TimeoutException ex) {
+            return false;
+        } catch (ExecutionException ex) {
+            LOG.warn("Waiting for visibility of write: {} finished with exception", sequence, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Method renumbers indexed documents densely in the order of their paths, so documents of one folder
+     * get the range of ids. It's skipped while folder indexation is running.
+     *
+     * @return future which is completed with true when ids are compacted
      */
-    public void indexFile(String path) {
+    public CompletableFuture<Boolean> compactIndex() {
         if (indexManager != null) {
-            indexManager.indexFile(path);
+            return indexManager.compact();
         } else {
             LOG.warn("Search engine not yet initialized");
+            return CompletableFuture.completedFuture(false);
         }
     }
 
+    /**
+     * Method cancels all running folder indexations, documents indexed by them are removed in the background
+     */
     public void cancelFolderIndexation() {
         if (indexManager != null) {
-            indexManager.removeListener(engineInitializer);
             indexManager.cancelIndexation();
-            filesystemManager.invalidateCache();
-            indexManager.invalidateCache();
-            engineInitializer.loadIndex(false, progress -> { });
-            filesystemManager.applyIndexChangesIfNeeded(progress -> { });
-            indexManager.addListener(engineInitializer);
         } else {
             LOG.warn("Search engine not yet initialized");
         }
@@ -113,7 +248,12 @@ public class SearchEngine {
      */
     public ReplaySubject<SearchResultEvent> search(List<String> searchQueries, SearchType searchType) {
         if (searchManager != null) {
-            return searchManager.searchByQuery(searchQueries, searchType);
+            long start = indexManager.getThrottle().onSearchStarted();
+            try {
+                return searchManager.searchByQuery(searchQueries, searchType);
+            } finally {
+                indexManager.getThrottle().onSearchFinished(start);
+            }
         } else {
             LOG.warn("Search engine not yet initialized");
             return null;
@@ -128,6 +268,52 @@ public class SearchEngine {
         }
     }
 
+    /**
+     * Method for getting statistics of documents handled by the index
+     *
+     * @return The statistics of indexation or null if engine not yet initialized
+     */
+    public IndexationStatistics getIndexationStatistics() {
+        if (indexManager != null) {
+            return indexManager.getStatistics();
+        } else {
+            LOG.warn("Search engine not yet initialized");
+            return null;
+        }
+    }
+
+    /**
+     * Method for getting state of the thread pools used by the engine
+     *
+     * @return The metrics of pools which are already started
+     */
+    public List<ExecutorMetrics> getExecutorMetrics() {
+        return executors.getMetrics();
+    }
+
+    /**
+     * Method for getting state of the throttle which slows down folder indexation while user searches
+     *
+     * @return The metrics of the throttle or null if engine not yet initialized
+     */
+    public ThrottleMetrics getThrottleMetrics() {
+        if (indexManager != null) {
+            return indexManager.getThrottle().getMetrics();
+        } else {
+            LOG.warn("Search engine not yet initialized");
+            return null;
+        }
+    }
+
+    /**
+     * Method stops own thread pools of the engine, shared pools stay running
+     */
+    public void shutdown() {
+        if (ownsExecutors) {
+            executors.shutdown();
+        }
+    }
+
     public void invalidateCache() {
         if (filesystemManager != null && indexManager != null && engineInitializer != null) {
             filesystemManager.invalidateCache();
@@ -138,9 +324,63 @@ public class SearchEngine {
         }
     }
 
+    public static Builder builder() {
+        return new Builder();
+    }
+
     @Override
     protected void finalize() throws IOException {
         if (watchService != null)
             watchService.close();
     }
+
+    public static class Builder {
+
+        private Tokenizer tokenizer = new StandardTokenizer();
+        private SearchEngineConfiguration configuration = SearchEngineConfiguration.DEFAULT;
+        private ExecutorConfiguration executorConfiguration;
+
+        private Builder() {
+        }
+
+        /**
+         * @param tokenizer The tokenizer which split documents to the lexemes
+         */
+        public Builder tokenizer(Tokenizer tokenizer) {
+            if (tokenizer == null) {
+                throw new IllegalArgumentException("Tokenizer must not be null");
+            }
+            this.tokenizer = tokenizer;
+            return this;
+        }
+
+        /**
+         * @param configuration The settings of documents indexation
+         */
+        public Builder configuration(SearchEngineConfiguration configuration) {
+            if (configuration == null) {
+                throw new IllegalArgumentException("Configuration must not be null");
+            }
+            this.configuration = configuration;
+            return this;
+        }
+
+        /**
+         * @param executorConfiguration The settings of own thread pools of the engine, shared pools are used if it's not set
+         */
+        public Builder executorConfiguration(ExecutorConfiguration executorConfiguration) {
+            if (executorConfiguration == null) {
+                throw new IllegalArgumentException("Executor configuration must not be null");
+            }
+            this.executorConfiguration = executorConfiguration;
+            return this;
+        }
+
+        public SearchEngine build() {
+            if (executorConfiguration == null) {
+                return new SearchEngine(tokenizer, configuration);
+            }
+            return new SearchEngine(tokenizer, configuration, new SearchEngineExecutors(executorConfiguration), true);
+        }
+    }
 }
@@ -0,0 +1,395 @@
+package org.search.engine;
+
+import org.search.engine.filesystem.PathRules;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable settings of the documents indexation. Instance should be created by the
+ * {@link Builder}, not specified settings have default values.
+ */
+public class SearchEngineConfiguration {
+
+    public static final List<Charset> DEFAULT_FALLBACK_CHARSETS = getDefaultFallbackCharsets();
+    public static final long DEFAULT_MAX_FILE_SIZE = Long.MAX_VALUE;
+    public static final int DEFAULT_MAX_DOCUMENT_TERMS = 1_000_000;
+    public static final long DEFAULT_LARGE_FILE_SIZE = 8 * 1024 * 1024;
+    public static final int DEFAULT_MAX_PENDING_DOCUMENTS = 1024;
+    public static final long DEFAULT_EVENT_QUIET_WINDOW_MILLIS = 200;
+    public static final int DEFAULT_VIRTUAL_READ_THREADS = 256;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 50_000;
+    public static final int DEFAULT_READ_BATCH_SIZE = 64;
+    public static final long DEFAULT_READ_BATCH_BYTES = 512 * 1024;
+    public static final SearchEngineConfiguration DEFAULT = builder().build();
+
+    // Charsets which are tried one by one if file content is not valid UTF-8
+    private final List<Charset> fallbackCharsets;
+    // Only this count of bytes from the file start is indexed
+    private final long maxFileSize;
+    // Reading of the document is stopped after this count of unique terms
+    private final int maxDocumentTerms;
+    // Files bigger than this size are indexed with lower priority than the small ones
+    private final long largeFileSize;
+    // Folder walking waits when this count of documents is submitted but not yet read
+    private final int maxPendingDocuments;
+    // Small files of the same folder are read by one task until this count of files or bytes is reached
+    private final int readBatchSize;
+    private final long readBatchBytes;
+    // Hash of the content is computed while reading, so modified document with the same content is not reindexed
+    private final boolean contentHashing;
+    // Documents with the same content hash share tokens in the index instead of adding the same tokens again
+    private final boolean contentDeduplication;
+    // Lines of updated documents are kept, so next updates reindex only changed lines
+    private final boolean incrementalUpdate;
+    // Events of the same file are collapsed to the single event if they come within this time
+    private final long eventQuietWindowMillis;
+    // Entries of zip, jar and tar.gz archives are indexed as separate documents instead of skipping archive as binary
+    private final boolean archiveIndexing;
+    // Documents are read by platform or virtual threads, index is updated by the own thread anyway
+    private final ReadExecutionMode readExecutionMode;
+    private final int virtualReadThreads;
+    // Index is persisted after this count of processed files of folder indexation, so it's resumed after restart
+    private final int checkpointInterval;
+    // Folder indexation slows down while user searches, so searches are not delayed by it
+    private final boolean adaptiveThrottling;
+    // Rules for the folders which have no own rules
+    private final PathRules defaultPathRules;
+    // Rules of the indexed roots, they are applied for all nested files and folders
+    private final Map<Path, PathRules> rootPathRules;
+
+    private SearchEngineConfiguration(Builder builder) {
+        this.fallbackCharsets = Collections.unmodifiableList(new ArrayList<>(builder.fallbackCharsets));
+        this.maxFileSize = builder.maxFileSize;
+        this.maxDocumentTerms = builder.maxDocumentTerms;
+        this.largeFileSize = builder.largeFileSize;
+        this.maxPendingDocuments = builder.maxPendingDocuments;
+        this.readBatchSize = builder.readBatchSize;
+        this.readBatchBytes = builder.readBatchBytes;
+        this.contentHashing = builder.contentHashing;
+        this.contentDeduplication = builder.contentDeduplication;
+        this.incrementalUpdate = builder.incrementalUpdate;
+        this.eventQuietWindowMillis = builder.eventQuietWindowMillis;
+        this.archiveIndexing = builder.archiveIndexing;
+        this.readExecutionMode = builder.readExecutionMode;
+        this.virtualReadThreads = builder.virtualReadThreads;
+        this.checkpointInterval = builder.checkpointInterval;
+        this.adaptiveThrottling = builder.adaptiveThrottling;
+        this.defaultPathRules = builder.defaultPathRules;
+        this.rootPathRules = Collections.unmodifiableMap(new LinkedHashMap<>(builder.rootPathRules));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<Charset> getFallbackCharsets() {
+        return fallbackCharsets;
+    }
+
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public int getMaxDocumentTerms() {
+        return maxDocumentTerms;
+    }
+
+    public long getLargeFileSize() {
+        return largeFileSize;
+    }
+
+    public int getMaxPendingDocuments() {
+        return maxPendingDocuments;
+    }
+
+    public int getReadBatchSize() {
+        return readBatchSize;
+    }
+
+    public long getReadBatchBytes() {
+        return readBatchBytes;
+    }
+
+    public boolean isContentHashing() {
+        return contentHashing;
+    }
+
+    public boolean isContentDeduplication() {
+        return contentDeduplication;
+    }
+
+    public boolean isIncrementalUpdate() {
+        return incrementalUpdate;
+    }
+
+    public long getEventQuietWindowMillis() {
+        return eventQuietWindowMillis;
+    }
+
+    public boolean isArchiveIndexing() {
+        return archiveIndexing;
+    }
+
+    public ReadExecutionMode getReadExecutionMode() {
+        return readExecutionMode;
+    }
+
+    public int getVirtualReadThreads() {
+        return virtualReadThreads;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public boolean isAdaptiveThrottling() {
+        return adaptiveThrottling;
+    }
+
+    public PathRules getDefaultPathRules() {
+        return defaultPathRules;
+    }
+
+    public Map<Path, PathRules> getRootPathRules() {
+        return rootPathRules;
+    }
+
+    private static List<Charset> getDefaultFallbackCharsets() {
+        List<Charset> charsets = new ArrayList<>();
+        if (Charset.isSupported("windows-1252")) {
+            charsets.add(Charset.forName("windows-1252"));
+        }
+        charsets.add(StandardCharsets.ISO_8859_1);
+        return Collections.unmodifiableList(charsets);
+    }
+
+    public static class Builder {
+
+        private List<Charset> fallbackCharsets = DEFAULT_FALLBACK_CHARSETS;
+        private long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+        private int maxDocumentTerms = DEFAULT_MAX_DOCUMENT_TERMS;
+        private long largeFileSize = DEFAULT_LARGE_FILE_SIZE;
+        private int maxPendingDocuments = DEFAULT_MAX_PENDING_DOCUMENTS;
+        private int readBatchSize = DEFAULT_READ_BATCH_SIZE;
+        private long readBatchBytes = DEFAULT_READ_BATCH_BYTES;
+        private boolean contentHashing = true;
+        private boolean contentDeduplication = true;
+        private boolean incrementalUpdate = true;
+        private long eventQuietWindowMillis = DEFAULT_EVENT_QUIET_WINDOW_MILLIS;
+        private boolean archiveIndexing;
+        private ReadExecutionMode readExecutionMode = ReadExecutionMode.PLATFORM;
+        private int virtualReadThreads = DEFAULT_VIRTUAL_READ_THREADS;
+        private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        private boolean adaptiveThrottling = true;
+        private PathRules defaultPathRules = PathRules.DEFAULT;
+        private final Map<Path, PathRules> rootPathRules = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param fallbackCharsets The charsets which are tried in order for files which are not valid UTF-8
+         */
+        public Builder fallbackCharsets(List<Charset> fallbackCharsets) {
+            if (fallbackCharsets == null) {
+                throw new IllegalArgumentException("Fallback charsets must not be null");
+            }
+            this.fallbackCharsets = fallbackCharsets;
+            return this;
+        }
+
+        /**
+         * @param maxFileSize The count of bytes from the start of file which is indexed, rest of the file is ignored
+         */
+        public Builder maxFileSize(long maxFileSize) {
+            if (maxFileSize <= 0) {
+                throw new IllegalArgumentException("Max file size must be positive");
+            }
+            this.maxFileSize = maxFileSize;
+            return this;
+        }
+
+        /**
+         * @param maxDocumentTerms The count of unique terms after which reading of the document is stopped
+         */
+        public Builder maxDocumentTerms(int maxDocumentTerms) {
+            if (maxDocumentTerms <= 0) {
+                throw new IllegalArgumentException("Max document terms must be positive");
+            }
+            this.maxDocumentTerms = maxDocumentTerms;
+            return this;
+        }
+
+        /**
+         * @param largeFileSize The size of file starting from which it's indexed after the smaller files
+         */
+        public Builder largeFileSize(long largeFileSize) {
+            if (largeFileSize <= 0) {
+                throw new IllegalArgumentException("Large file size must be positive");
+            }
+            this.largeFileSize = largeFileSize;
+            return this;
+        }
+
+        /**
+         * @param maxPendingDocuments The count of documents of folder indexation which can wait for reading
+         */
+        public Builder maxPendingDocuments(int maxPendingDocuments) {
+            if (maxPendingDocuments <= 0) {
+                throw new IllegalArgumentException("Max pending documents must be positive");
+            }
+            this.maxPendingDocuments = maxPendingDocuments;
+            return this;
+        }
+
+        /**
+         * @param readBatchSize The count of small files of one folder which are read by the single task,
+         *                      one means that each file is read by its own task
+         */
+        public Builder readBatchSize(int readBatchSize) {
+            if (readBatchSize <= 0) {
+                throw new IllegalArgumentException("Read batch size must be positive");
+            }
+            this.readBatchSize = readBatchSize;
+            return this;
+        }
+
+        /**
+         * @param readBatchBytes The total size of files which are read by the single task, bigger files
+         *                       are read by their own task
+         */
+        public Builder readBatchBytes(long readBatchBytes) {
+            if (readBatchBytes <= 0) {
+                throw new IllegalArgumentException("Read batch bytes must be positive");
+            }
+            this.readBatchBytes = readBatchBytes;
+            return this;
+        }
+
+        /**
+         * @param contentHashing Identify if reindex of modified document should be skipped when its content is not changed
+         */
+        public Builder contentHashing(boolean contentHashing) {
+            this.contentHashing = contentHashing;
+            return this;
+        }
+
+        /**
+         * @param contentDeduplication Identify if documents with the same content should share tokens in the index,
+         *                             it works only together with content hashing
+         */
+        public Builder contentDeduplication(boolean contentDeduplication) {
+            this.contentDeduplication = contentDeduplication;
+            return this;
+        }
+
+        /**
+         * @param incrementalUpdate Identify if lines of updated documents should be kept in memory to reindex
+         *                          only changed lines by the next updates, documents larger than large file
+         *                          size are always reindexed fully
+         */
+        public Builder incrementalUpdate(boolean incrementalUpdate) {
+            this.incrementalUpdate = incrementalUpdate;
+            return this;
+        }
+
+        /**
+         * @param eventQuietWindowMillis The time without events of the file after which its changes are indexed,
+         *                               zero means that each event is handled immediately
+         */
+        public Builder eventQuietWindowMillis(long eventQuietWindowMillis) {
+            if (eventQuietWindowMillis < 0) {
+                throw new IllegalArgumentException("Event quiet window must not be negative");
+            }
+            this.eventQuietWindowMillis = eventQuietWindowMillis;
+            return this;
+        }
+
+        /**
+         * @param archiveIndexing Identify if entries of zip, jar and tar.gz archives should be indexed
+         *                        as documents with path {@code archive-path!/entry-path}
+         */
+        public Builder archiveIndexing(boolean archiveIndexing) {
+            this.archiveIndexing = archiveIndexing;
+            return this;
+        }
+
+        /**
+         * @param readExecutionMode The kind of threads which read documents
+         */
+        public Builder readExecutionMode(ReadExecutionMode readExecutionMode) {
+            if (readExecutionMode == null) {
+                throw new IllegalArgumentException("Read execution mode must not be null");
+            }
+            this.readExecutionMode = readExecutionMode;
+            return this;
+        }
+
+        /**
+         * @param virtualReadThreads The count of documents read concurrently in the virtual mode
+         */
+        public Builder virtualReadThreads(int virtualReadThreads) {
+            if (virtualReadThreads <= 0) {
+                throw new IllegalArgumentException("Virtual read threads must be positive");
+            }
+            this.virtualReadThreads = virtualReadThreads;
+            return this;
+        }
+
+        /**
+         * @param checkpointInterval The count of processed files of folder indexation after which index is persisted,
+         *                           zero means that index is persisted only when indexation is finished
+         */
+        public Builder checkpointInterval(int checkpointInterval) {
+            if (checkpointInterval < 0) {
+                throw new IllegalArgumentException("Checkpoint interval must not be negative");
+            }
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        /**
+         * @param adaptiveThrottling Identify if reading of folder documents and updating of the index should
+         *                           slow down while searches are running and speed up again when they stop
+         */
+        public Builder adaptiveThrottling(boolean adaptiveThrottling) {
+            this.adaptiveThrottling = adaptiveThrottling;
+            return this;
+        }
+
+        /**
+         * @param pathRules The include and exclude rules for all folders which have no own rules
+         */
+        public Builder pathRules(PathRules pathRules) {
+            if (pathRules == null) {
+                throw new IllegalArgumentException("Path rules must not be null");
+            }
+            this.defaultPathRules = pathRules;
+            return this;
+        }
+
+        /**
+         * @param root      The path to the indexed folder
+         * @param pathRules The include and exclude rules for files and folders inside of the root
+         */
+        public Builder pathRules(String root, PathRules pathRules) {
+            if (root == null || root.isEmpty() || pathRules == null) {
+                throw new IllegalArgumentException("Root path must not be empty and path rules must not be null");
+            }
+            this.rootPathRules.put(Paths.get(root).normalize(), pathRules);
+            return this;
+        }
+
+        public SearchEngineConfiguration build() {
+            return new SearchEngineConfiguration(this);
+        }
+    }
+}
@@ -1,49 +1,201 @@
 package org.search.engine;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Class which store executor services for running tasks and scheduler jobs concurrently
+ * Class which store executor services for running tasks and scheduler jobs concurrently.
+ * Each search engine can have its own executors, engines created without executor configuration
+ * use the shared ones. Pools are created on the first use.
  */
 public class SearchEngineExecutors {
 
-    private static final int EXECUTOR_THREADS;
-    private static ScheduledExecutorService scheduledExecutor;
-    private static ExecutorService executorService;
-    static {
-        int availableProcessors = Runtime.getRuntime().availableProcessors();
-        int remainingCores = availableProcessors / 3;
-        if (remainingCores < 1) {
-            EXECUTOR_THREADS = 1;
-        } else {
-            EXECUTOR_THREADS = remainingCores;
-        }
+    private static final Logger LOG = LoggerFactory.getLogger(SearchEngineExecutors.class);
+
+    private static volatile SearchEngineExecutors shared;
+
+    private final ExecutorConfiguration configuration;
+    private volatile ScheduledThreadPoolExecutor scheduledExecutor;
+    private volatile PriorityExecutorService executorService;
+    private volatile ForkJoinPool walkerPool;
+    private volatile PriorityExecutorService virtualReadExecutor;
+
+    public SearchEngineExecutors(ExecutorConfiguration configuration) {
+        this.configuration = configuration;
     }
 
-    private SearchEngineExecutors() {
+    /**
+     * @return executors with default configuration shared by all engines which have no own executors
+     */
+    public static SearchEngineExecutors getShared() {
+        if (shared == null) {
+            synchronized (SearchEngineExecutors.class) {
+                if (shared == null) {
+                    shared = new SearchEngineExecutors(ExecutorConfiguration.DEFAULT);
+                }
+            }
+        }
+        return shared;
     }
 
-    public static ScheduledExecutorService getScheduledExecutor() {
+    public ScheduledExecutorService getScheduledExecutor() {
         if (scheduledExecutor == null) {
-            synchronized (SearchEngineExecutors.class) {
+            synchronized (this) {
                 if (scheduledExecutor == null) {
-                    scheduledExecutor = Executors.newScheduledThreadPool(2);
+                    scheduledExecutor = new ScheduledThreadPoolExecutor(configuration.getSchedulerThreads(),
+                            new EngineThreadFactory("scheduler"));
                 }
             }
         }
         return scheduledExecutor;
     }
 
-    public static ExecutorService getExecutorService() {
+    /**
+     * @return executor which starts tasks with higher priority first
+     */
+    public PriorityExecutorService getExecutorService() {
         if (executorService == null) {
-            synchronized (SearchEngineExecutors.class) {
+            synchronized (this) {
                 if (executorService == null) {
-                    executorService = Executors.newFixedThreadPool(EXECUTOR_THREADS);
+                    executorService = new PriorityExecutorService(configuration.getIndexingThreads(),
+                            configuration.getIndexingQueueCapacity(), new EngineThreadFactory("indexing"));
                 }
             }
         }
         return executorService;
     }
+
+    /**
+     * @param mode           The kind of threads which should read documents
+     * @param virtualThreads The count of virtual threads which read documents concurrently
+     * @return executor for reading of documents, it's the common executor in platform mode
+     * or if virtual threads are not supported by the runtime
+     */
+    public PriorityExecutorService getReadExecutorService(ReadExecutionMode mode, int virtualThreads) {
+        if (mode != ReadExecutionMode.VIRTUAL) {
+            return getExecutorService();
+        }
+        if (virtualReadExecutor == null) {
+            synchronized (this) {
+                if (virtualReadExecutor == null) {
+                    ThreadFactory threadFactory = getVirtualThreadFactory(configuration.getThreadNamePrefix() + "-reader-");
+                    if (threadFactory == null) {
+                        LOG.warn("Virtual threads are not supported by the runtime, documents are read by platform threads");
+                        return getExecutorService();
+                    }
+                    virtualReadExecutor = new PriorityExecutorService(virtualThreads, configuration.getIndexingQueueCapacity(),
+                            threadFactory);
+                }
+            }
+        }
+        return virtualReadExecutor;
+    }
+
+    /**
+     * @return pool for concurrent walking of folders, listing of folders is mostly waiting
+     * for the filesystem, so by default it has thread per core
+     */
+    public ForkJoinPool getWalkerPool() {
+        if (walkerPool == null) {
+            synchronized (this) {
+                if (walkerPool == null) {
+                    AtomicInteger threadNumber = new AtomicInteger();
+                    walkerPool = new ForkJoinPool(configuration.getWalkerParallelism(), pool -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        thread.setName(configuration.getThreadNamePrefix() + "-walker-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(configuration.isDaemon());
+                        return thread;
+                    }, null, false);
+                }
+            }
+        }
+        return walkerPool;
+    }
+
+    /**
+     * @return state of the pools which are already created
+     */
+    public List<ExecutorMetrics> getMetrics() {
+        List<ExecutorMetrics> metrics = new ArrayList<>();
+        if (executorService != null) {
+            metrics.add(executorService.getMetrics("indexing"));
+        }
+        if (virtualReadExecutor != null) {
+            metrics.add(virtualReadExecutor.getMetrics("virtual-reading"));
+        }
+        if (scheduledExecutor != null) {
+            metrics.add(new ExecutorMetrics("scheduler", scheduledExecutor.getPoolSize(), scheduledExecutor.getActiveCount(),
+                    scheduledExecutor.getQueue().size(), scheduledExecutor.getCompletedTaskCount(), -1, -1));
+        }
+        if (walkerPool != null) {
+            metrics.add(new ExecutorMetrics("walker", walkerPool.getPoolSize(), walkerPool.getActiveThreadCount(),
+                    walkerPool.getQueuedTaskCount() + walkerPool.getQueuedSubmissionCount(), -1, -1, -1));
+        }
+        return metrics;
+    }
+
+    /**
+     * Method stops all created pools, waiting tasks are not started
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (scheduledExecutor != null) {
+                scheduledExecutor.shutdownNow();
+            }
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+            if (virtualReadExecutor != null) {
+                virtualReadExecutor.shutdownNow();
+            }
+            if (walkerPool != null) {
+                walkerPool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Engine is compiled for Java 8, so virtual threads builder is found by reflection
+     *
+     * @return factory of virtual threads or null if they are not supported
+     */
+    static ThreadFactory getVirtualThreadFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method name = builderClass.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            LOG.debug("Virtual threads are not available", ex);
+            return null;
+        }
+    }
+
+    private class EngineThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        private EngineThreadFactory(String poolName) {
+            this.namePrefix = configuration.getThreadNamePrefix() + "-" + poolName + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(configuration.isDaemon());
+            return thread;
+        }
+    }
 }
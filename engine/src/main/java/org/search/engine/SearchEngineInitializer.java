@@ -1,9 +1,16 @@
 package org.search.engine;
 
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
 import org.nustaq.serialization.FSTConfiguration;
+import org.search.engine.filesystem.PathFilter;
+import org.search.engine.index.ArchiveReader;
+import org.search.engine.index.DocumentIdCompactor;
 import org.search.engine.index.IndexationEventListener;
 import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
 import org.search.engine.model.IndexChanges;
+import org.search.engine.model.SerializableCheckpoint;
 import org.search.engine.model.SerializableDocument;
 import org.search.engine.tree.SearchEngineConcurrentTree;
 import org.search.engine.tree.SearchEngineTree;
@@ -12,13 +19,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -32,10 +42,13 @@ public class SearchEngineInitializer implements IndexationEventListener {
     private static final String TRACKED_FOLDERS_FILE = "/folders.se";
     private static final String INDEX_FILE = "/index.se";
     private static final String INDEXED_DOCUMENTS_FILE = "/documents.se";
+    private static final String CHECKPOINT_FILE = "/checkpoint.se";
+    // Ids of loaded documents are compacted if less than half of ids are used
+    private static final int SPARSE_IDS_RATIO = 2;
 
     //Unique concurrent document Id generator
     private AtomicInteger uniqueDocumentId;
-    private Map<Path, Document> indexedDocuments;
+    private DocumentRegistry indexedDocuments;
     private SearchEngineTree index;
     // Files which changes tracked by system and were registered in the system by track. CopyOnWriteArrayList
     // used because of possibility of concurrent changes came from watch service and by user itself
@@ -43,10 +56,19 @@ public class SearchEngineInitializer implements IndexationEventListener {
     // Folders which changes tracked by system and were registered in the system by track.
     private Set<Path> trackedFolders;
     private IndexChanges indexChanges;
-    private Future<?> lastSavingIndexTask;
-
-
-    SearchEngineInitializer(SearchEngineInitializationListener listener) {
+    // Guarded by this, saving requested while other one is running is done after it, only the last request is kept
+    private boolean isSaving;
+    private Supplier<Collection<Document>> pendingSaving;
+    // Folders which indexation was not finished by the last checkpoint, they are resumed after restart
+    private final Set<Path> unfinishedFolders = ConcurrentHashMap.newKeySet();
+    // Files and folders which became excluded since the last run are treated as removed
+    private final PathFilter pathFilter;
+    private final SearchEngineExecutors executors;
+
+
+    SearchEngineInitializer(SearchEngineInitializationListener listener, PathFilter pathFilter, SearchEngineExecutors executors) {
+        this.pathFilter = pathFilter;
+        this.executors = executors;
         Path folderPath = Paths.get(APP_FOLDER);
         if (!Files.exists(folderPath)) {
             try {
@@ -57,7 +79,7 @@ public class SearchEngineInitializer implements IndexationEventListener {
         }
         config.registerClass(TreeNode.class, String.class, AtomicInteger.class, HashMap.class);
         uniqueDocumentId = new AtomicInteger();
-        indexedDocuments = new ConcurrentHashMap<>();
+        indexedDocuments = new DocumentRegistry();
         index = new SearchEngineConcurrentTree();
         trackedFiles = ConcurrentHashMap.newKeySet();
         trackedFolders = ConcurrentHashMap.newKeySet();
@@ -66,14 +88,61 @@ public class SearchEngineInitializer implements IndexationEventListener {
 
     @Override
     public void onIndexationFinished() {
-        if (lastSavingIndexTask == null || lastSavingIndexTask.isDone()) {
-            lastSavingIndexTask = SearchEngineExecutors.getExecutorService().submit(() -> {
-                saveTrackedFiles();
-                saveTrackedFolders();
-                saveIndex();
-                saveIndexedDocuments();
-                LOG.info("Search engine saving cache finished");
-            });
+        saveCache(indexedDocuments::getDocuments);
+    }
+
+    /**
+     * Only documents of the checkpoint are saved, so documents which tokens are not yet in the index
+     * are indexed again after restart
+     */
+    @Override
+    public void onIndexationCheckpoint(Collection<Document> documents, Collection<Path> folders) {
+        unfinishedFolders.clear();
+        unfinishedFolders.addAll(folders);
+        saveCache(() -> documents);
+    }
+
+    private synchronized void saveCache(Supplier<Collection<Document>> documents) {
+        if (isSaving) {
+            pendingSaving = documents;
+            LOG.debug("Search engine saving cache postponed, previous saving is not finished");
+            return;
+        }
+        isSaving = true;
+        submitSaving(documents);
+    }
+
+    /**
+     * Method is called under the lock of the initializer, the next pending saving is submitted when this one is finished
+     */
+    private void submitSaving(Supplier<Collection<Document>> documents) {
+        try {
+            executors.getExecutorService().submit(() -> {
+                try {
+                    saveTrackedFiles();
+                    saveTrackedFolders();
+                    saveIndex();
+                    saveIndexedDocuments(documents.get());
+                    saveCheckpoint();
+                    LOG.info("Search engine saving cache finished");
+                } finally {
+                    onSavingFinished();
+                }
+            }, TaskPriority.BULK);
+        } catch (RejectedExecutionException ex) {
+            LOG.warn("Search engine saving cache rejected", ex);
+            isSaving = false;
+            pendingSaving = null;
+        }
+    }
+
+    private synchronized void onSavingFinished() {
+        Supplier<Collection<Document>> documents = pendingSaving;
+        pendingSaving = null;
+        if (documents != null) {
+            submitSaving(documents);
+        } else {
+            isSaving = false;
         }
     }
 
@@ -85,7 +154,7 @@ public class SearchEngineInitializer implements IndexationEventListener {
         return uniqueDocumentId;
     }
 
-    Map<Path, Document> getIndexedDocuments() {
+    DocumentRegistry getIndexedDocuments() {
         return indexedDocuments;
     }
 
@@ -105,9 +174,17 @@ public class SearchEngineInitializer implements IndexationEventListener {
         return indexChanges;
     }
 
+    /**
+     * @return folders which indexation was interrupted and should be resumed
+     */
+    Collection<Path> getUnfinishedFolders() {
+        return new ArrayList<>(unfinishedFolders);
+    }
+
     void invalidateCache() {
         Stream.of(Paths.get(APP_FOLDER + TRACKED_FILES_FILE), Paths.get(APP_FOLDER + TRACKED_FOLDERS_FILE),
-                Paths.get(APP_FOLDER + INDEX_FILE), Paths.get(APP_FOLDER + INDEXED_DOCUMENTS_FILE))
+                Paths.get(APP_FOLDER + INDEX_FILE), Paths.get(APP_FOLDER + INDEXED_DOCUMENTS_FILE),
+                Paths.get(APP_FOLDER + CHECKPOINT_FILE))
                 .forEach(this::removeFileIfExist);
 
         LOG.info("Cache invalidated");
@@ -121,8 +198,15 @@ public class SearchEngineInitializer implements IndexationEventListener {
             index.clear();
             trackedFiles.clear();
             trackedFolders.clear();
+            unfinishedFolders.clear();
             LOG.info("Initialized empty engine");
         } else {
+            initializeCheckpoint();
+            if (indexedDocuments.size() < uniqueDocumentId.get() / SPARSE_IDS_RATIO) {
+                int lastId = uniqueDocumentId.get();
+                uniqueDocumentId.set(DocumentIdCompactor.compact(index, indexedDocuments, new TIntHashSet()));
+                LOG.info("Document ids compacted from {} to {}", lastId, uniqueDocumentId.get());
+            }
             if (calculateChanges) {
                 calculateIndexChanges(listener);
             }
@@ -140,6 +224,15 @@ public class SearchEngineInitializer implements IndexationEventListener {
         Set<Path> oldFiles = new HashSet<>();
         Set<Path> changedFiles = new HashSet<>();
 
+        // Entries of archive have modification time of the archive, archive itself is not registered
+        Map<Path, Long> indexedArchives = new HashMap<>();
+        indexedDocuments.getDocuments().forEach(it -> {
+            Path archivePath = ArchiveReader.getArchivePath(it.getPath());
+            if (archivePath != null) {
+                indexedArchives.merge(archivePath, it.getModificationTimestamp(), Math::min);
+            }
+        });
+
         double percentage = (double)(trackedFiles.size() + trackedFolders.size()) / 50;
         int currentElement = 0;
 
@@ -163,31 +256,33 @@ public class SearchEngineInitializer implements IndexationEventListener {
 
 
         for (Path folder : trackedFolders) {
-            if (!Files.exists(folder)) {
+            if (!Files.exists(folder) || !pathFilter.isIndexed(folder, true)) {
                 oldFolders.add(folder);
             } else {
                 try (Stream<Path> paths = Files.walk(folder, 1)) {
                     paths.forEach(path -> {
-                        if (Files.isRegularFile(path)) {
+                        if (Files.isRegularFile(path) && pathFilter.accept(path, false)) {
                             checkedFiles.add(path);
 
                             Document document = indexedDocuments.get(path);
-                            if (document != null) {
+                            Long archiveTimestamp = indexedArchives.get(path);
+                            if (document != null || archiveTimestamp != null) {
+                                long timestamp = document != null ? document.getModificationTimestamp() : archiveTimestamp;
                                 try {
-                                    if (Files.getLastModifiedTime(path).toMillis() > document.getModificationTimestamp()) {
+                                    if (Files.getLastModifiedTime(path).toMillis() > timestamp) {
                                         changedFiles.add(path);
                                     }
                                 } catch (IOException ex) {
                                     LOG.warn("Exception in calculation file changes: {}", path, ex);
                                 }
-                            } else {
+                            } else if (!isUnfinished(path)) {
                                 newFiles.add(path);
                             }
 
                         }
                         try {
-                            if (Files.isDirectory(path) && !Files.isHidden(path)) {
-                                if (!trackedFolders.contains(path)) {
+                            if (Files.isDirectory(path) && !Files.isHidden(path) && pathFilter.accept(path, true)) {
+                                if (!trackedFolders.contains(path) && !isUnfinished(path)) {
                                     newFolders.add(path);
                                 }
                             }
@@ -203,13 +298,23 @@ public class SearchEngineInitializer implements IndexationEventListener {
             listener.onInitializationProgress(Math.round(currentElement / percentage));
         }
 
-        Set<Path> indexedFiles = new HashSet<>(indexedDocuments.keySet());
+        Set<Path> indexedFiles = new HashSet<>(indexedDocuments.getPaths());
         indexedFiles.removeAll(checkedFiles);
+        indexedFiles.removeIf(it -> checkedFiles.contains(ArchiveReader.getArchivePath(it)));
         oldFiles.addAll(indexedFiles);
         indexChanges = new IndexChanges(oldFolders, newFolders, newFiles, oldFiles, changedFiles);
         LOG.info("Finish calculating index changes");
     }
 
+    private boolean isUnfinished(Path path) {
+        for (Path folder : unfinishedFolders) {
+            if (path.startsWith(folder)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean initializeTrackedFiles() {
         Path filePath = Paths.get(APP_FOLDER + TRACKED_FILES_FILE);
         if (Files.exists(filePath)) {
@@ -272,15 +377,24 @@ public class SearchEngineInitializer implements IndexationEventListener {
                 for (Map.Entry<String, SerializableDocument> entry : documents.entrySet()) {
                     SerializableDocument document = entry.getValue();
                     Path path = Paths.get(entry.getKey());
-                    indexedDocuments.put(path, new Document(document.getId(), document.isTracked(), path, document.getModificationTimestamp()));
+                    Document indexedDocument = new Document(document.getId(), document.isTracked(), path, document.getModificationTimestamp(),
+                            getCharset(document.getCharset()));
+                    indexedDocument.setContentLength(document.getContentLength());
+                    indexedDocument.setContentHash(document.getContentHash());
+                    indexedDocument.setContentOwnerId(document.getContentOwnerId());
+                    indexedDocuments.put(indexedDocument);
                     if (document.getId() > maxId) {
                         maxId = document.getId();
                     }
                 }
                 uniqueDocumentId.set(maxId);
+                int orphanDuplicates = indexedDocuments.removeOrphanDuplicates();
+                if (orphanDuplicates > 0) {
+                    LOG.info("{} documents lost content owner and will be indexed again", orphanDuplicates);
+                }
                 LOG.info("IndexedDocuments loaded from file");
                 return true;
-            } catch (IOException | ClassCastException e) {
+            } catch (IOException | RuntimeException e) {
                 LOG.warn("Can't read indexedDocuments from file", e);
                 return false;
             }
@@ -288,6 +402,32 @@ public class SearchEngineInitializer implements IndexationEventListener {
         return false;
     }
 
+    /**
+     * Index could be saved with tokens of documents which are not saved, they are removed. Documents of
+     * unfinished folders are not replayed as changes, because resumed indexation reads them.
+     */
+    private void initializeCheckpoint() {
+        unfinishedFolders.clear();
+        Path filePath = Paths.get(APP_FOLDER + CHECKPOINT_FILE);
+        if (Files.exists(filePath)) {
+            try {
+                byte[] fileBytes = Files.readAllBytes(filePath);
+                SerializableCheckpoint checkpoint = (SerializableCheckpoint) config.asObject(fileBytes);
+                TIntSet staleIds = new TIntHashSet();
+                for (int id = 1; id <= checkpoint.getLastDocumentId(); id++) {
+                    if (indexedDocuments.get(id) == null) {
+                        staleIds.add(id);
+                    }
+                }
+                index.removeByValues(staleIds);
+                checkpoint.getUnfinishedFolders().forEach(it -> unfinishedFolders.add(Paths.get(it)));
+                LOG.info("Checkpoint loaded from file, {} folders will be resumed", unfinishedFolders.size());
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Can't read checkpoint from file", e);
+            }
+        }
+    }
+
     private void saveTrackedFiles() {
         try {
             Path filePath = Paths.get(APP_FOLDER + TRACKED_FILES_FILE);
@@ -325,12 +465,13 @@ public class SearchEngineInitializer implements IndexationEventListener {
         }
     }
 
-    private void saveIndexedDocuments() {
+    private void saveIndexedDocuments(Collection<Document> documents) {
         try {
             Path filePath = Paths.get(APP_FOLDER + INDEXED_DOCUMENTS_FILE);
             Map<String, SerializableDocument> collection = new HashMap<>();
-            indexedDocuments.forEach((key, value) -> collection.put(key.toAbsolutePath().toString(), new SerializableDocument(value.getId(), value.isTracked(),
-                    value.getPath().toAbsolutePath().toString(), value.getModificationTimestamp())));
+            documents.forEach(value -> collection.put(value.getPath().toAbsolutePath().toString(), new SerializableDocument(value.getId(), value.isTracked(),
+                    value.getPath().toAbsolutePath().toString(), value.getModificationTimestamp(), value.getCharset().name(),
+                    value.getContentLength(), value.getContentHash(), value.getContentOwnerId())));
             byte[] objectBytes = config.asByteArray(collection);
             Files.write(filePath, objectBytes);
         } catch (IOException e) {
@@ -338,6 +479,32 @@ public class SearchEngineInitializer implements IndexationEventListener {
         }
     }
 
+    /**
+     * Last id is taken after the index is saved, so it's not less than any id in the saved index
+     */
+    private void saveCheckpoint() {
+        try {
+            Path filePath = Paths.get(APP_FOLDER + CHECKPOINT_FILE);
+            SerializableCheckpoint checkpoint = new SerializableCheckpoint(uniqueDocumentId.get(), unfinishedFolders.stream()
+                    .map(it -> it.toAbsolutePath().toString())
+                    .collect(Collectors.toList()));
+            Files.write(filePath, config.asByteArray(checkpoint));
+        } catch (IOException e) {
+            LOG.warn("Can't save checkpoint state", e);
+        }
+    }
+
+    private Charset getCharset(String charsetName) {
+        try {
+            if (charsetName != null) {
+                return Charset.forName(charsetName);
+            }
+        } catch (IllegalArgumentException ex) {
+            LOG.warn("Unsupported charset {} of the saved document", charsetName);
+        }
+        return StandardCharsets.UTF_8;
+    }
+
     private void removeFileIfExist(Path filePath) {
         if (Files.exists(filePath)) {
             try {
@@ -0,0 +1,31 @@
+package org.search.engine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lane of the task in the {@link PriorityExecutorService}. Task waiting in the queue gets
+ * ahead of tasks of higher lanes submitted later than its aging delay, so background
+ * work is delayed by the interactive one but never starved.
+ */
+public enum TaskPriority {
+    // Files indexed by user request
+    INTERACTIVE(0),
+    // Changes of tracked files coming from the filesystem watcher
+    LIVE(500),
+    // Changes of tracked files made while application was not running
+    REPLAY(5_000),
+    // Indexation of folders
+    BULK(30_000),
+    // Large files of background indexation
+    LARGE_FILE(60_000);
+
+    private final long agingDelayNanos;
+
+    TaskPriority(long agingDelayMillis) {
+        this.agingDelayNanos = TimeUnit.MILLISECONDS.toNanos(agingDelayMillis);
+    }
+
+    long getAgingDelayNanos() {
+        return agingDelayNanos;
+    }
+}
@@ -0,0 +1,91 @@
+package org.search.engine;
+
+/**
+ * Snapshot of the adaptive indexing throttle. Level is the share of the full indexing speed
+ * which is allowed now, it's lowered by searches and grows back when user stops typing.
+ */
+public class ThrottleMetrics {
+
+    private final double level;
+    private final int readLimit;
+    private final int runningReads;
+    private final int writeBatchSize;
+    private final int activeSearches;
+    private final double averageSearchMillis;
+    private final long waitedReads;
+    private final long deferredWriteBatches;
+
+    public ThrottleMetrics(double level, int readLimit, int runningReads, int writeBatchSize, int activeSearches,
+                           double averageSearchMillis, long waitedReads, long deferredWriteBatches) {
+        this.level = level;
+        this.readLimit = readLimit;
+        this.runningReads = runningReads;
+        this.writeBatchSize = writeBatchSize;
+        this.activeSearches = activeSearches;
+        this.averageSearchMillis = averageSearchMillis;
+        this.waitedReads = waitedReads;
+        this.deferredWriteBatches = deferredWriteBatches;
+    }
+
+    public double getLevel() {
+        return level;
+    }
+
+    public boolean isThrottled() {
+        return level < 1;
+    }
+
+    /**
+     * @return count of documents of folder indexation which can be read at the same time
+     */
+    public int getReadLimit() {
+        return readLimit;
+    }
+
+    public int getRunningReads() {
+        return runningReads;
+    }
+
+    /**
+     * @return count of queue events which are applied to the index by one run of the scheduler
+     */
+    public int getWriteBatchSize() {
+        return writeBatchSize;
+    }
+
+    public int getActiveSearches() {
+        return activeSearches;
+    }
+
+    public double getAverageSearchMillis() {
+        return averageSearchMillis;
+    }
+
+    /**
+     * @return count of reads which waited for the throttle
+     */
+    public long getWaitedReads() {
+        return waitedReads;
+    }
+
+    /**
+     * @return count of scheduler runs which left events in the queue for the next run
+     */
+    public long getDeferredWriteBatches() {
+        return deferredWriteBatches;
+    }
+
+    @Override
+    public String toString() {
+        return "ThrottleMetrics{" +
+                "level=" + level +
+                ", readLimit=" + readLimit +
+                ", runningReads=" + runningReads +
+                ", writeBatchSize=" + writeBatchSize +
+                ", activeSearches=" + activeSearches +
+                ", averageSearchMillis=" + averageSearchMillis +
+                ", waitedReads=" + waitedReads +
+                ", deferredWriteBatches=" + deferredWriteBatches +
+                '}';
+    }
+}
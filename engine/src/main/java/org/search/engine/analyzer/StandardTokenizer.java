@@ -22,29 +22,33 @@ public class StandardTokenizer implements Tokenizer {
     public List<Token> tokenize(String content) {
         if (content != null && !content.isEmpty()) {
             List<Token> tokens = new ArrayList<>();
-            StringBuilder token = new StringBuilder();
-            boolean isToken = false;
-            int position = 0;
+            tokenize(content, (token, position) -> tokens.add(new Token(token.toString(), position)));
+            return tokens;
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tokenize(CharSequence content, TokenConsumer consumer) {
+        if (content != null && content.length() > 0) {
+            int position = -1;
             for (int i = 0; i < content.length(); i++) {
-                char ch = content.charAt(i);
-                if (isPunctuationMark(ch) && isToken) {
-                    tokens.add(new Token(token.toString(), position));
-                    token = new StringBuilder();
-                    isToken = false;
-                } else if (!isPunctuationMark(ch)) {
-                    token.append(ch);
-                    if (!isToken) {
-                        isToken = true;
-                        position = i;
+                if (isPunctuationMark(content.charAt(i))) {
+                    if (position >= 0) {
+                        consumer.accept(content.subSequence(position, i), position);
+                        position = -1;
                     }
+                } else if (position < 0) {
+                    position = i;
                 }
             }
-            if (token.length() > 0) {
-                tokens.add(new Token(token.toString(), position));
+            if (position >= 0) {
+                consumer.accept(content.subSequence(position, content.length()), position);
             }
-            return tokens;
-        } else {
-            return Collections.emptyList();
         }
     }
 
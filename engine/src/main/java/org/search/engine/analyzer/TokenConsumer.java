@@ -0,0 +1,19 @@
+package org.search.engine.analyzer;
+
+/**
+ * Callback which receives tokens directly from the tokenized content without
+ * building intermediate token lists. The given char sequence can be a view on
+ * the reused buffer, so it's valid only during the call and should be converted
+ * to string if it must be stored.
+ */
+@FunctionalInterface
+public interface TokenConsumer {
+
+    /**
+     * Method called for each token found in the content
+     *
+     * @param token    The view on the token chars
+     * @param position The position of the token start in the content
+     */
+    void accept(CharSequence token, int position);
+}
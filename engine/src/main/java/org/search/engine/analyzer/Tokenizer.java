@@ -17,4 +17,18 @@ public interface Tokenizer {
      * @return The list of splitted tokens
      */
     List<Token> tokenize(String content);
+
+    /**
+     * Method which split incoming content to the certain tokens and pass them to the consumer
+     * without creating of intermediate objects. Default implementation delegates to the
+     * {@link #tokenize(String)}, tokenizers should override it to read content directly.
+     *
+     * @param content  The content which should be divided by the certain rules
+     * @param consumer The consumer of found tokens
+     */
+    default void tokenize(CharSequence content, TokenConsumer consumer) {
+        if (content != null && content.length() > 0) {
+            tokenize(content.toString()).forEach(token -> consumer.accept(token.getContent(), token.getPositionInRow()));
+        }
+    }
 }
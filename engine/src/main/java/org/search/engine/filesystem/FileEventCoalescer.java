@@ -0,0 +1,186 @@
+package org.search.engine.filesystem;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static org.search.engine.filesystem.FilesystemEvent.CREATED;
+import static org.search.engine.filesystem.FilesystemEvent.DELETED;
+import static org.search.engine.filesystem.FilesystemEvent.MODIFIED;
+
+/**
+ * Collapses bursts of file events into the single net event per path. Event is passed further
+ * only when no other events came for its path during the quiet window, so several events fired
+ * by one save or build step cause one reindex. Scheduler is used only as the timer, net events
+ * are passed by the dispatcher one by one in order they became quiet.
+ */
+class FileEventCoalescer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileEventCoalescer.class);
+
+    private final long quietWindowNanos;
+    private final ScheduledExecutorService executor;
+    private final Executor dispatcher;
+    private final BiConsumer<FilesystemEvent, Path> target;
+    // Ordered by the time of the last event, so the oldest quiet paths are at the beginning
+    private final Map<Path, PendingEvent> pendingEvents = new LinkedHashMap<>();
+    // Quiet events which wait for the dispatcher, guarded by itself
+    private final Queue<Map.Entry<Path, FilesystemEvent>> readyEvents = new ArrayDeque<>();
+    private boolean isFlushScheduled;
+    private boolean isDispatching;
+
+    /**
+     * @param quietWindowMillis The time without events after which net event of the path is passed,
+     *                          zero means that events are passed immediately
+     * @param executor          The scheduler which checks for the quiet events
+     * @param dispatcher        The executor which runs the receiver, it must not wait for the place
+     *                          in its queue, because it's called by the scheduler thread
+     * @param target            The receiver of the net events
+     */
+    FileEventCoalescer(long quietWindowMillis, ScheduledExecutorService executor, Executor dispatcher,
+                       BiConsumer<FilesystemEvent, Path> target) {
+        this.quietWindowNanos = TimeUnit.MILLISECONDS.toNanos(quietWindowMillis);
+        this.executor = executor;
+        this.dispatcher = dispatcher;
+        this.target = target;
+    }
+
+    void onFileEvent(FilesystemEvent event, Path filePath) {
+        if (quietWindowNanos == 0) {
+            dispatch(Collections.singletonList(new SimpleImmutableEntry<>(filePath, event)));
+            return;
+        }
+        synchronized (pendingEvents) {
+            PendingEvent pending = pendingEvents.remove(filePath);
+            FilesystemEvent netEvent = pending == null ? event : merge(pending.event, event);
+            if (netEvent != null) {
+                pendingEvents.put(filePath, new PendingEvent(netEvent, System.nanoTime()));
+            } else {
+                LOG.debug("Events of file: {} canceled each other", filePath);
+            }
+            if (!isFlushScheduled && !pendingEvents.isEmpty()) {
+                scheduleFlush(quietWindowNanos);
+            }
+        }
+    }
+
+    /**
+     * @return net event of two sequential events or null if they cancel each other
+     */
+    static FilesystemEvent merge(FilesystemEvent previous, FilesystemEvent next) {
+        switch (previous) {
+            case CREATED:
+                //File which appeared and disappeared was never seen by the index
+                return next == DELETED ? null : CREATED;
+            case MODIFIED:
+                return next == DELETED ? DELETED : MODIFIED;
+            case DELETED:
+                //File replaced by the new one, for example by the atomic save of editor. It's passed as created,
+                //because deleted file could be never indexed, created file which is indexed is updated
+                return next == DELETED ? DELETED : CREATED;
+            default:
+                return next;
+        }
+    }
+
+    private void flush() {
+        List<Map.Entry<Path, FilesystemEvent>> quietEvents = new ArrayList<>();
+        synchronized (pendingEvents) {
+            long now = System.nanoTime();
+            Iterator<Map.Entry<Path, PendingEvent>> iterator = pendingEvents.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, PendingEvent> entry = iterator.next();
+                long quietTime = now - entry.getValue().time;
+                if (quietTime < quietWindowNanos) {
+                    scheduleFlush(quietWindowNanos - quietTime);
+                    break;
+                }
+                quietEvents.add(new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().event));
+                iterator.remove();
+            }
+            if (pendingEvents.isEmpty()) {
+                isFlushScheduled = false;
+            }
+        }
+        if (!quietEvents.isEmpty()) {
+            dispatch(quietEvents);
+        }
+    }
+
+    /**
+     * Only one dispatching task runs at a time, so events of the same path are not reordered
+     */
+    private void dispatch(List<Map.Entry<Path, FilesystemEvent>> events) {
+        synchronized (readyEvents) {
+            readyEvents.addAll(events);
+            if (isDispatching) {
+                return;
+            }
+            isDispatching = true;
+        }
+        try {
+            dispatcher.execute(this::passReadyEvents);
+        } catch (RejectedExecutionException ex) {
+            synchronized (readyEvents) {
+                LOG.warn("Events of {} files are dropped, executor is shut down", readyEvents.size());
+                readyEvents.clear();
+                isDispatching = false;
+            }
+        }
+    }
+
+    private void passReadyEvents() {
+        while (true) {
+            Map.Entry<Path, FilesystemEvent> entry;
+            synchronized (readyEvents) {
+                entry = readyEvents.poll();
+                if (entry == null) {
+                    isDispatching = false;
+                    return;
+                }
+            }
+            try {
+                target.accept(entry.getValue(), entry.getKey());
+            } catch (RuntimeException ex) {
+                LOG.warn("Handling of event: {} for file: {} finished with exception", entry.getValue(), entry.getKey(), ex);
+            }
+        }
+    }
+
+    private void scheduleFlush(long delayNanos) {
+        try {
+            executor.schedule(this::flush, delayNanos, TimeUnit.NANOSECONDS);
+            isFlushScheduled = true;
+        } catch (RejectedExecutionException ex) {
+            LOG.warn("Events of {} files are dropped, executor is shut down", pendingEvents.size());
+            pendingEvents.clear();
+            isFlushScheduled = false;
+        }
+    }
+
+    private static class PendingEvent {
+
+        private final FilesystemEvent event;
+        private final long time;
+
+        private PendingEvent(FilesystemEvent event, long time) {
+            this.event = event;
+            this.time = time;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.search.engine.filesystem;
 
 import org.search.engine.SearchEngineExecutors;
 import org.search.engine.SearchEngineInitializationListener;
+import org.search.engine.TaskPriority;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +12,7 @@ import java.nio.file.Path;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,11 +37,36 @@ public class FilesystemNotificationManager implements FilesystemNotificationSche
     private final Set<Path> trackedFolders;
     private final List<FilesystemEventListener> listeners = new ArrayList<>();
     private final WatchService watchService;
+    // Excluded folders are not tracked and their events are not passed to the listeners
+    private final PathFilter pathFilter;
+    // File events are passed to the listeners after the burst of events of the same file is finished
+    private final FileEventCoalescer eventCoalescer;
+    private final SearchEngineExecutors executors;
     private ScheduledExecutorService notificationExecutor;
 
     public FilesystemNotificationManager(WatchService watchService, Set<Path> trackedFiles, Set<Path> trackedFolders,
                                          SearchEngineInitializationListener listener) {
+        this(watchService, trackedFiles, trackedFolders, new PathFilter(PathRules.DEFAULT, Collections.emptyMap()), listener);
+    }
+
+    public FilesystemNotificationManager(WatchService watchService, Set<Path> trackedFiles, Set<Path> trackedFolders,
+                                         PathFilter pathFilter, SearchEngineInitializationListener listener) {
+        this(watchService, trackedFiles, trackedFolders, pathFilter, 0, SearchEngineExecutors.getShared(), listener);
+    }
+
+    /**
+     * @param eventQuietWindowMillis The time without events of the file after which its net event is passed
+     *                               to the listeners, events are passed immediately if it's zero
+     * @param executors              The executors of the engine which owns the manager
+     */
+    public FilesystemNotificationManager(WatchService watchService, Set<Path> trackedFiles, Set<Path> trackedFolders,
+                                         PathFilter pathFilter, long eventQuietWindowMillis, SearchEngineExecutors executors,
+                                         SearchEngineInitializationListener listener) {
+        this.executors = executors;
+        this.eventCoalescer = new FileEventCoalescer(eventQuietWindowMillis, executors.getScheduledExecutor(), this::dispatch,
+                (event, filePath) -> listeners.forEach(it -> it.onFileChanged(event, filePath)));
         this.watchService = watchService;
+        this.pathFilter = pathFilter;
         this.trackedFiles = trackedFiles;
         this.trackedFolders = trackedFolders;
         applyIndexChangesIfNeeded(listener);
@@ -100,6 +127,10 @@ public class FilesystemNotificationManager implements FilesystemNotificationSche
         if (folderPath == null) {
             throw new IllegalArgumentException("Folder path must not be null");
         }
+        if (!pathFilter.isIndexed(folderPath, true)) {
+            LOG.debug("Folder {} excluded and will not be tracked", folderPath);
+            return false;
+        }
         return registerFolder(folderPath, true);
     }
 
@@ -162,13 +193,17 @@ public class FilesystemNotificationManager implements FilesystemNotificationSche
     public void onFolderEvent(FilesystemEvent event, Path folderPath) {
         //Created folder in tracked folder, it should be tracked
         if (trackedFolders.contains(folderPath.getParent()) && event == CREATED) {
-            listeners.forEach(it -> it.onFolderChanged(event, folderPath));
+            if (!pathFilter.accept(folderPath, true)) {
+                LOG.debug("Created folder {} excluded", folderPath);
+                return;
+            }
+            dispatch(() -> listeners.forEach(it -> it.onFolderChanged(event, folderPath)));
         } else if (trackedFolders.contains(folderPath)) {
             //Delete of tracking folder
             if (event == DELETED) {
                 unregisterFolder(folderPath);
             }
-            listeners.forEach(it -> it.onFolderChanged(event, folderPath));
+            dispatch(() -> listeners.forEach(it -> it.onFolderChanged(event, folderPath)));
         } else if (event == DELETED) {
             try {
                 //Delete of not tracking folder but containing tracked file
@@ -192,14 +227,17 @@ public class FilesystemNotificationManager implements FilesystemNotificationSche
         final Path folderPath = filePath.getParent();
         final boolean isTrackedFile = trackedFiles.contains(filePath);
         final boolean isTrackedFolder = trackedFolders.contains(folderPath);
-        if (isTrackedFile || isTrackedFolder) {
+        if (isTrackedFolder && isIgnoreFile(filePath)) {
+            pathFilter.invalidateCache();
+        }
+        if (isTrackedFile || isTrackedFolder && (event == DELETED || pathFilter.accept(filePath, false))) {
             //Find folder which we should not track any more and remove it
             if (isTrackedFile && event == DELETED) {
                 if (!isTrackedFolder) {
                     unregisterFolder(folderPath);
                 }
             }
-            listeners.forEach(it -> it.onFileChanged(event, filePath));
+            eventCoalescer.onFileEvent(event, filePath);
         }
     }
 
@@ -241,6 +279,11 @@ public class FilesystemNotificationManager implements FilesystemNotificationSche
         }
 
         for (Path folder : trackedFolders) {
+            if (!pathFilter.isIndexed(folder, true)) {
+                // Rules were changed after folder indexation, folder will be removed by index changes
+                currentElement++;
+                continue;
+            }
             registerFolder(folder, false);
             Path parentFolder = folder.getParent();
             if (parentFolder != null && !trackedFolders.contains(parentFolder)) {
@@ -253,6 +296,11 @@ public class FilesystemNotificationManager implements FilesystemNotificationSche
         LOG.info("Finish applying index changes");
     }
 
+    private boolean isIgnoreFile(Path filePath) {
+        Path fileName = filePath.getFileName();
+        return fileName != null && (".gitignore".equals(fileName.toString()) || ".ignore".equals(fileName.toString()));
+    }
+
     private boolean registerFolder(Path folderPath, boolean shouldTrack) {
         try {
             boolean isRegistered = false;
@@ -274,9 +322,17 @@ public class FilesystemNotificationManager implements FilesystemNotificationSche
         }
     }
 
+    /**
+     * Listeners are called by the indexing pool, because scheduler thread which watches for events
+     * must not wait for indexing tasks submitted by them
+     */
+    private void dispatch(Runnable notification) {
+        executors.getExecutorService().executeUnbounded(notification, TaskPriority.LIVE);
+    }
+
     private void scheduleNotificationIfNeeded() {
         if (notificationExecutor == null) {
-            notificationExecutor = SearchEngineExecutors.getScheduledExecutor();
+            notificationExecutor = executors.getScheduledExecutor();
             FilesystemNotificationScheduler notificationScheduler = new FilesystemNotificationScheduler(registeredFolders, watchService);
             notificationScheduler.addListener(this);
             notificationExecutor.scheduleWithFixedDelay(notificationScheduler, 0, FILES_TRACK_DELAY_IN_SEC, TimeUnit.SECONDS);
@@ -0,0 +1,243 @@
+package org.search.engine.filesystem;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Filter which decides should file or folder be indexed and tracked according to
+ * the {@link PathRules} of its indexed root. Rules of root are applied to all paths
+ * inside of it, the most nested root wins. Paths outside of configured roots use
+ * default rules relative to the filesystem root. Parsed ignore files are cached per folder.
+ */
+public class PathFilter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PathFilter.class);
+    private static final String[] IGNORE_FILES = {".gitignore", ".ignore"};
+    // Ignore files of the folders above the repository root are not applied
+    private static final String REPOSITORY_FOLDER = ".git";
+
+    private final CompiledRules defaultRules;
+    private final Map<Path, CompiledRules> rootRules = new ConcurrentHashMap<>();
+    // Ignore patterns applied to the content of folder, from the top folder to the folder itself
+    private final Map<Path, List<IgnorePattern>> ignorePatterns = new ConcurrentHashMap<>();
+
+    public PathFilter(PathRules defaultRules, Map<Path, PathRules> rootRules) {
+        this.defaultRules = new CompiledRules(null, defaultRules);
+        rootRules.forEach((root, rules) -> this.rootRules.put(root.normalize(), new CompiledRules(root.normalize(), rules)));
+    }
+
+    /**
+     * Method check only the path itself, it's used when parent folder is already accepted
+     *
+     * @param path        The path to the file or folder
+     * @param isDirectory Identify if the path is folder
+     * @return identify if file should be indexed or folder should be walked and tracked
+     */
+    public boolean accept(Path path, boolean isDirectory) {
+        CompiledRules rules = getRules(path);
+        if (rules.isEmpty()) {
+            return true;
+        }
+        Path relativePath = rules.relativize(path);
+        if (relativePath.getFileName() == null || relativePath.toString().isEmpty()) {
+            return true;
+        }
+        for (Glob exclude : rules.excludes) {
+            if (exclude.matches(relativePath)) {
+                return false;
+            }
+        }
+        if (!isDirectory && !rules.includes.isEmpty()
+                && rules.includes.stream().noneMatch(include -> include.matches(relativePath))) {
+            return false;
+        }
+        return !rules.useIgnoreFiles || !isIgnored(path, isDirectory, rules.root);
+    }
+
+    /**
+     * Method check the path and all its parent folders up to the root of rules
+     *
+     * @see #accept(Path, boolean)
+     */
+    public boolean isIndexed(Path path, boolean isDirectory) {
+        CompiledRules rules = getRules(path);
+        if (rules.isEmpty()) {
+            return true;
+        }
+        Path current = path.getParent();
+        while (current != null && (rules.root == null || current.startsWith(rules.root)) && !current.equals(rules.root)) {
+            if (!accept(current, true)) {
+                return false;
+            }
+            current = current.getParent();
+        }
+        return accept(path, isDirectory);
+    }
+
+    /**
+     * Method should be called when ignore file was changed, so it will be parsed again
+     */
+    public void invalidateCache() {
+        ignorePatterns.clear();
+    }
+
+    private CompiledRules getRules(Path path) {
+        CompiledRules result = defaultRules;
+        for (CompiledRules rules : rootRules.values()) {
+            if (path.startsWith(rules.root) && (result.root == null || rules.root.startsWith(result.root))) {
+                result = rules;
+            }
+        }
+        return result;
+    }
+
+    private boolean isIgnored(Path path, boolean isDirectory, Path root) {
+        Path folder = path.getParent();
+        if (folder == null) {
+            return false;
+        }
+        boolean isIgnored = false;
+        for (IgnorePattern pattern : getIgnorePatterns(folder, root)) {
+            if (isIgnored == pattern.isNegated && pattern.matches(pattern.folder.relativize(path), isDirectory)) {
+                isIgnored = !pattern.isNegated;
+            }
+        }
+        return isIgnored;
+    }
+
+    private List<IgnorePattern> getIgnorePatterns(Path folder, Path root) {
+        List<IgnorePattern> patterns = ignorePatterns.get(folder);
+        if (patterns == null) {
+            patterns = new ArrayList<>();
+            Path parent = folder.getParent();
+            boolean isTopFolder = parent == null || folder.equals(root) || Files.isDirectory(folder.resolve(REPOSITORY_FOLDER));
+            if (!isTopFolder) {
+                patterns.addAll(getIgnorePatterns(parent, root));
+            }
+            for (String ignoreFile : IGNORE_FILES) {
+                patterns.addAll(readIgnoreFile(folder, folder.resolve(ignoreFile)));
+            }
+            patterns = patterns.isEmpty() ? Collections.emptyList() : patterns;
+            ignorePatterns.put(folder, patterns);
+        }
+        return patterns;
+    }
+
+    private static List<IgnorePattern> readIgnoreFile(Path folder, Path ignoreFile) {
+        if (!Files.isRegularFile(ignoreFile)) {
+            return Collections.emptyList();
+        }
+        try {
+            return Files.readAllLines(ignoreFile, StandardCharsets.UTF_8).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .map(line -> new IgnorePattern(folder, line))
+                    .collect(Collectors.toList());
+        } catch (IOException | RuntimeException ex) {
+            LOG.warn("Can't read ignore file: {}", ignoreFile, ex);
+            return Collections.emptyList();
+        }
+    }
+
+    private static class CompiledRules {
+
+        private final Path root;
+        private final List<Glob> includes;
+        private final List<Glob> excludes;
+        private final boolean useIgnoreFiles;
+
+        private CompiledRules(Path root, PathRules rules) {
+            this.root = root;
+            this.includes = rules.getIncludes().stream().map(Glob::of).collect(Collectors.toList());
+            this.excludes = rules.getExcludes().stream().map(Glob::of).collect(Collectors.toList());
+            this.useIgnoreFiles = rules.isUseIgnoreFiles();
+        }
+
+        private boolean isEmpty() {
+            return includes.isEmpty() && excludes.isEmpty() && !useIgnoreFiles;
+        }
+
+        private Path relativize(Path path) {
+            if (root != null) {
+                return root.relativize(path);
+            }
+            Path fileSystemRoot = path.getRoot();
+            return fileSystemRoot != null ? fileSystemRoot.relativize(path) : path;
+        }
+    }
+
+    /**
+     * Glob without slash matches the name, otherwise the relative path
+     */
+    private static class Glob {
+
+        private final PathMatcher matcher;
+        private final boolean isNameGlob;
+
+        private Glob(String glob, boolean isNameGlob) {
+            this.isNameGlob = isNameGlob;
+            this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        }
+
+        private static Glob of(String glob) {
+            if (glob.startsWith("**/") && glob.indexOf('/', 3) < 0) {
+                glob = glob.substring(3);
+            }
+            return new Glob(glob, glob.indexOf('/') < 0);
+        }
+
+        private boolean matches(Path relativePath) {
+            return isNameGlob ? matcher.matches(relativePath.getFileName()) : matcher.matches(relativePath);
+        }
+    }
+
+    /**
+     * Pattern of the ignore file, supports negation, folder only patterns and anchoring by slash
+     */
+    private static class IgnorePattern {
+
+        private final Path folder;
+        private final Glob glob;
+        private final boolean isNegated;
+        private final boolean isDirectoryOnly;
+
+        private IgnorePattern(Path folder, String pattern) {
+            this.folder = folder;
+            this.isNegated = pattern.startsWith("!");
+            if (isNegated) {
+                pattern = pattern.substring(1);
+            } else if (pattern.startsWith("\\")) {
+                pattern = pattern.substring(1);
+            }
+            this.isDirectoryOnly = pattern.endsWith("/");
+            if (isDirectoryOnly) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            // Braces are not special in ignore files
+            pattern = pattern.replace("{", "\\{").replace("}", "\\}");
+            if (pattern.startsWith("/")) {
+                // Anchored pattern is matched only against the path relative to the folder of ignore file
+                this.glob = new Glob(pattern.substring(1), false);
+            } else {
+                this.glob = Glob.of(pattern);
+            }
+        }
+
+        private boolean matches(Path relativePath, boolean isDirectory) {
+            return (isDirectory || !isDirectoryOnly) && glob.matches(relativePath);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.search.engine.filesystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable include and exclude rules for the files of indexed folder. Glob without
+ * slash is matched against the name of file or folder at any depth, glob with slash is
+ * matched against the path relative to the folder of rules (see {@link java.nio.file.FileSystem#getPathMatcher}).
+ * Excluded folders are not walked and not tracked. If include globs are defined, only
+ * matched files are indexed. Optionally rules of .gitignore and .ignore files are applied.
+ */
+public class PathRules {
+
+    public static final PathRules DEFAULT = builder().build();
+
+    private final List<String> includes;
+    private final List<String> excludes;
+    private final boolean useIgnoreFiles;
+
+    private PathRules(Builder builder) {
+        this.includes = Collections.unmodifiableList(new ArrayList<>(builder.includes));
+        this.excludes = Collections.unmodifiableList(new ArrayList<>(builder.excludes));
+        this.useIgnoreFiles = builder.useIgnoreFiles;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    public boolean isUseIgnoreFiles() {
+        return useIgnoreFiles;
+    }
+
+    public static class Builder {
+
+        private final List<String> includes = new ArrayList<>();
+        private final List<String> excludes = new ArrayList<>();
+        private boolean useIgnoreFiles;
+
+        private Builder() {
+        }
+
+        /**
+         * @param globs The globs of files which should be indexed, other files are skipped
+         */
+        public Builder include(String... globs) {
+            includes.addAll(Arrays.asList(globs));
+            return this;
+        }
+
+        /**
+         * @param globs The globs of files and folders which should be skipped
+         */
+        public Builder exclude(String... globs) {
+            excludes.addAll(Arrays.asList(globs));
+            return this;
+        }
+
+        /**
+         * @param useIgnoreFiles Identify if rules of .gitignore and .ignore files should be applied
+         */
+        public Builder useIgnoreFiles(boolean useIgnoreFiles) {
+            this.useIgnoreFiles = useIgnoreFiles;
+            return this;
+        }
+
+        public PathRules build() {
+            return new PathRules(this);
+        }
+    }
+}
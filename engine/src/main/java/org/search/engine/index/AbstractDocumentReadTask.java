@@ -1,51 +1,146 @@
 package org.search.engine.index;
 
+import org.search.engine.SearchEngineConfiguration;
+import org.search.engine.analyzer.Tokenizer;
 import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
 import org.search.engine.model.EventType;
 import org.search.engine.model.IndexationEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.stream.Stream;
 
 abstract class AbstractDocumentReadTask {
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractDocumentReadTask.class);
+    // Collected tokens are passed to the queue by batches, so memory of the task doesn't depend on the file size
+    private static final int TOKENS_BATCH_SIZE = 50_000;
 
-    private final Map<Path, Document> indexedDocuments;
+    private final DocumentRegistry indexedDocuments;
     private final BlockingQueue<IndexationEvent> documentLinesQueue;
+    private final Tokenizer tokenizer;
+    private final SearchEngineConfiguration configuration;
     final Document indexingDocument;
 
-    AbstractDocumentReadTask(Document indexingDocument, Map<Path, Document> indexedDocuments, BlockingQueue<IndexationEvent> documentLinesQueue) {
+    AbstractDocumentReadTask(Document indexingDocument, DocumentRegistry indexedDocuments, BlockingQueue<IndexationEvent> documentLinesQueue,
+                             Tokenizer tokenizer, SearchEngineConfiguration configuration) {
         this.indexedDocuments = indexedDocuments;
         this.indexingDocument = indexingDocument;
         this.documentLinesQueue = documentLinesQueue;
+        this.tokenizer = tokenizer;
+        this.configuration = configuration;
     }
 
     void readFile() {
         long start = System.currentTimeMillis();
-        int documentId = indexingDocument.getId();
-        try (Stream<String> lines = Files.lines(indexingDocument.getPath())) {
-            lines.forEach(line -> {
-                try {
-                    documentLinesQueue.put(new IndexationEvent(EventType.ADD_LINE, documentId, line));
-                } catch (InterruptedException ex) {
-                    LOG.warn("Put line of file: {} to queue interrupted", indexingDocument.getPath(), ex);
-                }
-            });
+        DocumentTokensCollector collector = new DocumentTokensCollector();
+        ContentHasher hasher = configuration.isContentHashing() ? new ContentHasher() : null;
+        try {
+            readContent(tokenizer, configuration.getMaxFileSize(), hasher, collector);
         } catch (IOException ex) {
             LOG.warn("Reading of file: {} finished with exception", indexingDocument.getPath(), ex);
-        } catch (UncheckedIOException ex) {
-            LOG.warn("Unsupported character encoding detected for file: {}", indexingDocument.getPath());
+            if (!isCanceled()) {
+                onReadFailed(collector);
+            }
+            return;
+        }
+        if (isCanceled()) {
+            LOG.debug("Reading of file: {} canceled", indexingDocument.getPath());
+            return;
+        }
+        boolean completed = !collector.isStopped();
+        if (completed && hasher != null) {
+            indexingDocument.setContentLength(hasher.getLength());
+            indexingDocument.setContentHash(hasher.getValue());
+            // Tokens of the document with already indexed content are dropped if none of them were passed to the index
+            if (configuration.isContentDeduplication() && !collector.isFlushed() && indexedDocuments.putDuplicate(indexingDocument)) {
+                LOG.debug("File: {} has the same content as document {}", indexingDocument.getPath(), indexingDocument.getContentOwnerId());
+                return;
+            }
+        }
+        collector.flush();
+        if (!completed) {
+            LOG.info("Only first {} terms of file: {} are indexed", configuration.getMaxDocumentTerms(), indexingDocument.getPath());
         }
         long end = System.currentTimeMillis();
         LOG.debug("Reading of file: {} took {}ms", indexingDocument.getPath(), (end - start));
-        indexedDocuments.put(indexingDocument.getPath(), indexingDocument);
+        indexedDocuments.put(indexingDocument);
+    }
+
+    /**
+     * Content of the failed reading is not known, so the document gets no hash and is not shared with other
+     * documents. Document which tokens are not passed to the index yet is dropped, it's indexed again when
+     * the file is found next time. Otherwise it's registered with the read tokens, so they are removed or
+     * updated with it.
+     */
+    private void onReadFailed(DocumentTokensCollector collector) {
+        if (!collector.isFlushed()) {
+            LOG.info("File: {} is not indexed, reading failed", indexingDocument.getPath());
+            return;
+        }
+        collector.flush();
+        indexedDocuments.put(indexingDocument);
+    }
+
+    /**
+     * Method reads the document from its source, tasks which already have the content stream override it
+     */
+    void readContent(Tokenizer tokenizer, long maxBytes, ContentHasher hasher, DocumentContentReader.LineTokenConsumer consumer)
+            throws IOException {
+        indexingDocument.getSource().readTokens(indexingDocument.getCharset(), tokenizer, maxBytes, hasher, consumer);
+    }
+
+    /**
+     * @return true if indexation of the document was canceled and reading should be stopped
+     */
+    boolean isCanceled() {
+        return false;
+    }
+
+    /**
+     * Tokens are collected in the reading thread, so only unique tokens of the batch goes to the index.
+     * Token repeated in different batches is added again, which doesn't change the index.
+     */
+    private class DocumentTokensCollector implements DocumentContentReader.LineTokenConsumer {
+
+        private final Set<String> documentTokens = new HashSet<>();
+        private int termsCount;
+        private boolean flushed;
+
+        @Override
+        public void accept(CharSequence token, int lineNumber, int column) {
+            if (documentTokens.add(token.toString())) {
+                termsCount++;
+                if (documentTokens.size() >= TOKENS_BATCH_SIZE) {
+                    flush();
+                }
+            }
+        }
+
+        @Override
+        public boolean isStopped() {
+            return termsCount >= configuration.getMaxDocumentTerms() || isCanceled();
+        }
+
+        private boolean isFlushed() {
+            return flushed;
+        }
+
+        private void flush() {
+            flushed = true;
+            int documentId = indexingDocument.getId();
+            for (String token : documentTokens) {
+                try {
+                    documentLinesQueue.put(new IndexationEvent(EventType.ADD, documentId, token));
+                } catch (InterruptedException ex) {
+                    LOG.warn("Put token of file: {} to queue interrupted", indexingDocument.getPath(), ex);
+                }
+            }
+            documentTokens.clear();
+        }
     }
 }
@@ -0,0 +1,39 @@
+package org.search.engine.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Source of the archive entry. Entry is found by reading the archive from the start and it has
+ * the modification time of the archive.
+ */
+class ArchiveEntrySource implements DocumentSource {
+
+    private final Path entryPath;
+
+    ArchiveEntrySource(Path entryPath) {
+        this.entryPath = entryPath;
+    }
+
+    @Override
+    public Path getPath() {
+        return entryPath;
+    }
+
+    @Override
+    public long getVersion() throws IOException {
+        return Files.getLastModifiedTime(ArchiveReader.getFilePath(entryPath)).toMillis();
+    }
+
+    @Override
+    public InputStream openContent() throws IOException {
+        return ArchiveReader.openEntry(entryPath);
+    }
+
+    @Override
+    public boolean exists() {
+        return Files.exists(ArchiveReader.getFilePath(entryPath));
+    }
+}
@@ -0,0 +1,136 @@
+package org.search.engine.index;
+
+import org.search.engine.SearchEngineConfiguration;
+import org.search.engine.analyzer.Tokenizer;
+import org.search.engine.filesystem.PathFilter;
+import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
+import org.search.engine.model.IndexationEvent;
+import org.search.engine.model.IndexationStatistics;
+import org.search.engine.model.IndexationTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Task responsible for indexation of the archive entries. Archive is read as a stream, each text
+ * entry becomes the document with the virtual path and modification time of the archive, binary
+ * and excluded entries are skipped.
+ */
+class ArchiveReadTask implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ArchiveReadTask.class);
+    private static final int ENTRY_BUFFER_SIZE = 16 * 1024;
+
+    private final Path archivePath;
+    private final DocumentRegistry indexedDocuments;
+    private final BlockingQueue<IndexationEvent> documentLinesQueue;
+    private final Tokenizer tokenizer;
+    private final SearchEngineConfiguration configuration;
+    private final PathFilter pathFilter;
+    private final DocumentIdAllocator idAllocator;
+    private final IndexationStatistics statistics;
+    private final IndexationTracker tracker;
+    private final IndexationProgress progress;
+
+    /**
+     * @param tracker  The tracker of folder indexation which collects created documents, it could be null
+     * @param progress The progress of folder indexation, it could be null
+     */
+    ArchiveReadTask(Path archivePath, DocumentRegistry indexedDocuments, BlockingQueue<IndexationEvent> documentLinesQueue,
+                    Tokenizer tokenizer, SearchEngineConfiguration configuration, PathFilter pathFilter,
+                    DocumentIdAllocator idAllocator, IndexationStatistics statistics, IndexationTracker tracker,
+                    IndexationProgress progress) {
+        this.archivePath = archivePath;
+        this.indexedDocuments = indexedDocuments;
+        this.documentLinesQueue = documentLinesQueue;
+        this.tokenizer = tokenizer;
+        this.configuration = configuration;
+        this.pathFilter = pathFilter;
+        this.idAllocator = idAllocator;
+        this.statistics = statistics;
+        this.tracker = tracker;
+        this.progress = progress;
+    }
+
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+        try {
+            long modificationTimestamp = Files.getLastModifiedTime(archivePath).toMillis();
+            ArchiveReader.readEntries(archivePath, new ArchiveReader.EntryVisitor() {
+                @Override
+                public void visitEntry(String entryName, long size, InputStream content) throws IOException {
+                    readEntry(ArchiveReader.getEntryPath(archivePath, entryName), modificationTimestamp, content);
+                }
+
+                @Override
+                public boolean isStopped() {
+                    return isCanceled();
+                }
+            });
+            long end = System.currentTimeMillis();
+            LOG.debug("Reading of archive: {} took {}ms", archivePath, (end - start));
+        } catch (IOException | RuntimeException ex) {
+            LOG.warn("Reading of archive: {} finished with exception", archivePath, ex);
+        } finally {
+            if (progress != null) {
+                progress.onFileProcessed();
+            }
+        }
+    }
+
+    private void readEntry(Path entryPath, long modificationTimestamp, InputStream content) throws IOException {
+        if (!pathFilter.accept(entryPath, false) || indexedDocuments.contains(entryPath)) {
+            return;
+        }
+        InputStream entryContent = new BufferedInputStream(content, ENTRY_BUFFER_SIZE);
+        Charset charset = DocumentContentSniffer.detectCharset(entryContent, configuration.getFallbackCharsets());
+        if (charset == null) {
+            statistics.incrementSkippedBinaryDocuments();
+            LOG.debug("Binary archive entry will be skipped: {}", entryPath);
+            return;
+        }
+        Document document = new Document(idAllocator.allocate(), false, entryPath, modificationTimestamp, charset);
+        if (tracker != null) {
+            tracker.addDocument(document.getId());
+        }
+        new EntryReadTask(document, entryContent).readFile();
+        statistics.incrementIndexedDocuments();
+    }
+
+    private boolean isCanceled() {
+        return tracker != null && tracker.isCanceled();
+    }
+
+    /**
+     * Reading of one entry, content is read from the archive stream instead of the file
+     */
+    private class EntryReadTask extends AbstractDocumentReadTask {
+
+        private final InputStream content;
+
+        private EntryReadTask(Document indexingDocument, InputStream content) {
+            super(indexingDocument, indexedDocuments, documentLinesQueue, tokenizer, configuration);
+            this.content = content;
+        }
+
+        @Override
+        void readContent(Tokenizer tokenizer, long maxBytes, ContentHasher hasher, DocumentContentReader.LineTokenConsumer consumer)
+                throws IOException {
+            DocumentContentReader.readTokens(content, indexingDocument.getCharset(), tokenizer, maxBytes, hasher, consumer);
+        }
+
+        @Override
+        boolean isCanceled() {
+            return ArchiveReadTask.this.isCanceled();
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package org.search.engine.index;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Streaming reader of zip, jar and tar.gz archives. Entries are read one by one directly from the
+ * archive, nothing is extracted to the disk and only the current entry is read at once. Entry of the
+ * archive is addressed by the virtual path {@code archive-path!/entry-path}, so it can be stored
+ * in the index like a regular document.
+ */
+public final class ArchiveReader {
+
+    public static final String ENTRY_SEPARATOR = "!/";
+    private static final int TAR_BLOCK_SIZE = 512;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ArchiveReader() {
+    }
+
+    /**
+     * @return true if the file is an archive which entries can be indexed, it's checked by the file name
+     */
+    public static boolean isArchive(Path filePath) {
+        Path fileName = filePath.getFileName();
+        if (fileName == null) {
+            return false;
+        }
+        String name = fileName.toString().toLowerCase(Locale.ROOT);
+        return isZip(name) || isTarGz(name);
+    }
+
+    /**
+     * @return virtual path of the archive entry
+     */
+    public static Path getEntryPath(Path archivePath, String entryName) {
+        return Paths.get(archivePath.toString() + ENTRY_SEPARATOR + entryName);
+    }
+
+    /**
+     * @return path to the archive which contains the entry or null if path is not the path of the archive entry
+     */
+    public static Path getArchivePath(Path path) {
+        String value = path.toString();
+        int separator = value.indexOf(ENTRY_SEPARATOR);
+        while (separator > 0) {
+            Path archivePath = Paths.get(value.substring(0, separator));
+            if (isArchive(archivePath)) {
+                return archivePath;
+            }
+            separator = value.indexOf(ENTRY_SEPARATOR, separator + 1);
+        }
+        return null;
+    }
+
+    /**
+     * @return path to the archive for the archive entry and the path itself for other files
+     */
+    public static Path getFilePath(Path path) {
+        Path archivePath = getArchivePath(path);
+        return archivePath != null ? archivePath : path;
+    }
+
+    /**
+     * Method passes each regular file of the archive to the visitor. Content stream is valid only
+     * during the visit and must not be closed by the visitor.
+     *
+     * @param archivePath The path to the zip, jar or tar.gz archive
+     * @param visitor     The visitor of the archive entries
+     * @throws IOException if archive can't be read
+     */
+    public static void readEntries(Path archivePath, EntryVisitor visitor) throws IOException {
+        String name = archivePath.getFileName().toString().toLowerCase(Locale.ROOT);
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(archivePath), BUFFER_SIZE)) {
+            if (isZip(name)) {
+                readZipEntries(input, visitor);
+            } else if (isTarGz(name)) {
+                readTarEntries(new GZIPInputStream(input, BUFFER_SIZE), visitor);
+            } else {
+                throw new IOException("Not supported archive: " + archivePath);
+            }
+        }
+    }
+
+    /**
+     * Method opens the content of one archive entry, closing of the stream closes the archive
+     *
+     * @param entryPath The virtual path of the archive entry
+     * @throws IOException if archive can't be read or it doesn't contain the entry
+     */
+    public static InputStream openEntry(Path entryPath) throws IOException {
+        Path archivePath = getArchivePath(entryPath);
+        if (archivePath == null) {
+            throw new IOException("Not an archive entry: " + entryPath);
+        }
+        String entryName = entryPath.toString().substring(archivePath.toString().length() + ENTRY_SEPARATOR.length());
+        if (isZip(archivePath.getFileName().toString().toLowerCase(Locale.ROOT))) {
+            ZipFile zipFile = new ZipFile(archivePath.toFile());
+            ZipEntry entry = zipFile.getEntry(entryName);
+            if (entry == null) {
+                entry = zipFile.getEntry("/" + entryName);
+            }
+            if (entry == null) {
+                zipFile.close();
+                throw new IOException("Entry " + entryName + " not found in archive: " + archivePath);
+            }
+            return new FilterInputStream(zipFile.getInputStream(entry)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        zipFile.close();
+                    }
+                }
+            };
+        }
+        InputStream input = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(archivePath), BUFFER_SIZE), BUFFER_SIZE);
+        try {
+            TarEntry entry;
+            while ((entry = nextTarEntry(input)) != null) {
+                if (entry.isFile && entryName.equals(entry.name)) {
+                    return new BoundedInputStream(input, entry.size, true);
+                }
+                skipFully(input, entry.size + getPadding(entry.size));
+            }
+        } catch (IOException | RuntimeException ex) {
+            input.close();
+            throw ex;
+        }
+        input.close();
+        throw new IOException("Entry " + entryName + " not found in archive: " + archivePath);
+    }
+
+    private static boolean isZip(String name) {
+        return name.endsWith(".zip") || name.endsWith(".jar");
+    }
+
+    private static boolean isTarGz(String name) {
+        return name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    private static void readZipEntries(InputStream input, EntryVisitor visitor) throws IOException {
+        ZipInputStream zipInput = new ZipInputStream(input);
+        ZipEntry entry;
+        while (!visitor.isStopped() && (entry = zipInput.getNextEntry()) != null) {
+            if (!entry.isDirectory()) {
+                visitor.visitEntry(getEntryName(entry.getName()), entry.getSize(), new BoundedInputStream(zipInput, Long.MAX_VALUE, false));
+            }
+            zipInput.closeEntry();
+        }
+    }
+
+    private static void readTarEntries(InputStream input, EntryVisitor visitor) throws IOException {
+        TarEntry entry;
+        while (!visitor.isStopped() && (entry = nextTarEntry(input)) != null) {
+            if (entry.isFile) {
+                BoundedInputStream content = new BoundedInputStream(input, entry.size, false);
+                visitor.visitEntry(entry.name, entry.size, content);
+                skipFully(input, content.remaining + getPadding(entry.size));
+            } else {
+                skipFully(input, entry.size + getPadding(entry.size));
+            }
+        }
+    }
+
+    /**
+     * Reads header of the next tar entry, GNU long names are supported, other extended headers are skipped
+     *
+     * @return header of the entry or null at the end of archive
+     */
+    private static TarEntry nextTarEntry(InputStream input) throws IOException {
+        byte[] header = new byte[TAR_BLOCK_SIZE];
+        String longName = null;
+        while (true) {
+            if (!readBlock(input, header) || header[0] == 0) {
+                return null;
+            }
+            long size = parseOctal(header, 124, 12);
+            byte type = header[156];
+            if (type == 'L') {
+                byte[] name = new byte[(int) size];
+                readFully(input, name, name.length);
+                skipFully(input, getPadding(size));
+                longName = parseString(name, 0, name.length);
+                continue;
+            }
+            String name = longName;
+            if (name == null) {
+                name = parseString(header, 0, 100);
+                String prefix = parseString(header, 345, 155);
+                if (!prefix.isEmpty() && header[257] == 'u') {
+                    name = prefix + "/" + name;
+                }
+            }
+            return new TarEntry(getEntryName(name), size, type == '0' || type == 0);
+        }
+    }
+
+    private static String getEntryName(String name) {
+        int start = 0;
+        while (start < name.length() && name.charAt(start) == '/') {
+            start++;
+        }
+        if (name.startsWith("./", start)) {
+            start += 2;
+        }
+        return name.substring(start);
+    }
+
+    private static boolean readBlock(InputStream input, byte[] block) throws IOException {
+        int read = 0;
+        while (read < block.length) {
+            int count = input.read(block, read, block.length - read);
+            if (count < 0) {
+                return false;
+            }
+            read += count;
+        }
+        return true;
+    }
+
+    private static void readFully(InputStream input, byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = input.read(buffer, read, length - read);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of tar archive");
+            }
+            read += count;
+        }
+    }
+
+    private static void skipFully(InputStream input, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = input.skip(remaining);
+            if (skipped <= 0) {
+                if (input.read() < 0) {
+                    throw new EOFException("Unexpected end of tar archive");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static long getPadding(long size) {
+        long rest = size % TAR_BLOCK_SIZE;
+        return rest == 0 ? 0 : TAR_BLOCK_SIZE - rest;
+    }
+
+    private static long parseOctal(byte[] header, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte current = header[i];
+            if (current == 0 || current == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            value = (value << 3) + (current - '0');
+        }
+        return value;
+    }
+
+    private static String parseString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Visitor of the archive entries
+     */
+    public interface EntryVisitor {
+
+        /**
+         * @param entryName The path of the entry inside of the archive
+         * @param size      The size of the entry content or -1 if it's unknown
+         * @param content   The stream of the entry content, it's valid only during the call
+         */
+        void visitEntry(String entryName, long size, InputStream content) throws IOException;
+
+        /**
+         * @return true if other entries should not be read
+         */
+        default boolean isStopped() {
+            return false;
+        }
+    }
+
+    private static class TarEntry {
+
+        private final String name;
+        private final long size;
+        private final boolean isFile;
+
+        private TarEntry(String name, long size, boolean isFile) {
+            this.name = name;
+            this.size = size;
+            this.isFile = isFile;
+        }
+    }
+
+    /**
+     * Stream of the entry content, it returns end of stream after the entry size and doesn't
+     * close the archive stream if it's not owned by the entry
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+
+        private final boolean ownsInput;
+        private long remaining;
+
+        private BoundedInputStream(InputStream input, long size, boolean ownsInput) {
+            super(input);
+            this.remaining = size;
+            this.ownsInput = ownsInput;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int value = super.read();
+            if (value >= 0) {
+                remaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(Math.min(count, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (ownsInput) {
+                super.close();
+            }
+        }
+    }
+}
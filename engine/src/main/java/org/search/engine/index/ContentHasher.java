@@ -0,0 +1,134 @@
+package org.search.engine.index;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming implementation of the XXH64 hash. It's used for detection of documents whose
+ * content was not changed, so it's computed over raw bytes while document is read.
+ * Instance is not thread safe and can be reused after {@link #reset()}.
+ */
+public final class ContentHasher {
+
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    // Bytes of not complete stripe, they are processed with the next update or digest
+    private final ByteBuffer stripe = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long totalLength;
+
+    public ContentHasher() {
+        reset();
+    }
+
+    public void reset() {
+        v1 = PRIME_1 + PRIME_2;
+        v2 = PRIME_2;
+        v3 = 0;
+        v4 = -PRIME_1;
+        totalLength = 0;
+        stripe.clear();
+    }
+
+    /**
+     * Method add bytes of the buffer region to the hash, position of the buffer is not changed
+     */
+    public void update(ByteBuffer buffer, int start, int end) {
+        ByteBuffer input = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        totalLength += end - start;
+        int position = start;
+        if (stripe.position() > 0) {
+            while (position < end && stripe.hasRemaining()) {
+                stripe.put(input.get(position++));
+            }
+            if (stripe.hasRemaining()) {
+                return;
+            }
+            processStripe(stripe, 0);
+            stripe.clear();
+        }
+        for (; position + STRIPE <= end; position += STRIPE) {
+            processStripe(input, position);
+        }
+        while (position < end) {
+            stripe.put(input.get(position++));
+        }
+    }
+
+    public void update(byte[] bytes) {
+        update(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * @return hash of all added bytes, hasher state is not changed
+     */
+    public long getValue() {
+        long hash;
+        if (totalLength >= STRIPE) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = PRIME_5;
+        }
+        hash += totalLength;
+
+        int position = 0;
+        int end = stripe.position();
+        for (; position + 8 <= end; position += 8) {
+            hash ^= round(0, stripe.getLong(position));
+            hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+        }
+        if (position + 4 <= end) {
+            hash ^= (stripe.getInt(position) & 0xFFFFFFFFL) * PRIME_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+            position += 4;
+        }
+        for (; position < end; position++) {
+            hash ^= (stripe.get(position) & 0xFF) * PRIME_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME_1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    /**
+     * @return count of all added bytes
+     */
+    public long getLength() {
+        return totalLength;
+    }
+
+    private void processStripe(ByteBuffer input, int position) {
+        v1 = round(v1, input.getLong(position));
+        v2 = round(v2, input.getLong(position + 8));
+        v3 = round(v3, input.getLong(position + 16));
+        v4 = round(v4, input.getLong(position + 24));
+    }
+
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME_2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME_1;
+    }
+
+    private static long mergeRound(long accumulator, long value) {
+        accumulator ^= round(0, value);
+        return accumulator * PRIME_1 + PRIME_4;
+    }
+}
@@ -0,0 +1,40 @@
+package org.search.engine.index;
+
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import org.search.engine.model.DocumentRegistry;
+import org.search.engine.tree.SearchEngineTree;
+
+/**
+ * Task moves tokens of the previous content owners to the new ones in the index. It's run by the
+ * index scheduler as callback, so tokens of the previous owners are already applied and the index
+ * is not changed concurrently.
+ */
+class ContentTransferTask implements Runnable {
+
+    private final TIntIntMap transfers;
+    private final SearchEngineTree index;
+    private final DocumentRegistry indexedDocuments;
+
+    /**
+     * @param transfers The ids of previous owners mapped to the new ones
+     */
+    ContentTransferTask(TIntIntMap transfers, SearchEngineTree index, DocumentRegistry indexedDocuments) {
+        this.transfers = transfers;
+        this.index = index;
+        this.indexedDocuments = indexedDocuments;
+    }
+
+    ContentTransferTask(int previousOwnerId, int newOwnerId, SearchEngineTree index, DocumentRegistry indexedDocuments) {
+        this(new TIntIntHashMap(new int[]{previousOwnerId}, new int[]{newOwnerId}), index, indexedDocuments);
+    }
+
+    @Override
+    public void run() {
+        index.remapValues(transfers);
+        transfers.forEachKey(previousOwnerId -> {
+            indexedDocuments.completeTransfer(previousOwnerId);
+            return true;
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package org.search.engine.index;
+
+import org.search.engine.SearchEngineConfiguration;
+import org.search.engine.analyzer.Tokenizer;
+import org.search.engine.model.CancellationToken;
+import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
+import org.search.engine.model.IndexationEvent;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Function;
+
+/**
+ * Task responsible for indexation of several small files of the same folder. Files are read one by
+ * one in the given order, so submission and scheduling are paid once for the whole batch.
+ */
+class DocumentBatchReadTask implements Runnable {
+
+    private final List<Path> files;
+    private final Function<Path, Document> documentFactory;
+    private final DocumentRegistry indexedDocuments;
+    private final BlockingQueue<IndexationEvent> documentLinesQueue;
+    private final Tokenizer tokenizer;
+    private final SearchEngineConfiguration configuration;
+    private final IndexationProgress progress;
+    private final CancellationToken cancellationToken;
+
+    /**
+     * @param documentFactory The function which creates the document of the file, it returns null if file should be skipped
+     */
+    DocumentBatchReadTask(List<Path> files, Function<Path, Document> documentFactory, DocumentRegistry indexedDocuments,
+                          BlockingQueue<IndexationEvent> documentLinesQueue, Tokenizer tokenizer,
+                          SearchEngineConfiguration configuration, IndexationProgress progress, CancellationToken cancellationToken) {
+        this.files = files;
+        this.documentFactory = documentFactory;
+        this.indexedDocuments = indexedDocuments;
+        this.documentLinesQueue = documentLinesQueue;
+        this.tokenizer = tokenizer;
+        this.configuration = configuration;
+        this.progress = progress;
+        this.cancellationToken = cancellationToken;
+    }
+
+    @Override
+    public void run() {
+        for (Path file : files) {
+            if (cancellationToken.isCanceled()) {
+                return;
+            }
+            Document document = documentFactory.apply(file);
+            if (document == null) {
+                progress.onFileProcessed();
+            } else {
+                new DocumentReadWithTrackProgressTask(document, indexedDocuments, documentLinesQueue, tokenizer, configuration,
+                        progress, cancellationToken).run();
+            }
+        }
+    }
+}
@@ -0,0 +1,571 @@
+package org.search.engine.index;
+
+import org.search.engine.analyzer.TokenConsumer;
+import org.search.engine.analyzer.Tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reader of the documents content which works on top of the file channel. Small files are read
+ * to the reused per thread buffer, bigger files are memory mapped by windows. Lines which contain
+ * only ASCII symbols are tokenized directly from the bytes, other lines are decoded by the reused
+ * decoder to the pooled char buffer. So no string is created per line, only found tokens are passed
+ * to the consumer together with line number and column in the line. Charsets which are not ASCII
+ * compatible (like UTF-16) are decoded by chunks and split to the lines by chars. Decoding is lenient,
+ * malformed input is replaced, so one broken symbol doesn't stop document reading.
+ * <p>
+ * Content is processed by chunks of limited size independently of the file size. Too long lines
+ * are split to the segments by the last whitespace, so tokens aren't broken between chunks and
+ * tokenizer never receives more than {@link #MAX_LINE_LENGTH} symbols at once.
+ * <p>
+ * Files compressed by gzip or zlib are detected by the header and decompressed while they are
+ * read, so line numbers, columns, size limit and hash refer to the decompressed content.
+ */
+public final class DocumentContentReader {
+
+    // Files less then this size are read to the heap buffer, because mapping of them cost more than reading
+    private static final int MAPPING_THRESHOLD = 256 * 1024;
+    private static final int MAPPING_WINDOW = 16 * 1024 * 1024;
+    // Lines longer than this are split to the segments, window must be bigger to always contain the line end or split
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int CHARS_WINDOW = 2 * MAX_LINE_LENGTH;
+    // Buffers bigger then this limit are not pooled to not hold memory by the reading threads
+    private static final int POOLED_CHARS_LIMIT = 1024 * 1024;
+    private static final byte[] UTF_8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final ThreadLocal<ReadBuffers> readBuffers = ThreadLocal.withInitial(ReadBuffers::new);
+    private static final Map<Charset, Boolean> asciiCompatibleCharsets = new ConcurrentHashMap<>();
+
+    private DocumentContentReader() {
+    }
+
+    /**
+     * Method read the file in UTF-8 and pass each found token to the consumer.
+     *
+     * @see #readTokens(Path, Charset, Tokenizer, LineTokenConsumer)
+     */
+    public static void readTokens(Path path, Tokenizer tokenizer, LineTokenConsumer consumer) throws IOException {
+        readTokens(path, StandardCharsets.UTF_8, tokenizer, consumer);
+    }
+
+    /**
+     * Method read the file and pass each found token to the consumer. Token is a view on the
+     * reused buffer, so it should be converted to string if it must be stored.
+     *
+     * @param path      The path to the file which should be read
+     * @param charset   The charset of the file content
+     * @param tokenizer The tokenizer which split lines to the tokens
+     * @param consumer  The consumer of found tokens
+     * @throws IOException if file can't be read
+     */
+    public static void readTokens(Path path, Charset charset, Tokenizer tokenizer, LineTokenConsumer consumer) throws IOException {
+        readTokens(path, charset, tokenizer, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Method read at most {@code maxBytes} of the file and pass each found token to the consumer.
+     * Reading stops earlier when {@link LineTokenConsumer#isStopped()} returns true.
+     *
+     * @param path      The path to the file which should be read
+     * @param charset   The charset of the file content
+     * @param tokenizer The tokenizer which split lines to the tokens
+     * @param maxBytes  The count of bytes from the file start which should be read
+     * @param consumer  The consumer of found tokens
+     * @throws IOException if file can't be read
+     */
+    public static void readTokens(Path path, Charset charset, Tokenizer tokenizer, long maxBytes, LineTokenConsumer consumer) throws IOException {
+        readTokens(path, charset, tokenizer, maxBytes, null, consumer);
+    }
+
+    /**
+     * Method read the file like {@link #readTokens(Path, Charset, Tokenizer, long, LineTokenConsumer)} and
+     * add read raw bytes to the hasher. Hash covers whole content only if reading was not stopped by consumer.
+     *
+     * @param hasher The hasher of the content, can be null
+     */
+    public static void readTokens(Path path, Charset charset, Tokenizer tokenizer, long maxBytes, ContentHasher hasher,
+                                  LineTokenConsumer consumer) throws IOException {
+        ReadBuffers buffers = readBuffers.get();
+        CharsetDecoder decoder = buffers.getDecoder(charset);
+        LineReader lineReader = new LineReader(tokenizer, consumer, buffers, decoder);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Boolean isGzip = InflatingChannel.getFormat(channel);
+            if (isGzip != null) {
+                try (InflatingChannel inflatingChannel = new InflatingChannel(channel, isGzip)) {
+                    readChars(new LimitedChannel(inflatingChannel, maxBytes, hasher), lineReader, buffers, decoder);
+                }
+                return;
+            }
+            long size = Math.min(channel.size(), maxBytes);
+            if (isAsciiCompatible(charset)) {
+                readBytes(channel, size, lineReader, buffers, StandardCharsets.UTF_8.equals(charset), hasher);
+            } else if (size < channel.size() || hasher != null) {
+                readChars(new LimitedChannel(channel, size, hasher), lineReader, buffers, decoder);
+            } else {
+                readChars(channel, lineReader, buffers, decoder);
+            }
+        }
+    }
+
+    /**
+     * Method read the content stream like {@link #readTokens(Path, Charset, Tokenizer, long, ContentHasher, LineTokenConsumer)},
+     * it's used for the content which is not a regular file, like an archive entry. Stream is not closed.
+     *
+     * @param content The stream of the document content
+     */
+    public static void readTokens(InputStream content, Charset charset, Tokenizer tokenizer, long maxBytes, ContentHasher hasher,
+                                  LineTokenConsumer consumer) throws IOException {
+        ReadBuffers buffers = readBuffers.get();
+        CharsetDecoder decoder = buffers.getDecoder(charset);
+        LineReader lineReader = new LineReader(tokenizer, consumer, buffers, decoder);
+        readChars(new LimitedChannel(Channels.newChannel(content), maxBytes, hasher), lineReader, buffers, decoder);
+    }
+
+    /**
+     * Method compute hash of the raw bytes of file without decoding and tokenization,
+     * compressed file is hashed by the decompressed content
+     *
+     * @param path     The path to the file which should be hashed
+     * @param maxBytes The count of bytes from the file start which should be hashed
+     * @param hasher   The hasher which receives the content
+     * @throws IOException if file can't be read
+     */
+    public static void hashContent(Path path, long maxBytes, ContentHasher hasher) throws IOException {
+        ReadBuffers buffers = readBuffers.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Boolean isGzip = InflatingChannel.getFormat(channel);
+            if (isGzip != null) {
+                try (InflatingChannel inflatingChannel = new InflatingChannel(channel, isGzip)) {
+                    hashChannel(inflatingChannel, maxBytes, hasher, buffers);
+                }
+                return;
+            }
+            long size = Math.min(channel.size(), maxBytes);
+            if (size <= MAPPING_THRESHOLD) {
+                ByteBuffer buffer = readBuffer(channel, (int) size, buffers);
+                hasher.update(buffer, 0, buffer.limit());
+            } else {
+                for (long position = 0; position < size; position += MAPPING_WINDOW) {
+                    long length = Math.min(MAPPING_WINDOW, size - position);
+                    hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length), 0, (int) length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method compute hash of the content stream like {@link #hashContent(Path, long, ContentHasher)}. Stream is not closed.
+     *
+     * @param content The stream of the document content
+     */
+    public static void hashContent(InputStream content, long maxBytes, ContentHasher hasher) throws IOException {
+        hashChannel(Channels.newChannel(content), maxBytes, hasher, readBuffers.get());
+    }
+
+    private static void hashChannel(ReadableByteChannel contentChannel, long maxBytes, ContentHasher hasher,
+                                    ReadBuffers buffers) throws IOException {
+        ReadableByteChannel channel = new LimitedChannel(contentChannel, maxBytes, hasher);
+        ByteBuffer buffer = buffers.getByteBuffer(MAPPING_THRESHOLD);
+        while (channel.read(buffer) >= 0) {
+            buffer.clear();
+        }
+    }
+
+    private static void readBytes(FileChannel channel, long size, LineReader lineReader, ReadBuffers buffers, boolean skipBom,
+                                  ContentHasher hasher) throws IOException {
+        if (size <= MAPPING_THRESHOLD) {
+            ByteBuffer buffer = readBuffer(channel, (int) size, buffers);
+            if (hasher != null) {
+                hasher.update(buffer, 0, buffer.limit());
+            }
+            lineReader.readLines(buffer, skipBom ? getBomLength(buffer) : 0, true);
+        } else {
+            long position = 0;
+            boolean isFirst = true;
+            while (position < size && !lineReader.isStopped()) {
+                long length = Math.min(MAPPING_WINDOW, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int start = skipBom && isFirst ? getBomLength(buffer) : 0;
+                int consumed = lineReader.readLines(buffer, start, position + length >= size);
+                if (hasher != null) {
+                    // Not consumed bytes are mapped again with the next window
+                    hasher.update(buffer, 0, consumed);
+                }
+                position += consumed;
+                isFirst = false;
+            }
+        }
+    }
+
+    private static ByteBuffer readBuffer(FileChannel channel, int size, ReadBuffers buffers) throws IOException {
+        ByteBuffer buffer = buffers.getByteBuffer(size);
+        int read = 0;
+        while (buffer.hasRemaining() && read >= 0) {
+            read = channel.read(buffer);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void readChars(ReadableByteChannel channel, LineReader lineReader, ReadBuffers buffers, CharsetDecoder decoder) throws IOException {
+        Reader reader = Channels.newReader(channel, decoder, -1);
+        CharBuffer chars = buffers.getCharBuffer(CHARS_WINDOW);
+        boolean isLast = false;
+        while (!isLast && !lineReader.isStopped()) {
+            isLast = reader.read(chars) < 0;
+            chars.flip();
+            int consumed = lineReader.readLines(chars, isLast);
+            chars.position(consumed);
+            chars.compact();
+        }
+    }
+
+    private static int getBomLength(ByteBuffer buffer) {
+        if (buffer.limit() < UTF_8_BOM.length) {
+            return 0;
+        }
+        for (int i = 0; i < UTF_8_BOM.length; i++) {
+            if (buffer.get(i) != UTF_8_BOM[i]) {
+                return 0;
+            }
+        }
+        return UTF_8_BOM.length;
+    }
+
+    /**
+     * Charset is ASCII compatible if ASCII symbols are encoded by itself as single bytes, so
+     * lines can be split by bytes and ASCII lines can be tokenized without decoding
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        return asciiCompatibleCharsets.computeIfAbsent(charset, it -> {
+            if (StandardCharsets.UTF_8.equals(it) || StandardCharsets.US_ASCII.equals(it)) {
+                return true;
+            }
+            if (!it.canEncode()) {
+                return false;
+            }
+            CharsetEncoder encoder = it.newEncoder();
+            if (encoder.maxBytesPerChar() != 1.0f) {
+                return false;
+            }
+            String sample = "\r\n\t azAZ09.,!?";
+            try {
+                ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sample));
+                return encoded.equals(ByteBuffer.wrap(sample.getBytes(StandardCharsets.US_ASCII)));
+            } catch (CharacterCodingException ex) {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Callback which receives tokens of the document with their coordinates
+     */
+    @FunctionalInterface
+    public interface LineTokenConsumer {
+
+        /**
+         * @param token      The view on the token chars, valid only during the call
+         * @param lineNumber The number of line starting from one
+         * @param column     The position of the token in the line
+         */
+        void accept(CharSequence token, int lineNumber, int column);
+
+        /**
+         * @return true if consumer doesn't need more tokens and reading of the document can be stopped
+         */
+        default boolean isStopped() {
+            return false;
+        }
+    }
+
+    /**
+     * Channel which returns end of stream after the limited count of bytes and
+     * optionally passes read bytes to the hasher
+     */
+    private static class LimitedChannel implements ReadableByteChannel {
+
+        private final ReadableByteChannel channel;
+        private final ContentHasher hasher;
+        private long remaining;
+
+        private LimitedChannel(ReadableByteChannel channel, long limit, ContentHasher hasher) {
+            this.channel = channel;
+            this.remaining = limit;
+            this.hasher = hasher;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int limit = dst.limit();
+            if (dst.remaining() > remaining) {
+                dst.limit(dst.position() + (int) remaining);
+            }
+            try {
+                int position = dst.position();
+                int read = channel.read(dst);
+                if (read > 0) {
+                    remaining -= read;
+                    if (hasher != null) {
+                        hasher.update(dst, position, position + read);
+                    }
+                }
+                return read;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Splits content of the document to the lines and tracks current line and column.
+     * Lines longer than {@link #MAX_LINE_LENGTH} are split to the segments which continue
+     * column numbering of the line.
+     */
+    private static class LineReader implements TokenConsumer {
+
+        private final Tokenizer tokenizer;
+        private final LineTokenConsumer consumer;
+        private final ReadBuffers buffers;
+        private final CharsetDecoder decoder;
+        private int lineNumber = 1;
+        private int columnOffset;
+
+        private LineReader(Tokenizer tokenizer, LineTokenConsumer consumer, ReadBuffers buffers, CharsetDecoder decoder) {
+            this.tokenizer = tokenizer;
+            this.consumer = consumer;
+            this.buffers = buffers;
+            this.decoder = decoder;
+        }
+
+        /**
+         * @return index of the first not consumed byte, which should be passed in the next window
+         */
+        private int readLines(ByteBuffer buffer, int start, boolean isLast) throws CharacterCodingException {
+            int limit = buffer.limit();
+            int lineStart = start;
+            boolean isAscii = true;
+            for (int i = start; i < limit && !consumer.isStopped(); i++) {
+                byte current = buffer.get(i);
+                if (current == '\n' || current == '\r') {
+                    if (current == '\r' && i + 1 == limit && !isLast) {
+                        // Can't check for the \r\n in this window, so line will be read with the next one
+                        break;
+                    }
+                    readLine(buffer, lineStart, i, isAscii);
+                    nextLine();
+                    if (current == '\r' && i + 1 < limit && buffer.get(i + 1) == '\n') {
+                        i++;
+                    }
+                    lineStart = i + 1;
+                    isAscii = true;
+                } else {
+                    if (current < 0) {
+                        isAscii = false;
+                    }
+                    if (i + 1 - lineStart >= MAX_LINE_LENGTH) {
+                        int end = getSegmentEnd(buffer, lineStart, i + 1);
+                        columnOffset += readLine(buffer, lineStart, end, isAscii);
+                        isAscii = isAscii || isAscii(buffer, end, i + 1);
+                        lineStart = end;
+                    }
+                }
+            }
+
+            if (isLast && !consumer.isStopped()) {
+                if (lineStart < limit) {
+                    readLine(buffer, lineStart, limit, isAscii);
+                }
+                return limit;
+            }
+            return lineStart;
+        }
+
+        /**
+         * @return index of the first not consumed char, which should be passed with the next chunk
+         */
+        private int readLines(CharBuffer chars, boolean isLast) {
+            int limit = chars.limit();
+            int lineStart = 0;
+            for (int i = 0; i < limit && !consumer.isStopped(); i++) {
+                char current = chars.get(i);
+                if (current == '\n' || current == '\r') {
+                    if (current == '\r' && i + 1 == limit && !isLast) {
+                        break;
+                    }
+                    tokenizer.tokenize(chars.subSequence(lineStart, i), this);
+                    nextLine();
+                    if (current == '\r' && i + 1 < limit && chars.get(i + 1) == '\n') {
+                        i++;
+                    }
+                    lineStart = i + 1;
+                } else if (i + 1 - lineStart >= MAX_LINE_LENGTH) {
+                    int end = getSegmentEnd(chars, lineStart, i + 1);
+                    tokenizer.tokenize(chars.subSequence(lineStart, end), this);
+                    columnOffset += end - lineStart;
+                    lineStart = end;
+                }
+            }
+
+            if (isLast && !consumer.isStopped()) {
+                if (lineStart < limit) {
+                    tokenizer.tokenize(chars.subSequence(lineStart, limit), this);
+                }
+                return limit;
+            }
+            return lineStart;
+        }
+
+        /**
+         * Finds the end of too long line segment after the last whitespace in the second half of the segment,
+         * rest of the segment is carried over to the next one. If there is no whitespace, segment is split
+         * before the start of the last not complete UTF-8 symbol.
+         */
+        private int getSegmentEnd(ByteBuffer buffer, int start, int end) {
+            for (int i = end - 1; i > start + MAX_LINE_LENGTH / 2; i--) {
+                byte current = buffer.get(i);
+                if (current == ' ' || current == '\t') {
+                    return i + 1;
+                }
+            }
+            if (buffer.get(end - 1) >= 0) {
+                return end;
+            }
+            int lastCharStart = end - 1;
+            while (lastCharStart > start && (buffer.get(lastCharStart) & 0xC0) == 0x80) {
+                lastCharStart--;
+            }
+            return lastCharStart > start ? lastCharStart : end;
+        }
+
+        /**
+         * @see #getSegmentEnd(ByteBuffer, int, int)
+         */
+        private int getSegmentEnd(CharBuffer chars, int start, int end) {
+            for (int i = end - 1; i > start + MAX_LINE_LENGTH / 2; i--) {
+                char current = chars.get(i);
+                if (current == ' ' || current == '\t') {
+                    return i + 1;
+                }
+            }
+            return Character.isHighSurrogate(chars.get(end - 1)) ? end - 1 : end;
+        }
+
+        private boolean isAscii(ByteBuffer buffer, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (buffer.get(i) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isStopped() {
+            return consumer.isStopped();
+        }
+
+        private int readLine(ByteBuffer buffer, int start, int end, boolean isAscii) throws CharacterCodingException {
+            CharSequence line = isAscii ? new AsciiCharSequence(buffer, start, end - start) : buffers.decode(decoder, buffer, start, end);
+            tokenizer.tokenize(line, this);
+            return line.length();
+        }
+
+        private void nextLine() {
+            lineNumber++;
+            columnOffset = 0;
+        }
+
+        @Override
+        public void accept(CharSequence token, int position) {
+            consumer.accept(token, lineNumber, columnOffset + position);
+        }
+    }
+
+    /**
+     * Per thread buffers and decoders which are reused between reading of documents
+     */
+    private static class ReadBuffers {
+
+        private final Map<Charset, CharsetDecoder> decoders = new HashMap<>();
+        private ByteBuffer byteBuffer = ByteBuffer.allocate(8 * 1024);
+        private CharBuffer charBuffer = CharBuffer.allocate(8 * 1024);
+
+        private CharsetDecoder getDecoder(Charset charset) {
+            CharsetDecoder decoder = decoders.computeIfAbsent(charset, it -> it.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE));
+            decoder.reset();
+            return decoder;
+        }
+
+        private ByteBuffer getByteBuffer(int size) {
+            if (byteBuffer.capacity() < size) {
+                byteBuffer = ByteBuffer.allocate(size);
+            }
+            byteBuffer.clear();
+            byteBuffer.limit(size);
+            return byteBuffer;
+        }
+
+        private CharBuffer decode(CharsetDecoder decoder, ByteBuffer buffer, int start, int end) throws CharacterCodingException {
+            ByteBuffer input = buffer.duplicate();
+            input.limit(end);
+            input.position(start);
+
+            CharBuffer output = getCharBuffer((int) ((end - start) * (double) decoder.maxCharsPerByte()) + 1);
+            decoder.reset();
+            CoderResult result = decoder.decode(input, output, true);
+            if (result.isUnderflow()) {
+                result = decoder.flush(output);
+            }
+            if (!result.isUnderflow()) {
+                result.throwException();
+            }
+            output.flip();
+            return output;
+        }
+
+        private CharBuffer getCharBuffer(int size) {
+            if (size > POOLED_CHARS_LIMIT) {
+                return CharBuffer.allocate(size);
+            }
+            if (charBuffer.capacity() < size) {
+                charBuffer = CharBuffer.allocate(Math.min(Math.max(size, charBuffer.capacity() * 2), POOLED_CHARS_LIMIT));
+            }
+            charBuffer.clear();
+            return charBuffer;
+        }
+    }
+}
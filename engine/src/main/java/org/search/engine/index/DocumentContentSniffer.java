@@ -0,0 +1,204 @@
+package org.search.engine.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Sniffer checks the beginning of the file before indexation to detect charset of the file
+ * and to detect binary files like archives, images or class files. Such files produce only
+ * garbage tokens in the index, so they are skipped. Charset is detected by the BOM, then by
+ * the UTF-8 validity of the sniffed part and then by trying fallback charsets. File is
+ * considered binary if it contains NUL byte, too many control symbols or can't be decoded
+ * by any of the charsets. Compressed files are sniffed by the decompressed content.
+ */
+final class DocumentContentSniffer {
+
+    private static final int SNIFF_SIZE = 8 * 1024;
+    // Max percent of control symbols which can be met in the text file
+    private static final int CONTROL_SYMBOLS_PERCENT = 10;
+    private static final ThreadLocal<ByteBuffer> sniffBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(SNIFF_SIZE));
+
+    private DocumentContentSniffer() {
+    }
+
+    /**
+     * @return detected charset of the file or null if file is binary
+     */
+    static Charset detectCharset(Path filePath, List<Charset> fallbackCharsets) throws IOException {
+        ByteBuffer buffer = sniffBuffer.get();
+        buffer.clear();
+        boolean isTruncated;
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            Boolean isGzip = InflatingChannel.getFormat(channel);
+            if (isGzip != null) {
+                // Decompressed content is sniffed, compressed bytes always look like binary
+                try (InflatingChannel inflatingChannel = new InflatingChannel(channel, isGzip)) {
+                    fill(inflatingChannel, buffer);
+                    isTruncated = !buffer.hasRemaining() && inflatingChannel.read(ByteBuffer.allocate(1)) > 0;
+                }
+            } else {
+                fill(channel, buffer);
+                isTruncated = channel.size() > buffer.position();
+            }
+        }
+        buffer.flip();
+        return detectCharset(buffer, isTruncated, fallbackCharsets);
+    }
+
+    private static void fill(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining() && read >= 0) {
+            read = channel.read(buffer);
+        }
+    }
+
+    /**
+     * Method sniffs the start of the stream and resets it back, so stream must support the mark
+     *
+     * @return detected charset of the content or null if content is binary
+     */
+    static Charset detectCharset(InputStream content, List<Charset> fallbackCharsets) throws IOException {
+        ByteBuffer buffer = sniffBuffer.get();
+        buffer.clear();
+        content.mark(SNIFF_SIZE + 1);
+        int read = 0;
+        while (read < SNIFF_SIZE) {
+            int count = content.read(buffer.array(), read, SNIFF_SIZE - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        boolean isTruncated = read == SNIFF_SIZE && content.read() >= 0;
+        content.reset();
+        buffer.limit(read);
+        return detectCharset(buffer, isTruncated, fallbackCharsets);
+    }
+
+    static Charset detectCharset(ByteBuffer buffer, boolean isTruncated, List<Charset> fallbackCharsets) {
+        int limit = buffer.limit();
+        if (limit >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB && (buffer.get(2) & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (limit >= 2 && ((buffer.get(0) & 0xFF) == 0xFE && (buffer.get(1) & 0xFF) == 0xFF
+                || (buffer.get(0) & 0xFF) == 0xFF && (buffer.get(1) & 0xFF) == 0xFE)) {
+            // Decoder of UTF-16 detects byte order by the BOM itself
+            return StandardCharsets.UTF_16;
+        }
+
+        int controlSymbols = 0;
+        boolean isUtf8 = true;
+        for (int i = 0; i < limit; i++) {
+            int current = buffer.get(i) & 0xFF;
+            if (current == 0) {
+                return null;
+            } else if (current < 0x20 && !isTextControlSymbol(current)) {
+                controlSymbols++;
+            } else if (current >= 0x80 && isUtf8) {
+                int sequenceLength = getUtf8SequenceLength(buffer, i, limit);
+                if (sequenceLength > 0) {
+                    i += sequenceLength - 1;
+                } else if (!(isTruncated && sequenceLength == -2)) {
+                    // Sequence cut by the end of sniffed part is still valid
+                    isUtf8 = false;
+                }
+            }
+        }
+        if (controlSymbols * 100 > limit * CONTROL_SYMBOLS_PERCENT) {
+            return null;
+        }
+        if (isUtf8) {
+            return StandardCharsets.UTF_8;
+        }
+        for (Charset charset : fallbackCharsets) {
+            if (canDecode(buffer, isTruncated, charset)) {
+                return charset;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Charset can decode content if there are no malformed symbols and decoded content
+     * doesn't contain too many control symbols, it filters single byte charsets which
+     * decode any byte, but put control symbols to the upper part of table.
+     */
+    private static boolean canDecode(ByteBuffer buffer, boolean isTruncated, Charset charset) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer chars = CharBuffer.allocate((int) (buffer.limit() * (double) decoder.maxCharsPerByte()) + 1);
+        CoderResult result = decoder.decode(buffer.duplicate(), chars, !isTruncated);
+        if (result.isError()) {
+            return false;
+        }
+        chars.flip();
+        int controlSymbols = 0;
+        for (int i = 0; i < chars.limit(); i++) {
+            char current = chars.get(i);
+            if (Character.isISOControl(current) && !isTextControlSymbol(current)) {
+                controlSymbols++;
+            }
+        }
+        return controlSymbols * 100 <= chars.limit() * CONTROL_SYMBOLS_PERCENT;
+    }
+
+    private static boolean isTextControlSymbol(int symbol) {
+        return symbol == '\n' || symbol == '\r' || symbol == '\t' || symbol == '\f' || symbol == '\b' || symbol == 0x1B;
+    }
+
+    /**
+     * @return length of valid UTF-8 sequence, -1 for invalid sequence and -2 if sequence is
+     * not completed in the buffer
+     */
+    private static int getUtf8SequenceLength(ByteBuffer buffer, int start, int limit) {
+        int lead = buffer.get(start) & 0xFF;
+        int length;
+        int minSecond = 0x80;
+        int maxSecond = 0xBF;
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            length = 2;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            length = 3;
+            if (lead == 0xE0) {
+                minSecond = 0xA0;
+            } else if (lead == 0xED) {
+                maxSecond = 0x9F;
+            }
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            length = 4;
+            if (lead == 0xF0) {
+                minSecond = 0x90;
+            } else if (lead == 0xF4) {
+                maxSecond = 0x8F;
+            }
+        } else {
+            return -1;
+        }
+
+        for (int i = 1; i < length; i++) {
+            if (start + i >= limit) {
+                return -2;
+            }
+            int current = buffer.get(start + i) & 0xFF;
+            int min = i == 1 ? minSecond : 0x80;
+            int max = i == 1 ? maxSecond : 0xBF;
+            if (current < min || current > max) {
+                return -1;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,66 @@
+package org.search.engine.index;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+/**
+ * Allocator of document ids. Ids of removed documents are kept in the free-list and the lowest
+ * of them is reused first, so the id space stays dense in spite of the files churn. Last allocated
+ * id is shared with the engine cache, which restores it as the maximal id of loaded documents.
+ */
+public class DocumentIdAllocator {
+
+    private final AtomicInteger lastId;
+    private final BitSet freeIds = new BitSet();
+
+    public DocumentIdAllocator(AtomicInteger lastId) {
+        this.lastId = lastId;
+    }
+
+    public synchronized int allocate() {
+        int id = freeIds.nextSetBit(1);
+        if (id > 0 && id <= lastId.get()) {
+            freeIds.clear(id);
+            return id;
+        }
+        freeIds.clear();
+        return lastId.incrementAndGet();
+    }
+
+    /**
+     * Method returns the id to the free-list, id must not be used by any document or pending event
+     */
+    public synchronized void release(int id) {
+        if (id > 0 && id <= lastId.get()) {
+            freeIds.set(id);
+        }
+    }
+
+    public synchronized boolean isFree(int id) {
+        return freeIds.get(id);
+    }
+
+    public synchronized int getFreeCount() {
+        return freeIds.cardinality();
+    }
+
+    public int getLastId() {
+        return lastId.get();
+    }
+
+    /**
+     * Method sets the last allocated id and puts all not used ids below it to the free-list
+     *
+     * @param isUsed Predicate which identify if id is used by document or pending event
+     */
+    public synchronized void reset(int lastAllocatedId, IntPredicate isUsed) {
+        lastId.set(lastAllocatedId);
+        freeIds.clear();
+        for (int id = 1; id <= lastAllocatedId; id++) {
+            if (!isUsed.test(id)) {
+                freeIds.set(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.search.engine.index;
+
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.set.TIntSet;
+import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
+import org.search.engine.tree.SearchEngineTree;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compaction of document ids. Documents are renumbered densely in the order of their paths, so
+ * documents of one folder get the range of ids, which makes postings of the folder close to each
+ * other and folder filter becomes the range check.
+ */
+public final class DocumentIdCompactor {
+
+    private DocumentIdCompactor() {
+    }
+
+    /**
+     * Method changes ids in the index and in the registry, it should be called when nothing else
+     * changes them. Searches which run during compaction could see not consistent ids.
+     *
+     * @param reservedIds Ids which are used by documents not registered yet or by pending events,
+     *                    they are not given to other documents and documents with them are not renumbered
+     * @return the maximal id which is used after compaction
+     */
+    public static int compact(SearchEngineTree index, DocumentRegistry indexedDocuments, TIntSet reservedIds) {
+        List<Document> documents = new ArrayList<>(indexedDocuments.getDocuments());
+        documents.sort(Comparator.comparing(Document::getPath));
+        TIntIntMap mapping = new TIntIntHashMap();
+        int lastId = 0;
+        for (Document document : documents) {
+            if (reservedIds.contains(document.getId())) {
+                continue;
+            }
+            do {
+                lastId++;
+            } while (reservedIds.contains(lastId));
+            if (lastId != document.getId()) {
+                mapping.put(document.getId(), lastId);
+            }
+        }
+        if (!mapping.isEmpty()) {
+            index.remapValues(mapping);
+            indexedDocuments.renumber(mapping);
+        }
+        int[] reserved = reservedIds.toArray();
+        for (int id : reserved) {
+            lastId = Math.max(lastId, id);
+        }
+        return lastId;
+    }
+}
@@ -1,196 +1,354 @@
 package org.search.engine.index;
 
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+import org.search.engine.PriorityExecutorService;
+import org.search.engine.SearchEngineConfiguration;
 import org.search.engine.SearchEngineExecutors;
+import org.search.engine.TaskPriority;
 import org.search.engine.analyzer.Tokenizer;
 import org.search.engine.filesystem.FilesystemEvent;
 import org.search.engine.filesystem.FilesystemEventListener;
 import org.search.engine.filesystem.FilesystemNotifier;
+import org.search.engine.filesystem.PathFilter;
+import org.search.engine.filesystem.PathRules;
+import org.search.engine.model.CancellationToken;
 import org.search.engine.model.Document;
+import org.search.engine.model.EventType;
+import org.search.engine.model.DocumentRegistry;
 import org.search.engine.model.IndexChanges;
 import org.search.engine.model.IndexationEvent;
+import org.search.engine.model.IndexationStatistics;
 import org.search.engine.model.IndexationTracker;
 import org.search.engine.tree.SearchEngineTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * Class responsible for indexation of folders or file file also handle events coming from
  * filesystem notifier. Each action start separate task to handle actions independently
  * and to speed up process of indexation.
  */
-public class DocumentIndexManager implements FilesystemEventListener, IndexationEventListener {
+public class DocumentIndexManager implements FilesystemEventListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(DocumentIndexManager.class);
     private static final int QUEUE_CAPACITY = 500_000;
+    private static final long ADMISSION_CHECK_MILLIS = 100;
+    private static final long COMPACTION_LOCK_MILLIS = 100;
+    private static final int COMPACTION_ATTEMPTS = 50;
 
-    //Unique concurrent document Id generator
-    private final AtomicInteger uniqueDocumentId;
+    //Unique concurrent document Id generator, ids of removed documents are reused
+    private final DocumentIdAllocator idAllocator;
     private final FilesystemNotifier notificationManager;
-    private final Map<Path, Document> indexedDocuments;
+    private final DocumentRegistry indexedDocuments;
     private final BlockingQueue<IndexationEvent> documentQueue;
+    // Events of interactive and live changes, they are applied before the ones of the bulk indexation
+    private final BlockingQueue<IndexationEvent> liveQueue;
     private final SearchEngineTree index;
     private final Tokenizer tokenizer;
-    private final ExecutorService indexingExecutorService;
+    private final SearchEngineExecutors executors;
+    private final PriorityExecutorService indexingExecutorService;
+    // Reading and update of documents, it's separate pool of virtual threads in the virtual read mode
+    private final PriorityExecutorService readExecutorService;
     private ScheduledExecutorService indexationExecutor;
     private final List<IndexationEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final IndexationStatistics statistics = new IndexationStatistics();
+    private final SearchEngineConfiguration configuration;
+    private final PathFilter pathFilter;
+    // Limits count of documents waiting for reading, so walker of the big folder waits for the readers
+    private final Semaphore readAdmission;
+    // Tasks which put events with document ids hold the read lock, compaction of ids takes the write lock
+    private final ReadWriteLock idUsage = new ReentrantReadWriteLock();
+    // Archives which entries are indexed, archive itself is not registered as a document
+    private final Set<Path> indexedArchives = ConcurrentHashMap.newKeySet();
 
-    //Tracking current indexation
-    private IndexationTracker currentIndexationTracker;
+    // Folder indexations which are not finished yet
+    private final Set<IndexJob> activeJobs = ConcurrentHashMap.newKeySet();
+    // Sequence of indexed files and their visibility which is completed when tokens are applied to the index
+    private final AtomicLong writeSequence = new AtomicLong();
+    private final ConcurrentNavigableMap<Long, CompletableFuture<Void>> pendingWrites = new ConcurrentSkipListMap<>();
+    // Processed files of all folder indexations, checkpoint is made by the configured count of them
+    private final AtomicInteger processedFiles = new AtomicInteger();
+    // Slows down reading of folder documents and updating of the index while user searches
+    private final IndexingThrottle throttle;
 
-    public DocumentIndexManager(SearchEngineTree index, Map<Path, Document> indexedDocuments, FilesystemNotifier notificationManager,
+    public DocumentIndexManager(SearchEngineTree index, DocumentRegistry indexedDocuments, FilesystemNotifier notificationManager,
                                 Tokenizer tokenizer, AtomicInteger uniqueDocumentId, IndexChanges indexChanges) {
+        this(index, indexedDocuments, notificationManager, tokenizer, uniqueDocumentId, indexChanges, SearchEngineConfiguration.DEFAULT,
+                new PathFilter(PathRules.DEFAULT, Collections.emptyMap()), SearchEngineExecutors.getShared());
+    }
+
+    public DocumentIndexManager(SearchEngineTree index, DocumentRegistry indexedDocuments, FilesystemNotifier notificationManager,
+                                Tokenizer tokenizer, AtomicInteger uniqueDocumentId, IndexChanges indexChanges,
+                                SearchEngineConfiguration configuration, PathFilter pathFilter) {
+        this(index, indexedDocuments, notificationManager, tokenizer, uniqueDocumentId, indexChanges, configuration, pathFilter,
+                SearchEngineExecutors.getShared());
+    }
+
+    public DocumentIndexManager(SearchEngineTree index, DocumentRegistry indexedDocuments, FilesystemNotifier notificationManager,
+                                Tokenizer tokenizer, AtomicInteger uniqueDocumentId, IndexChanges indexChanges,
+                                SearchEngineConfiguration configuration, PathFilter pathFilter, SearchEngineExecutors executors) {
+        this.executors = executors;
+        this.configuration = configuration;
+        this.pathFilter = pathFilter;
+        this.readAdmission = new Semaphore(configuration.getMaxPendingDocuments());
         this.notificationManager = notificationManager;
         this.indexedDocuments = indexedDocuments;
         this.documentQueue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+        this.liveQueue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
         this.tokenizer = tokenizer;
         this.index = index;
-        this.uniqueDocumentId = uniqueDocumentId;
-        this.indexingExecutorService = SearchEngineExecutors.getExecutorService();
+        this.idAllocator = new DocumentIdAllocator(uniqueDocumentId);
+        // Ids of documents removed before the last run are free too
+        idAllocator.reset(uniqueDocumentId.get(), id -> indexedDocuments.get(id) != null);
+        this.indexingExecutorService = executors.getExecutorService();
+        this.readExecutorService = executors.getReadExecutorService(configuration.getReadExecutionMode(),
+                configuration.getVirtualReadThreads());
+        this.throttle = new IndexingThrottle(configuration.isAdaptiveThrottling(), readExecutorService.getMaximumPoolSize());
+        indexedDocuments.getDocuments().forEach(it -> {
+            Path archivePath = ArchiveReader.getArchivePath(it.getPath());
+            if (archivePath != null && Files.exists(archivePath)) {
+                indexedArchives.add(archivePath);
+            }
+        });
         applyIndexChangesIfNeeded(indexChanges);
         notificationManager.addListener(this);
         scheduleIndexationIfNeeded();
-        listeners.add(this);
     }
 
     /**
-     * Method validate incoming params and start method for concurrent files indexation in given folder
+     * Method validate incoming params and start concurrent files indexation in given folder. Folder is
+     * walked in the background, so several folders can be indexed in parallel. Listener is notified
+     * about finish of this job only.
      *
      * @param path The path to the folder which should be indexed
+     * @return handle of the started job, it's already completed if folder is indexed or can't be accessed
+     */
+    public IndexJob indexFolder(String path, IndexationEventListener listener) {
+        return indexFolder(path, listener, false);
+    }
+
+    /**
+     * Method continues indexation of the folder which was interrupted by the restart, files indexed
+     * by the last checkpoint are skipped. Rollback of resumed job removes only documents read by it.
+     *
+     * @param path The path to the folder which indexation is not finished
+     * @return handle of the started job
      */
-    public void indexFolder(String path, IndexationEventListener listener) {
+    public IndexJob resumeFolder(String path, IndexationEventListener listener) {
+        return indexFolder(path, listener, true);
+    }
+
+    private IndexJob indexFolder(String path, IndexationEventListener listener, boolean resume) {
         if (path == null || path.isEmpty() || listener == null) {
             throw new IllegalArgumentException("Folder path must not be null or empty");
         }
-        Path folderPath = Paths.get(path).normalize();
-        try {
-            //Check that folder is registered and should not be indexed again (not a clean solution)
-            if (hasAccess(folderPath) && !notificationManager.isFolderRegistered(folderPath)) {
-                //Register indexing folder parent for tracking itself folder delete
-                if (folderPath.getParent() != null) {
-                    notificationManager.registerParentFolder(folderPath.getParent());
-                }
-
-                currentIndexationTracker = new IndexationTracker(listener, folderPath);
-                LOG.info("Calculating overall files count");
-                double percentage = (double) getFilesCount(folderPath) / 100;
-                AtomicInteger documentCount = new AtomicInteger(0);
-                Files.walkFileTree(folderPath, new SimpleFileVisitor<Path>() {
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                        indexFileWithTrackProgress(file, documentCount, percentage);
-                        return getFileVisitResult();
-                    }
-
-                    @Override
-                    public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes basicFileAttributes) throws IOException {
-                        if (Files.isHidden(path)) {
-                            return FileVisitResult.SKIP_SUBTREE;
-                        }
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                    @Override
-                    public FileVisitResult postVisitDirectory(Path folder, IOException exc) throws IOException {
-                        notificationManager.registerFolder(folder);
-                        return getFileVisitResult();
-                    }
+        return indexFolder(Paths.get(path).normalize(), listener, resume);
+    }
 
-                    private FileVisitResult getFileVisitResult() {
-                        if (currentIndexationTracker.isCanceled())
-                            return FileVisitResult.TERMINATE;
-                        else
-                            return FileVisitResult.CONTINUE;
-                    }
-                });
-            } else {
-                listener.onIndexationFinished();
-                LOG.warn("Folder already indexed or no access to folder: {}", folderPath.toAbsolutePath());
+    private IndexJob indexFolder(Path folderPath, IndexationEventListener listener, boolean resume) {
+        IndexJob job = new IndexJob(folderPath, new IndexationTracker(listener, folderPath), new IndexationProgress(listener),
+                this::cancelJob);
+        //Check that folder is registered and should not be indexed again (not a clean solution)
+        if (hasAccess(folderPath) && (resume || !notificationManager.isFolderRegistered(folderPath)) && addJob(job)) {
+            //Register indexing folder parent for tracking itself folder delete
+            if (folderPath.getParent() != null) {
+                notificationManager.registerParentFolder(folderPath.getParent());
             }
-        } catch (IOException ex) {
-            LOG.warn("Folder indexation with exception: {}", folderPath.toAbsolutePath(), ex);
+            if (configuration.getCheckpointInterval() > 0) {
+                requestCheckpoint();
+            }
+            // Walk is the first task of the job, job can't be finished until it's done
+            job.getTracker().onTaskStarted();
+            executors.getWalkerPool().execute(() -> walkJobFolder(job, folderPath));
+        } else {
+            job.complete();
+            listener.onIndexationFinished();
+            LOG.warn("Folder already indexed or no access to folder: {}", folderPath.toAbsolutePath());
         }
+        return job;
+    }
+
+    /**
+     * @return jobs of folder indexation which are not finished yet
+     */
+    public Collection<IndexJob> getIndexJobs() {
+        return Collections.unmodifiableCollection(new ArrayList<>(activeJobs));
     }
 
     /**
      * Method validate incoming params and start method for concurrent file indexation
      *
      * @param path The path to the file which should be indexed
+     * @return The sequence number of the write, it could be passed to {@link #awaitVisible(long)}
      */
-    public void indexFile(String path) {
+    public long indexFile(String path) {
         if (path == null || path.isEmpty()) {
             throw new IllegalArgumentException("File path must not be null or empty");
         }
         Path filePath = Paths.get(path).normalize();
-        indexFile(filePath, true);
+        long sequence = writeSequence.incrementAndGet();
+        pendingWrites.put(sequence, new CompletableFuture<>());
+        indexFile(filePath, true, TaskPriority.INTERACTIVE, () -> publishVisible(sequence, liveQueue));
+        return sequence;
+    }
+
+    /**
+     * Method indexes the document of the source, like content kept in memory. Already indexed document
+     * with the same path is updated if version of the source differs from the indexed one.
+     *
+     * @param source The source of the document content
+     * @return The sequence number of the write, it could be passed to {@link #awaitVisible(long)}
+     */
+    public long indexDocument(DocumentSource source) {
+        if (source == null || source.getPath() == null) {
+            throw new IllegalArgumentException("Document source and its path must not be null");
+        }
+        long sequence = writeSequence.incrementAndGet();
+        pendingWrites.put(sequence, new CompletableFuture<>());
+        indexSource(source, sequence);
+        return sequence;
+    }
+
+    /**
+     * Method removes the document from the index, it's needed for documents which are not
+     * files on disk, because their removal is not reported by the filesystem
+     *
+     * @param path The path which identifies the document
+     */
+    public void removeDocument(Path path) {
+        removeDocumentFromIndex(indexedDocuments.get(path), TaskPriority.INTERACTIVE);
+    }
+
+    /**
+     * @param sequence The sequence number returned by {@link #indexFile(String)}
+     * @return future which is completed when the write and all writes before it are searchable
+     */
+    public CompletableFuture<Void> awaitVisible(long sequence) {
+        Collection<CompletableFuture<Void>> pending = pendingWrites.headMap(sequence, true).values();
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Visibility is published through the queue, so it's completed after tokens which were put by the reading
+     *
+     * @param queue The queue which got the tokens of the write
+     */
+    private void publishVisible(long sequence, BlockingQueue<IndexationEvent> queue) {
+        try {
+            queue.put(new IndexationEvent(() -> {
+                CompletableFuture<Void> visibility = pendingWrites.remove(sequence);
+                if (visibility != null) {
+                    visibility.complete(null);
+                }
+            }));
+        } catch (InterruptedException ex) {
+            LOG.warn("Publishing of write: {} interrupted", sequence, ex);
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
     public void onFileChanged(FilesystemEvent event, Path filePath) {
+        onFileChanged(event, filePath, TaskPriority.LIVE);
+    }
+
+    @Override
+    public void onFolderChanged(FilesystemEvent event, Path folderPath) {
+        onFolderChanged(event, folderPath, TaskPriority.LIVE);
+    }
+
+    /**
+     * @param priority The priority of tasks which handle the change
+     */
+    private void onFileChanged(FilesystemEvent event, Path filePath, TaskPriority priority) {
         LOG.debug("Handling event: {}  for file: {}", event, filePath);
         switch (event) {
             case CREATED:
-                indexFile(filePath, false);
+                //Indexed file could be replaced by the new one, then its document is updated
+                if (isFileIndexed(filePath) || indexedArchives.contains(filePath)) {
+                    onFileChanged(FilesystemEvent.MODIFIED, filePath, priority);
+                } else {
+                    indexFile(filePath, false, priority, null);
+                }
                 break;
             case MODIFIED:
                 if (isFileIndexed(filePath)) {
-                    reindexFile(filePath);
+                    reindexFile(filePath, priority);
+                } else if (configuration.isArchiveIndexing() && ArchiveReader.isArchive(filePath)) {
+                    reindexArchive(filePath, priority);
                 }
                 break;
             case DELETED:
-                for (Map.Entry<Path, Document> documentEntry : indexedDocuments.entrySet()) {
-                    Document document = documentEntry.getValue();
-                    if (filePath.equals(document.getPath())) {
-                        removeDocumentFromIndex(document);
-                    }
+                removeDocumentFromIndex(indexedDocuments.get(filePath), priority);
+                if (indexedArchives.remove(filePath)) {
+                    Collection<Document> entries = getArchiveEntries(filePath);
+                    indexingExecutorService.execute(usingIds(() -> removeDocuments(toDocumentIds(entries))), priority);
                 }
                 break;
         }
     }
 
-    @Override
-    public void onFolderChanged(FilesystemEvent event, Path folderPath) {
+    private void onFolderChanged(FilesystemEvent event, Path folderPath, TaskPriority priority) {
         LOG.debug("Handling event: {}  for folder: {}", event, folderPath);
         switch (event) {
             case CREATED:
-                indexFolder(folderPath);
+                indexCreatedFolder(folderPath);
                 break;
             case DELETED:
                 notificationManager.unregisterFolder(folderPath);
-                List<Document> documents = indexedDocuments.entrySet().stream()
-                        .filter(entry -> entry.getValue().getPath().startsWith(folderPath))
-                        .map(Map.Entry::getValue)
-                        .collect(Collectors.toList());
-                documents.forEach(it -> {
-                    removeDocumentFromIndex(it);
+                indexedArchives.removeIf(it -> it.startsWith(folderPath));
+                indexedDocuments.getDocuments(folderPath).forEach(it -> {
+                    removeDocumentFromIndex(it, priority);
                     notificationManager.unregisterFolder(it.getParent());
                 });
                 break;
         }
     }
 
+    /**
+     * Created folder is walked by its own job, so its reading could be admitted and canceled like any other
+     * job. If folder is created inside of the running job, it's walked by that job, because nested jobs
+     * are not started together.
+     */
+    private void indexCreatedFolder(Path folderPath) {
+        for (IndexJob job : activeJobs) {
+            if (folderPath.startsWith(job.getFolder()) && !job.isCanceled() && job.getTracker().onTaskStartedIfRunning()) {
+                executors.getWalkerPool().execute(() -> walkJobFolder(job, folderPath));
+                return;
+            }
+        }
+        indexFolder(folderPath, new RuntimeFolderListener(folderPath), false);
+    }
+
+    /**
+     * Method cancels all running folder indexation jobs
+     *
+     * @see IndexJob#cancel()
+     */
     public void cancelIndexation() {
-        if (currentIndexationTracker != null) {
-            currentIndexationTracker.setCanceled(true);
-            currentIndexationTracker.getIndexingFutures().forEach(it -> {
-                if (!it.isDone()) {
-                    it.cancel(false);
-                }
-            });
-            documentQueue.clear();
-            //In case of long rollback comment this line due to long delete from index
-            //onFolderChanged(FilesystemEvent.DELETED, currentIndexationTracker.getIndexingFolder());
-        } else {
+        if (activeJobs.isEmpty()) {
             LOG.info("There is nothing to cancel");
         }
+        activeJobs.forEach(IndexJob::cancel);
     }
 
     public void addListener(IndexationEventListener listener) {
@@ -207,132 +365,834 @@ public class DocumentIndexManager implements FilesystemEventListener, Indexation
     }
 
 
-    @Override
-    public void onIndexationFinished() {
-        if (currentIndexationTracker != null) {
-            currentIndexationTracker.getListener().onIndexationFinished();
-        }
+    public IndexationStatistics getStatistics() {
+        return statistics;
     }
 
-    @Override
-    public void onIndexationProgress(int progress) {
+    public IndexingThrottle getThrottle() {
+        return throttle;
     }
 
+    /**
+     * Running indexations are canceled and their rollbacks are finished before the index is cleared,
+     * otherwise late rollback would remove documents by ids which are given to the new documents
+     */
     public void invalidateCache() {
-        uniqueDocumentId.set(0);
+        List<IndexJob> jobs = new ArrayList<>(activeJobs);
+        jobs.forEach(this::cancelJob);
+        for (IndexJob job : jobs) {
+            try {
+                job.getCompletion().get();
+            } catch (InterruptedException ex) {
+                LOG.warn("Waiting for rollback of folder: {} indexation interrupted", job.getFolder());
+                Thread.currentThread().interrupt();
+                return;
+            } catch (CancellationException | ExecutionException ex) {
+                LOG.debug("Indexation of folder: {} rolled back", job.getFolder());
+            }
+        }
+        idAllocator.reset(0, id -> true);
         indexedDocuments.clear();
+        indexedArchives.clear();
         index.clear();
         LOG.info("Cache invalidated");
     }
 
+    /**
+     * Method renumbers documents densely in the order of their paths. Compaction is run by the scheduler
+     * between events of the queue, documents which are not registered yet or have pending events keep their ids.
+     *
+     * @return future which is completed with false if compaction was skipped because folder indexation is running
+     */
+    public CompletableFuture<Boolean> compact() {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        if (!activeJobs.isEmpty()) {
+            LOG.info("Compaction of document ids skipped, folder indexation is running");
+            result.complete(false);
+            return result;
+        }
+        try {
+            documentQueue.put(new IndexationEvent(() -> compactWhenIdle(result, COMPACTION_ATTEMPTS)));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    /**
+     * Compaction waits until running tasks stop using document ids. Tasks could wait for the scheduler
+     * while they put events to the full queue, so the scheduler doesn't wait long and compaction
+     * is tried again after the queued events.
+     */
+    private void compactWhenIdle(CompletableFuture<Boolean> result, int attempts) {
+        Lock lock = idUsage.writeLock();
+        try {
+            if (!lock.tryLock(COMPACTION_LOCK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (attempts > 1 && documentQueue.offer(new IndexationEvent(() -> compactWhenIdle(result, attempts - 1)))) {
+                    return;
+                }
+                LOG.info("Compaction of document ids skipped, documents are being read");
+                result.complete(false);
+                return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(ex);
+            return;
+        }
+        try {
+            result.complete(compactIds());
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean compactIds() {
+        if (!activeJobs.isEmpty()) {
+            LOG.info("Compaction of document ids skipped, folder indexation is running");
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        // Allocation waits until compaction is finished, so set of not registered ids doesn't change
+        synchronized (idAllocator) {
+            TIntSet reservedIds = new TIntHashSet();
+            Consumer<IndexationEvent> reserveId = it -> {
+                if (it.getType() != EventType.CALLBACK) {
+                    reservedIds.add(it.getDocumentId());
+                }
+            };
+            liveQueue.forEach(reserveId);
+            documentQueue.forEach(reserveId);
+            // Pending transfers of shared content refer to the current ids
+            reservedIds.addAll(indexedDocuments.getTransferringIds());
+            int lastId = idAllocator.getLastId();
+            for (int id = 1; id <= lastId; id++) {
+                if (!idAllocator.isFree(id) && indexedDocuments.get(id) == null) {
+                    reservedIds.add(id);
+                }
+            }
+            int compactedLastId = DocumentIdCompactor.compact(index, indexedDocuments, reservedIds);
+            idAllocator.reset(compactedLastId, id -> reservedIds.contains(id) || indexedDocuments.get(id) != null);
+            long end = System.currentTimeMillis();
+            LOG.info("Document ids compacted from {} to {} in {}ms", lastId, compactedLastId, (end - start));
+        }
+        return true;
+    }
+
+    /**
+     * Jobs of the same folder or of the nested folders are not started together, because rollback
+     * of one of them would remove registrations of the other one
+     *
+     * @return identify if job was added
+     */
+    private synchronized boolean addJob(IndexJob job) {
+        for (IndexJob activeJob : activeJobs) {
+            if (activeJob.getFolder().startsWith(job.getFolder()) || job.getFolder().startsWith(activeJob.getFolder())) {
+                return false;
+            }
+        }
+        return activeJobs.add(job);
+    }
+
+    /**
+     * Walks the folder of the job or the folder created inside of it while the job is running,
+     * in the last case walk is an additional task of the job
+     */
+    private void walkJobFolder(IndexJob job, Path folderPath) {
+        IndexationTracker tracker = job.getTracker();
+        IndexationProgress progress = job.getIndexationProgress();
+        try {
+            walkFolder(folderPath, new IndexingFolderVisitor() {
+                @Override
+                void indexFoundFile(Path file) {
+                    progress.onFileFound();
+                    indexFileWithTrackProgress(file, job);
+                }
+
+                @Override
+                void indexFoundFiles(List<Path> files) {
+                    files.forEach(file -> progress.onFileFound());
+                    indexFilesWithTrackProgress(files, job);
+                }
+
+                @Override
+                public boolean isCanceled() {
+                    return tracker.isCanceled();
+                }
+            });
+        } catch (RuntimeException ex) {
+            LOG.warn("Walk of folder: {} finished with exception", folderPath, ex);
+        } finally {
+            if (folderPath.equals(job.getFolder())) {
+                progress.onWalkFinished();
+                LOG.info("Walk of folder: {} finished, found {} files", folderPath, progress.getFoundFiles());
+            }
+            onJobTaskFinished(job, 1);
+        }
+    }
+
+    /**
+     * When the last task of the job is finished, job waits for the callback from the index scheduler,
+     * so it's completed only after all its tokens are applied to the index
+     */
+    private void onJobTaskFinished(IndexJob job, int fileCount) {
+        int checkpointInterval = configuration.getCheckpointInterval();
+        if (checkpointInterval > 0 && !job.isCanceled()) {
+            int processed = processedFiles.addAndGet(fileCount);
+            if ((processed - fileCount) / checkpointInterval != processed / checkpointInterval) {
+                requestCheckpoint();
+            }
+        }
+        if (job.getTracker().onTaskFinished() && !job.isCanceled()) {
+            try {
+                documentQueue.put(new IndexationEvent(() -> completeJob(job)));
+            } catch (InterruptedException ex) {
+                LOG.warn("Put completion of folder: {} indexation to queue interrupted", job.getFolder());
+                Thread.currentThread().interrupt();
+                completeJob(job);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of documents is passed through the queue, so listeners get it when tokens of these documents
+     * are applied to the index. Documents registered later are not in the checkpoint and they are indexed
+     * again after restart.
+     */
+    private void requestCheckpoint() {
+        Collection<Path> folders = new ArrayList<>();
+        activeJobs.forEach(it -> {
+            if (!it.isCanceled()) {
+                folders.add(it.getFolder());
+            }
+        });
+        Collection<Document> documents = new ArrayList<>(indexedDocuments.getDocuments());
+        try {
+            documentQueue.put(new IndexationEvent(() -> {
+                LOG.info("Checkpoint of indexation with {} documents and {} unfinished folders", documents.size(), folders.size());
+                listeners.forEach(it -> it.onIndexationCheckpoint(documents, folders));
+            }));
+        } catch (InterruptedException ex) {
+            LOG.warn("Put checkpoint to queue interrupted", ex);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void completeJob(IndexJob job) {
+        if (activeJobs.remove(job)) {
+            job.getTracker().getListener().onIndexationFinished();
+            job.complete();
+            LOG.info("Indexation of folder: {} finished", job.getFolder());
+            if (configuration.getCheckpointInterval() > 0) {
+                // It's the scheduler thread, so checkpoint is put to the queue by other one and it must not wait for the pool
+                indexingExecutorService.executeUnbounded(this::requestCheckpoint, TaskPriority.BULK);
+            }
+        }
+    }
+
+    /**
+     * Waiting tasks of the job are skipped and reading tasks stop by the token, then documents
+     * of the job are removed in the background by the walker pool
+     */
+    private void cancelJob(IndexJob job) {
+        if (activeJobs.contains(job) && !job.isCanceled()) {
+            job.getTracker().cancel();
+            executors.getWalkerPool().execute(() -> rollbackIndexation(job));
+        }
+    }
+
+    /**
+     * Documents of the canceled indexation are removed from the queue, index and registry by one pass
+     * for all of them instead of the remove task for each document
+     */
+    private void rollbackIndexation(IndexJob job) {
+        IndexationTracker tracker = job.getTracker();
+        Path folderPath = job.getFolder();
+        try {
+            // Pool gets the spare thread while rollback waits, so the walk of the job can't be stuck behind it
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    tracker.awaitTasks();
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return !tracker.hasRunningTasks();
+                }
+            });
+        } catch (InterruptedException ex) {
+            LOG.warn("Rollback of folder: {} indexation interrupted", folderPath);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int removedDocuments = removeDocuments(tracker.getDocumentIds());
+        indexedArchives.removeIf(it -> it.startsWith(folderPath));
+        notificationManager.unregisterFolder(folderPath);
+        long end = System.currentTimeMillis();
+        LOG.info("Indexation of folder: {} rolled back, {} documents removed in {}ms", folderPath, removedDocuments, (end - start));
+        if (activeJobs.remove(job)) {
+            tracker.getListener().onIndexationFinished();
+            job.completeCanceled();
+            if (configuration.getCheckpointInterval() > 0) {
+                requestCheckpoint();
+            }
+        }
+    }
+
+    /**
+     * Method removes documents from the queue, index and registry by one pass for all of them
+     *
+     * @return count of removed documents
+     */
+    private int removeDocuments(TIntSet documentIds) {
+        // Owners of the content shared with other documents pass their tokens instead of removing them
+        TIntIntMap transfers = indexedDocuments.detachContents(documentIds);
+        TIntSet removedIds = documentIds;
+        if (!transfers.isEmpty()) {
+            removedIds = new TIntHashSet(documentIds);
+            removedIds.removeAll(transfers.keys());
+            try {
+                documentQueue.put(new IndexationEvent(new ContentTransferTask(transfers, index, indexedDocuments)));
+            } catch (InterruptedException ex) {
+                LOG.warn("Put content transfer to queue interrupted", ex);
+                Thread.currentThread().interrupt();
+            }
+        }
+        TIntSet removedTokenIds = removedIds;
+        liveQueue.removeIf(it -> removedTokenIds.contains(it.getDocumentId()));
+        documentQueue.removeIf(it -> removedTokenIds.contains(it.getDocumentId()));
+        index.removeByValues(removedIds);
+        int removedDocuments = indexedDocuments.removeAll(documentIds);
+        releaseIds(documentIds, documentQueue);
+        return removedDocuments;
+    }
+
     private void applyIndexChangesIfNeeded(IndexChanges indexChanges) {
         if (indexChanges != null) {
-            new Thread(() -> {
-                indexChanges.getNewFiles().forEach(file -> onFileChanged(FilesystemEvent.CREATED, file));
-                indexChanges.getChangedFiles().forEach(file -> onFileChanged(FilesystemEvent.MODIFIED, file));
-                indexChanges.getOldFiles().forEach(file -> onFileChanged(FilesystemEvent.DELETED, file));
+            executors.getWalkerPool().execute(() -> {
+                indexChanges.getNewFiles().forEach(file -> onFileChanged(FilesystemEvent.CREATED, file, TaskPriority.REPLAY));
+                indexChanges.getChangedFiles().forEach(file -> onFileChanged(FilesystemEvent.MODIFIED, file, TaskPriority.REPLAY));
+                indexChanges.getOldFiles().forEach(file -> onFileChanged(FilesystemEvent.DELETED, file, TaskPriority.REPLAY));
 
-                indexChanges.getNewFolders().forEach(folder -> onFolderChanged(FilesystemEvent.CREATED, folder));
-                indexChanges.getOldFolders().forEach(folder -> onFolderChanged(FilesystemEvent.DELETED, folder));
+                indexChanges.getNewFolders().forEach(folder -> onFolderChanged(FilesystemEvent.CREATED, folder, TaskPriority.REPLAY));
+                indexChanges.getOldFolders().forEach(folder -> onFolderChanged(FilesystemEvent.DELETED, folder, TaskPriority.REPLAY));
                 LOG.info("Finish applying index changes");
-            }).start();
+            });
         }
     }
 
-    private void indexFolder(Path folderPath) {
+    /**
+     * Walks the folder tree concurrently in the fork join pool, method returns when the walk is finished.
+     * Files are passed to the reading executor as soon as they are found.
+     */
+    private void walkFolder(Path folderPath, IndexingFolderVisitor visitor) {
+        if (visitor.preVisitDirectory(folderPath)) {
+            executors.getWalkerPool().invoke(new FolderWalkTask(folderPath, visitor));
+        }
+    }
+
+    private void indexFileWithTrackProgress(Path filePath, IndexJob job) {
+        IndexationTracker tracker = job.getTracker();
+        IndexationProgress progress = job.getIndexationProgress();
+        if (configuration.isArchiveIndexing() && ArchiveReader.isArchive(filePath)) {
+            indexArchive(filePath, TaskPriority.BULK, job, null);
+            return;
+        }
         try {
-            //Check that folder is registered and should not be indexed again (not a clean solution)
-            if (hasAccess(folderPath) && !notificationManager.isFolderRegistered(folderPath)) {
-                Files.walkFileTree(folderPath, new SimpleFileVisitor<Path>() {
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                        indexFile(file, false);
-                        return FileVisitResult.CONTINUE;
-                    }
+            if (isFileIndexed(filePath)) {
+                // Files of resumed indexation are mostly indexed already
+                LOG.debug("File already indexed: {}", filePath);
+            } else if (hasAccess(filePath)) {
+                Charset charset = detectCharset(filePath);
+                if (charset == null) {
+                    progress.onFileProcessed();
+                    return;
+                }
+                Document document = new Document(idAllocator.allocate(), false, filePath,
+                        Files.getLastModifiedTime(filePath).toMillis(), charset);
+                tracker.addDocument(document.getId());
+                DocumentReadWithTrackProgressTask task = new DocumentReadWithTrackProgressTask(document, indexedDocuments, documentQueue,
+                        tokenizer, configuration, progress, tracker.getCancellationToken());
+                if (submitAdmittedRead(withBulkWrites(task, Collections.singletonList(document)), filePath, TaskPriority.BULK, job, 1)) {
+                    statistics.incrementIndexedDocuments();
+                }
+                return;
+            } else {
+                LOG.warn("No access to file: {}", filePath.toAbsolutePath());
+            }
+        } catch (IOException ex) {
+            LOG.warn("File indexation with exception: {}", filePath.toAbsolutePath(), ex);
+        }
+        progress.onFileProcessed();
+    }
 
-                    @Override
-                    public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes basicFileAttributes) throws IOException {
-                        if (Files.isHidden(path)) {
-                            LOG.debug("Folder hidden and will be skipped {}", path);
-                            return FileVisitResult.SKIP_SUBTREE;
-                        }
-                        return FileVisitResult.CONTINUE;
-                    }
+    /**
+     * Small files of the folder are read in batches limited by count and total size, so the cost of
+     * the task submission is paid once per batch. Archives, large files and files which can't be
+     * checked are read by their own tasks.
+     */
+    private void indexFilesWithTrackProgress(List<Path> files, IndexJob job) {
+        int batchSize = configuration.getReadBatchSize();
+        long batchBytes = configuration.getReadBatchBytes();
+        List<Path> batch = new ArrayList<>();
+        long batchFileBytes = 0;
+        for (Path file : files) {
+            if (job.isCanceled()) {
+                return;
+            }
+            long fileSize = batchSize > 1 ? getBatchedFileSize(file) : -1;
+            if (fileSize < 0) {
+                indexFileWithTrackProgress(file, job);
+                continue;
+            }
+            if (!batch.isEmpty() && batchFileBytes + fileSize > batchBytes) {
+                submitBatch(batch, job);
+                batch = new ArrayList<>();
+                batchFileBytes = 0;
+            }
+            batch.add(file);
+            batchFileBytes += fileSize;
+            if (batch.size() >= batchSize) {
+                submitBatch(batch, job);
+                batch = new ArrayList<>();
+                batchFileBytes = 0;
+            }
+        }
+        if (!batch.isEmpty()) {
+            submitBatch(batch, job);
+        }
+    }
 
-                    @Override
-                    public FileVisitResult postVisitDirectory(Path folder, IOException exc) throws IOException {
-                        notificationManager.registerFolder(folder);
-                        return FileVisitResult.CONTINUE;
-                    }
-                });
-            } else {
-                LOG.warn("Folder already indexed or no access to folder: {}", folderPath.toAbsolutePath());
+    /**
+     * @return size of the file if it could be read in the batch, otherwise -1
+     */
+    private long getBatchedFileSize(Path filePath) {
+        if (configuration.isArchiveIndexing() && ArchiveReader.isArchive(filePath) || isFileIndexed(filePath)) {
+            return -1;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+            long size = attributes.size();
+            if (!attributes.isRegularFile() || size >= configuration.getLargeFileSize() || size > configuration.getReadBatchBytes()
+                    || !Files.isReadable(filePath)) {
+                return -1;
             }
+            return size;
         } catch (IOException ex) {
-            LOG.warn("Folder indexation with exception: {}", folderPath.toAbsolutePath(), ex);
+            // File is passed to the single reading, which reports the problem
+            return -1;
+        }
+    }
+
+    private void submitBatch(List<Path> batch, IndexJob job) {
+        if (batch.size() == 1) {
+            indexFileWithTrackProgress(batch.get(0), job);
+            return;
         }
+        IndexationTracker tracker = job.getTracker();
+        // Documents are created and marked by the reading thread, the list is read after the task is finished
+        List<Document> documents = new ArrayList<>(batch.size());
+        DocumentBatchReadTask task = new DocumentBatchReadTask(batch, file -> {
+            Document document = createJobDocument(file, tracker);
+            if (document != null) {
+                document.onBulkWriteQueued();
+                documents.add(document);
+            }
+            return document;
+        }, indexedDocuments, documentQueue, tokenizer, configuration, job.getIndexationProgress(), tracker.getCancellationToken());
+        submitAdmittedRead(withMarkedBulkWrites(task, documents), batch.get(0), TaskPriority.BULK, job, batch.size());
     }
 
-    private void indexFileWithTrackProgress(Path filePath, AtomicInteger documentCount, double percentage) {
+    /**
+     * Document of the batch is created by the reading thread just before the file is read
+     *
+     * @return created document, or null if file is binary or can't be read
+     */
+    private Document createJobDocument(Path filePath, IndexationTracker tracker) {
         try {
-            if (hasAccess(filePath) && !isFileIndexed(filePath)) {
-                Document document = new Document(uniqueDocumentId.incrementAndGet(), false, filePath,
-                        Files.getLastModifiedTime(filePath).toMillis());
-                DocumentReadWithTrackProgressTask task = new DocumentReadWithTrackProgressTask(document, indexedDocuments, documentQueue,
-                        currentIndexationTracker.getListener(), documentCount, percentage);
-                Future<?> submit = indexingExecutorService.submit(task);
-                currentIndexationTracker.getIndexingFutures().add(submit);
-            } else {
-                LOG.warn("File already indexed or no access to file: {}", filePath.toAbsolutePath());
+            Charset charset = detectCharset(filePath);
+            if (charset == null) {
+                return null;
             }
+            Document document = new Document(idAllocator.allocate(), false, filePath,
+                    Files.getLastModifiedTime(filePath).toMillis(), charset);
+            tracker.addDocument(document.getId());
+            statistics.incrementIndexedDocuments();
+            return document;
         } catch (IOException ex) {
             LOG.warn("File indexation with exception: {}", filePath.toAbsolutePath(), ex);
+            return null;
         }
     }
 
-    private void indexFile(Path filePath, boolean shouldTrack) {
+    /**
+     * @param priority The priority of the reading task
+     * @param onRead   The action which is run when reading is finished or skipped, it could be null
+     */
+    private void indexFile(Path filePath, boolean shouldTrack, TaskPriority priority, Runnable onRead) {
+        if (configuration.isArchiveIndexing() && ArchiveReader.isArchive(filePath)) {
+            indexArchive(filePath, priority, null, onRead);
+            return;
+        }
+        boolean submitted = false;
         try {
             if (hasAccess(filePath) && !isFileIndexed(filePath)) {
-                Document document = new Document(uniqueDocumentId.incrementAndGet(), shouldTrack, filePath,
-                        Files.getLastModifiedTime(filePath).toMillis());
-                DocumentReadTask task = new DocumentReadTask(document, indexedDocuments, documentQueue, notificationManager);
-                indexingExecutorService.execute(task);
+                Charset charset = detectCharset(filePath);
+                if (charset == null) {
+                    return;
+                }
+                Document document = new Document(idAllocator.allocate(), shouldTrack, filePath,
+                        Files.getLastModifiedTime(filePath).toMillis(), charset);
+                BlockingQueue<IndexationEvent> queue = getWriteQueue(priority);
+                Runnable task = withCallback(withBulkWrites(new DocumentReadTask(document, indexedDocuments, queue, tokenizer,
+                        configuration, notificationManager), document, queue), onRead);
+                readExecutorService.execute(usingIds(task), getReadPriority(filePath, priority));
+                statistics.incrementIndexedDocuments();
+                submitted = true;
             } else {
                 LOG.warn("File already indexed or no access to file: {}", filePath.toAbsolutePath());
             }
-        } catch (IOException ex) {
+        } catch (IOException | RejectedExecutionException ex) {
             LOG.warn("File indexation with exception: {}", filePath.toAbsolutePath(), ex);
+        } finally {
+            if (!submitted && onRead != null) {
+                onRead.run();
+            }
         }
     }
 
-    private void removeDocumentFromIndex(Document removableDocument) {
-        if (removableDocument != null) {
-            DocumentRemoveTask task = new DocumentRemoveTask(removableDocument, index, indexedDocuments, documentQueue, notificationManager);
-            indexingExecutorService.execute(task);
+    /**
+     * @param sequence The sequence number of the write, it's published when reading is finished or skipped
+     */
+    private void indexSource(DocumentSource source, long sequence) {
+        Document document = indexedDocuments.get(source.getPath());
+        BlockingQueue<IndexationEvent> queue = document != null ? getWriteQueue(document, TaskPriority.INTERACTIVE) : liveQueue;
+        Runnable onRead = () -> publishVisible(sequence, queue);
+        boolean submitted = false;
+        try {
+            long version = source.getVersion();
+            if (document != null) {
+                if (document.getModificationTimestamp() != version) {
+                    document.setSource(source);
+                    readExecutorService.execute(usingIds(withCallback(withBulkWrites(new DocumentUpdateTask(document, index,
+                            indexedDocuments, tokenizer, configuration, queue), document, queue), onRead)), TaskPriority.INTERACTIVE);
+                    submitted = true;
+                }
+                return;
+            }
+            Charset charset = detectCharset(source);
+            if (charset == null) {
+                return;
+            }
+            document = new Document(idAllocator.allocate(), false, source.getPath(), version, charset);
+            document.setSource(source);
+            readExecutorService.execute(usingIds(withCallback(new DocumentReadTask(document, indexedDocuments, queue,
+                    tokenizer, configuration, notificationManager), onRead)), TaskPriority.INTERACTIVE);
+            statistics.incrementIndexedDocuments();
+            submitted = true;
+        } catch (IOException | RejectedExecutionException ex) {
+            LOG.warn("Document indexation with exception: {}", source.getPath(), ex);
+        } finally {
+            if (!submitted) {
+                onRead.run();
+            }
         }
     }
 
-    private void reindexFile(Path filePath) {
-        if (hasAccess(filePath)) {
-            Document updatingDocument = null;
-            for (Map.Entry<Path, Document> documentEntry : indexedDocuments.entrySet()) {
-                Document document = documentEntry.getValue();
-                if (filePath.equals(document.getPath())) {
-                    updatingDocument = document;
+    /**
+     * Document ids which are read by the task stay valid until its events are queued, ids of queued
+     * events are kept by compaction
+     */
+    private Runnable usingIds(Runnable task) {
+        return () -> {
+            Lock lock = idUsage.readLock();
+            lock.lock();
+            try {
+                task.run();
+            } finally {
+                lock.unlock();
+            }
+        };
+    }
+
+    /**
+     * Interactive and live changes are written to the live queue, everything else goes to the bulk document queue
+     */
+    private BlockingQueue<IndexationEvent> getWriteQueue(TaskPriority priority) {
+        return priority == TaskPriority.INTERACTIVE || priority == TaskPriority.LIVE ? liveQueue : documentQueue;
+    }
+
+    /**
+     * Document which events still wait in the bulk queue is written there again, otherwise its newer
+     * events could be applied before the older ones
+     */
+    private BlockingQueue<IndexationEvent> getWriteQueue(Document document, TaskPriority priority) {
+        return document.hasPendingBulkWrites() ? documentQueue : getWriteQueue(priority);
+    }
+
+    private Runnable withBulkWrites(Runnable task, Document document, BlockingQueue<IndexationEvent> queue) {
+        return queue == documentQueue ? withBulkWrites(task, Collections.singletonList(document)) : task;
+    }
+
+    /**
+     * Documents are marked while the task writes them to the bulk queue and until their events are applied
+     */
+    private Runnable withBulkWrites(Runnable task, Collection<Document> documents) {
+        return withMarkedBulkWrites(() -> {
+            documents.forEach(Document::onBulkWriteQueued);
+            task.run();
+        }, documents);
+    }
+
+    /**
+     * @param documents The documents which are already marked as written to the bulk queue
+     */
+    private Runnable withMarkedBulkWrites(Runnable task, Collection<Document> documents) {
+        return () -> {
+            try {
+                task.run();
+            } finally {
+                try {
+                    documentQueue.put(new IndexationEvent(() -> documents.forEach(Document::onBulkWriteApplied)));
+                } catch (InterruptedException ex) {
+                    documents.forEach(Document::onBulkWriteApplied);
+                    LOG.warn("Put of bulk writes callback interrupted", ex);
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    private static Runnable withCallback(Runnable task, Runnable callback) {
+        if (callback == null) {
+            return task;
+        }
+        return () -> {
+            try {
+                task.run();
+            } finally {
+                callback.run();
+            }
+        };
+    }
+
+    /**
+     * Entries of the archive are read by one task, archive which entries are already indexed is skipped
+     *
+     * @param job    The job of folder indexation, if it's present reading is admitted by the limit of pending documents
+     * @param onRead The action which is run when reading is finished or skipped, it could be null
+     */
+    private void indexArchive(Path archivePath, TaskPriority priority, IndexJob job, Runnable onRead) {
+        IndexationTracker tracker = job != null ? job.getTracker() : null;
+        IndexationProgress progress = job != null ? job.getIndexationProgress() : null;
+        if (hasAccess(archivePath) && indexedArchives.add(archivePath)) {
+            Runnable task = withCallback(new ArchiveReadTask(archivePath, indexedDocuments, getWriteQueue(priority), tokenizer,
+                    configuration, pathFilter, idAllocator, statistics, tracker, progress), onRead);
+            if (job == null) {
+                readExecutorService.execute(usingIds(task), getReadPriority(archivePath, priority));
+                return;
+            } else if (submitAdmittedRead(task, archivePath, priority, job, 1)) {
+                return;
+            }
+        } else {
+            LOG.warn("Archive already indexed or no access to archive: {}", archivePath.toAbsolutePath());
+            if (progress != null) {
+                progress.onFileProcessed();
+            }
+        }
+        if (onRead != null) {
+            onRead.run();
+        }
+    }
+
+    /**
+     * Entries keep the modification time of the archive, so changed archive is found by it. All entries
+     * of changed archive are removed and the archive is read again.
+     */
+    private void reindexArchive(Path archivePath, TaskPriority priority) {
+        if (!indexedArchives.contains(archivePath) || !hasAccess(archivePath)) {
+            return;
+        }
+        Collection<Document> entries = getArchiveEntries(archivePath);
+        try {
+            long modificationTimestamp = Files.getLastModifiedTime(archivePath).toMillis();
+            if (entries.stream().allMatch(it -> it.getModificationTimestamp() == modificationTimestamp)) {
+                LOG.debug("Archive: {} is not changed", archivePath);
+                return;
+            }
+        } catch (IOException ex) {
+            LOG.warn("Can't read modification time of archive: {}", archivePath, ex);
+            return;
+        }
+        ArchiveReadTask task = new ArchiveReadTask(archivePath, indexedDocuments, getWriteQueue(priority), tokenizer, configuration,
+                pathFilter, idAllocator, statistics, null, null);
+        readExecutorService.execute(usingIds(() -> {
+            removeDocuments(toDocumentIds(entries));
+            task.run();
+        }), getReadPriority(archivePath, priority));
+    }
+
+    private Collection<Document> getArchiveEntries(Path archivePath) {
+        Collection<Document> entries = new ArrayList<>();
+        Path parent = archivePath.getParent();
+        for (Document document : parent != null ? indexedDocuments.getDocuments(parent) : indexedDocuments.getDocuments()) {
+            if (archivePath.equals(ArchiveReader.getArchivePath(document.getPath()))) {
+                entries.add(document);
+            }
+        }
+        return entries;
+    }
+
+    private static TIntSet toDocumentIds(Collection<Document> documents) {
+        TIntSet documentIds = new TIntHashSet(documents.size());
+        documents.forEach(it -> documentIds.add(it.getId()));
+        return documentIds;
+    }
+
+    /**
+     * Method blocks the caller while count of pending documents reach the limit. Task is skipped
+     * if indexation is canceled before it's started. Only jobs are admitted, so waiting is finished
+     * by the cancellation of the job, like the one done when the cache is invalidated.
+     *
+     * @param job       The job of folder indexation which waits for the task
+     * @param fileCount The count of files read by the task
+     * @return identify if the task was submitted
+     */
+    private boolean submitAdmittedRead(Runnable task, Path filePath, TaskPriority priority, IndexJob job, int fileCount) {
+        CancellationToken cancellationToken = job.getTracker().getCancellationToken();
+        // Batch can't wait for more permits than exist
+        int permits = Math.min(fileCount, configuration.getMaxPendingDocuments());
+        try {
+            while (!readAdmission.tryAcquire(permits, ADMISSION_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                // Permits are not released by the stopped pool
+                if (cancellationToken.isCanceled() || readExecutorService.isShutdown()) {
+                    return false;
                 }
             }
+        } catch (InterruptedException ex) {
+            LOG.warn("Waiting for reading of file: {} interrupted", filePath);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (!throttle.acquireRead(cancellationToken)) {
+            readAdmission.release(permits);
+            return false;
+        }
+        job.getTracker().onTaskStarted();
+        try {
+            readExecutorService.execute(usingIds(() -> {
+                try {
+                    if (!cancellationToken.isCanceled()) {
+                        task.run();
+                    }
+                } finally {
+                    throttle.releaseRead();
+                    readAdmission.release(permits);
+                    onJobTaskFinished(job, fileCount);
+                }
+            }), getReadPriority(filePath, priority));
+            return true;
+        } catch (RejectedExecutionException ex) {
+            throttle.releaseRead();
+            readAdmission.release(permits);
+            onJobTaskFinished(job, fileCount);
+            LOG.warn("Reading of file: {} rejected", filePath, ex);
+            return false;
+        }
+    }
 
+    private void removeDocumentFromIndex(Document removableDocument, TaskPriority priority) {
+        if (removableDocument != null) {
+            BlockingQueue<IndexationEvent> queue = getWriteQueue(removableDocument, priority);
+            BlockingQueue<IndexationEvent> otherQueue = queue == liveQueue ? documentQueue : liveQueue;
+            DocumentRemoveTask task = new DocumentRemoveTask(removableDocument, index, indexedDocuments, queue, notificationManager);
+            indexingExecutorService.execute(usingIds(() -> {
+                int documentId = removableDocument.getId();
+                synchronized (removableDocument) {
+                    // Task drops not applied tokens of its own queue only
+                    otherQueue.removeIf(it -> it.getType() != EventType.CALLBACK && it.getDocumentId() == documentId);
+                    task.run();
+                }
+                releaseIds(new TIntHashSet(new int[]{documentId}), queue);
+            }), priority);
+        }
+    }
+
+    /**
+     * Ids are released through the queue, so they are reused only after removal events of them are applied.
+     * Id which was given to other document in the meantime stays used.
+     *
+     * @param queue The queue which got the removal events
+     */
+    private void releaseIds(TIntSet documentIds, BlockingQueue<IndexationEvent> queue) {
+        try {
+            queue.put(new IndexationEvent(() -> documentIds.forEach(id -> {
+                if (indexedDocuments.get(id) == null) {
+                    idAllocator.release(id);
+                }
+                return true;
+            })));
+        } catch (InterruptedException ex) {
+            LOG.warn("Releasing of document ids interrupted", ex);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reindexFile(Path filePath, TaskPriority priority) {
+        if (hasAccess(filePath)) {
+            Document updatingDocument = indexedDocuments.get(filePath);
             if (updatingDocument != null) {
-                DocumentUpdateTask task = new DocumentUpdateTask(updatingDocument, index, tokenizer, documentQueue);
-                indexingExecutorService.submit(task);
+                BlockingQueue<IndexationEvent> queue = getWriteQueue(updatingDocument, priority);
+                DocumentUpdateTask task = new DocumentUpdateTask(updatingDocument, index, indexedDocuments, tokenizer, configuration,
+                        queue);
+                readExecutorService.execute(usingIds(withBulkWrites(task, updatingDocument, queue)), getReadPriority(filePath, priority));
             }
         } else {
             LOG.warn("Doesn't have access to the file: {}", filePath.toAbsolutePath());
         }
     }
 
+    /**
+     * @return charset of the file or null if file is binary and should be skipped
+     */
+    private Charset detectCharset(Path filePath) throws IOException {
+        return detectCharset(new FileDocumentSource(filePath));
+    }
+
+    private Charset detectCharset(DocumentSource source) throws IOException {
+        Charset charset = source.detectCharset(configuration.getFallbackCharsets());
+        if (charset == null) {
+            statistics.incrementSkippedBinaryDocuments();
+            LOG.debug("Binary file will be skipped: {}", source.getPath().toAbsolutePath());
+        }
+        return charset;
+    }
+
+    /**
+     * Large files of background indexation are read after the small ones, so they don't hold all
+     * indexing threads and many small documents become searchable earlier. Files changed by user
+     * stay in their lane.
+     */
+    private TaskPriority getReadPriority(Path filePath, TaskPriority priority) {
+        if (priority != TaskPriority.BULK && priority != TaskPriority.REPLAY) {
+            return priority;
+        }
+        try {
+            return Files.size(filePath) >= configuration.getLargeFileSize() ? TaskPriority.LARGE_FILE : priority;
+        } catch (IOException ex) {
+            return priority;
+        }
+    }
+
     private boolean isFileIndexed(Path filePath) {
-        return indexedDocuments.containsKey(filePath);
+        return indexedDocuments.contains(filePath);
     }
 
     private boolean hasAccess(Path path) {
@@ -344,26 +1204,91 @@ public class DocumentIndexManager implements FilesystemEventListener, Indexation
 
     private void scheduleIndexationIfNeeded() {
         if (indexationExecutor == null) {
-            indexationExecutor = SearchEngineExecutors.getScheduledExecutor();
-            IndexationSchedulerTask indexScheduler = new IndexationSchedulerTask(documentQueue, index, tokenizer, listeners);
+            indexationExecutor = executors.getScheduledExecutor();
+            IndexationSchedulerTask indexScheduler = new IndexationSchedulerTask(liveQueue, documentQueue, index, tokenizer, listeners, throttle);
             indexationExecutor.scheduleWithFixedDelay(indexScheduler, 0, 1, TimeUnit.SECONDS);
         }
     }
 
-    private long getFilesCount(Path folderPath) {
-        long count = 0;
-        try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(folderPath)) {
-            for (Path path : dirStream) {
-                if (Files.isDirectory(path) && !Files.isHidden(path)) {
-                    count += getFilesCount(path);
-                } else {
-                    count++;
+    /**
+     * Visitor which skips hidden and excluded folders, passes to indexation only not excluded files
+     * and registers walked folders in the notification manager
+     */
+    /**
+     * Listener of folder created at runtime, nobody waits for such job, so it's only logged
+     */
+    private static class RuntimeFolderListener implements IndexationEventListener {
+
+        private final Path folderPath;
+
+        private RuntimeFolderListener(Path folderPath) {
+            this.folderPath = folderPath;
+        }
+
+        @Override
+        public void onIndexationProgress(int progress) {
+        }
+
+        @Override
+        public void onIndexationFinished() {
+            LOG.debug("Indexation of created folder: {} finished", folderPath);
+        }
+    }
+
+    private abstract class IndexingFolderVisitor implements FolderWalkTask.FolderVisitor {
+
+        abstract void indexFoundFile(Path file);
+
+        void indexFoundFiles(List<Path> files) {
+            files.forEach(this::indexFoundFile);
+        }
+
+        @Override
+        public boolean preVisitDirectory(Path folder) {
+            try {
+                if (Files.isHidden(folder)) {
+                    LOG.debug("Folder hidden and will be skipped {}", folder);
+                    return false;
                 }
+            } catch (IOException ex) {
+                LOG.warn("Can't check that folder is hidden: {}", folder, ex);
             }
-        } catch (IOException ex) {
-            LOG.warn("Exception during files count calculation");
+            if (!pathFilter.accept(folder, true)) {
+                LOG.debug("Folder excluded and will be skipped {}", folder);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void visitFile(Path file) {
+            if (pathFilter.accept(file, false)) {
+                indexFoundFile(file);
+            }
+        }
+
+        @Override
+        public void visitFiles(List<Path> files) {
+            List<Path> acceptedFiles = new ArrayList<>(files.size());
+            for (Path file : files) {
+                if (pathFilter.accept(file, false)) {
+                    acceptedFiles.add(file);
+                }
+            }
+            if (!acceptedFiles.isEmpty()) {
+                indexFoundFiles(acceptedFiles);
+            }
+        }
+
+        @Override
+        public void postVisitDirectory(Path folder) {
+            notificationManager.registerFolder(folder);
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return false;
         }
-        return count;
     }
 
 }
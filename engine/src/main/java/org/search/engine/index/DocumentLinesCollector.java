@@ -0,0 +1,106 @@
+package org.search.engine.index;
+
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import org.search.engine.model.DocumentLines;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects tokens of the document line by line and builds {@link DocumentLines}.
+ * Fingerprint of the line depends on its tokens and their order, so lines with
+ * changed whitespaces only are treated as not changed.
+ */
+class DocumentLinesCollector {
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final String[] NO_TOKENS = new String[0];
+
+    private final TLongArrayList fingerprints = new TLongArrayList();
+    private final List<String[]> lineTokens = new ArrayList<>();
+    // Same token of different lines is stored by the single instance
+    private final Map<String, String> tokens = new HashMap<>();
+    private final Set<String> currentTokens = new LinkedHashSet<>();
+    private long currentFingerprint = FNV_OFFSET;
+    private int currentLine = 1;
+    private boolean finished;
+
+    DocumentLinesCollector() {
+    }
+
+    /**
+     * @param previousLines Lines of the previous version, their tokens are shared with the new lines
+     */
+    DocumentLinesCollector(DocumentLines previousLines) {
+        previousLines.getTokenLines().forEachKey(token -> {
+            tokens.put(token, token);
+            return true;
+        });
+    }
+
+    /**
+     * @return shared instance of the token
+     */
+    String accept(CharSequence token, int lineNumber) {
+        while (currentLine < lineNumber) {
+            finishLine();
+        }
+        long fingerprint = currentFingerprint;
+        for (int i = 0; i < token.length(); i++) {
+            fingerprint = (fingerprint ^ token.charAt(i)) * FNV_PRIME;
+        }
+        //Separator, so "ab c" and "a bc" have different fingerprints
+        currentFingerprint = (fingerprint ^ 0xFFFF) * FNV_PRIME;
+
+        String content = token.toString();
+        String shared = tokens.putIfAbsent(content, content);
+        if (shared == null) {
+            shared = content;
+        }
+        currentTokens.add(shared);
+        return shared;
+    }
+
+    /**
+     * @return lines with count of lines containing each token
+     */
+    DocumentLines toLines() {
+        finish();
+        TObjectIntHashMap<String> tokenLines = new TObjectIntHashMap<>();
+        for (String[] line : lineTokens) {
+            for (String token : line) {
+                tokenLines.adjustOrPutValue(token, 1, 1);
+            }
+        }
+        return new DocumentLines(fingerprints.toArray(), lineTokens.toArray(new String[0][]), tokenLines);
+    }
+
+    /**
+     * @param tokenLines Already calculated count of lines containing each token
+     */
+    DocumentLines toLines(TObjectIntHashMap<String> tokenLines) {
+        finish();
+        return new DocumentLines(fingerprints.toArray(), lineTokens.toArray(new String[0][]), tokenLines);
+    }
+
+    private void finish() {
+        if (!finished) {
+            finishLine();
+            finished = true;
+        }
+    }
+
+    private void finishLine() {
+        fingerprints.add(currentFingerprint);
+        lineTokens.add(currentTokens.isEmpty() ? NO_TOKENS : currentTokens.toArray(new String[0]));
+        currentTokens.clear();
+        currentFingerprint = FNV_OFFSET;
+        currentLine++;
+    }
+}
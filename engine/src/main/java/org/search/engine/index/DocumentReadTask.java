@@ -1,11 +1,12 @@
 package org.search.engine.index;
 
+import org.search.engine.SearchEngineConfiguration;
+import org.search.engine.analyzer.Tokenizer;
 import org.search.engine.filesystem.FilesystemNotifier;
 import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
 import org.search.engine.model.IndexationEvent;
 
-import java.nio.file.Path;
-import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 
 /**
@@ -16,9 +17,9 @@ class DocumentReadTask extends AbstractDocumentReadTask implements Runnable {
 
     private final FilesystemNotifier notificationManager;
 
-    DocumentReadTask(Document indexingDocument, Map<Path, Document> indexedDocuments, BlockingQueue<IndexationEvent> documentLinesQueue,
-                     FilesystemNotifier notificationManager) {
-        super(indexingDocument, indexedDocuments, documentLinesQueue);
+    DocumentReadTask(Document indexingDocument, DocumentRegistry indexedDocuments, BlockingQueue<IndexationEvent> documentLinesQueue,
+                     Tokenizer tokenizer, SearchEngineConfiguration configuration, FilesystemNotifier notificationManager) {
+        super(indexingDocument, indexedDocuments, documentLinesQueue, tokenizer, configuration);
         this.notificationManager = notificationManager;
     }
 
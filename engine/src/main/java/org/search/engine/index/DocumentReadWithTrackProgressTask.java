@@ -1,12 +1,13 @@
 package org.search.engine.index;
 
+import org.search.engine.SearchEngineConfiguration;
+import org.search.engine.analyzer.Tokenizer;
+import org.search.engine.model.CancellationToken;
 import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
 import org.search.engine.model.IndexationEvent;
 
-import java.nio.file.Path;
-import java.util.Map;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Task responsible for document indexation, and registration file in the filesystem
@@ -14,21 +15,25 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 class DocumentReadWithTrackProgressTask extends AbstractDocumentReadTask implements Runnable {
 
-    private final IndexationEventListener listener;
-    private final AtomicInteger documentCount;
-    private final double percentage;
+    private final IndexationProgress progress;
+    private final CancellationToken cancellationToken;
 
-    DocumentReadWithTrackProgressTask(Document indexingDocument, Map<Path, Document> indexedDocuments, BlockingQueue<IndexationEvent> documentLinesQueue,
-                                      IndexationEventListener listener, AtomicInteger documentCount, double percentage) {
-        super(indexingDocument, indexedDocuments, documentLinesQueue);
-        this.listener = listener;
-        this.documentCount = documentCount;
-        this.percentage = percentage;
+    DocumentReadWithTrackProgressTask(Document indexingDocument, DocumentRegistry indexedDocuments, BlockingQueue<IndexationEvent> documentLinesQueue,
+                                      Tokenizer tokenizer, SearchEngineConfiguration configuration, IndexationProgress progress,
+                                      CancellationToken cancellationToken) {
+        super(indexingDocument, indexedDocuments, documentLinesQueue, tokenizer, configuration);
+        this.progress = progress;
+        this.cancellationToken = cancellationToken;
     }
 
     @Override
     public void run() {
         readFile();
-        listener.onIndexationProgress((int) (documentCount.incrementAndGet() / percentage));
+        progress.onFileProcessed();
+    }
+
+    @Override
+    boolean isCanceled() {
+        return cancellationToken.isCanceled();
     }
 }
@@ -2,32 +2,33 @@ package org.search.engine.index;
 
 import org.search.engine.filesystem.FilesystemNotifier;
 import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
 import org.search.engine.model.EventType;
 import org.search.engine.model.IndexationEvent;
 import org.search.engine.tree.SearchEngineTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.file.Path;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 
 /**
  * Removal task responsible for delete file from index and unregister it in
- * notifier.
+ * notifier. Duplicate has no own tokens, tokens of the content owner are moved
+ * to one of its duplicates instead of removing. Removal waits for the running
+ * update of the document, so it doesn't miss tokens put by it.
  */
 class DocumentRemoveTask implements Runnable {
 
     private static final Logger LOG = LoggerFactory.getLogger(DocumentRemoveTask.class);
 
-    private final Map<Path, Document> indexedDocuments;
+    private final DocumentRegistry indexedDocuments;
     private final SearchEngineTree index;
     private final Document removableDocument;
     private final BlockingQueue<IndexationEvent> documentQueue;
     private final FilesystemNotifier notificationManager;
 
-    DocumentRemoveTask(Document removableDocument, SearchEngineTree index, Map<Path, Document> indexedDocuments,
+    DocumentRemoveTask(Document removableDocument, SearchEngineTree index, DocumentRegistry indexedDocuments,
                        BlockingQueue<IndexationEvent> documentQueue, FilesystemNotifier notificationManager) {
         this.index = index;
         this.indexedDocuments = indexedDocuments;
@@ -38,18 +39,36 @@ class DocumentRemoveTask implements Runnable {
 
     @Override
     public void run() {
+        synchronized (removableDocument) {
+            remove();
+        }
+    }
+
+    private void remove() {
         long start = System.currentTimeMillis();
         int documentId = removableDocument.getId();
-        //Old tokens which should be removed from index
-        Set<String> oldDocumentTokens = index.getKeys(documentId);
-        oldDocumentTokens.forEach(it -> {
+        boolean duplicate = removableDocument.isDuplicate();
+        Document newOwner = indexedDocuments.detachContent(removableDocument);
+        if (newOwner != null) {
             try {
-                documentQueue.put(new IndexationEvent(EventType.REMOVE, documentId, it));
+                documentQueue.put(new IndexationEvent(new ContentTransferTask(documentId, newOwner.getId(), index, indexedDocuments)));
             } catch (InterruptedException ex) {
-                LOG.warn("Put DELETE to queue interrupted", ex);
+                LOG.warn("Put content transfer to queue interrupted", ex);
             }
-        });
-        indexedDocuments.remove(removableDocument.getPath());
+        } else if (!duplicate) {
+            //Tokens which are not applied yet are dropped, otherwise they would stay in the index after the removal
+            documentQueue.removeIf(it -> it.getType() != EventType.CALLBACK && it.getDocumentId() == documentId);
+            //Old tokens which should be removed from index
+            Set<String> oldDocumentTokens = index.getKeys(documentId);
+            oldDocumentTokens.forEach(it -> {
+                try {
+                    documentQueue.put(new IndexationEvent(EventType.REMOVE, documentId, it));
+                } catch (InterruptedException ex) {
+                    LOG.warn("Put DELETE to queue interrupted", ex);
+                }
+            });
+        }
+        indexedDocuments.remove(removableDocument);
         if (removableDocument.isTracked()) {
             notificationManager.unregisterFile(removableDocument.getPath());
         }
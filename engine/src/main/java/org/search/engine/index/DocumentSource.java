@@ -0,0 +1,88 @@
+package org.search.engine.index;
+
+import org.search.engine.analyzer.Tokenizer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Source of the document content which is indexed and scanned for matched rows. Document is identified
+ * by the path, which is shown in the search results, but its content could come not only from the file
+ * on disk: from archive entry, from memory or from a database. Version of the content is compared to
+ * find out if indexed document is changed. Only {@link #openContent()} must be implemented, other
+ * methods read the content stream and could be overridden by sources with faster access.
+ */
+public interface DocumentSource {
+
+    /**
+     * @return the path which identifies the document in the index
+     */
+    Path getPath();
+
+    /**
+     * @return version of the content, like modification time, which grows when content is changed
+     * @throws IOException if version can't be read
+     */
+    long getVersion() throws IOException;
+
+    /**
+     * @return new stream of the raw content, which is closed by the caller
+     * @throws IOException if content can't be read
+     */
+    InputStream openContent() throws IOException;
+
+    /**
+     * @return true if content of the document can still be read
+     */
+    default boolean exists() {
+        return true;
+    }
+
+    /**
+     * @return length of the content which is read, or -1 if it isn't known without reading
+     * @throws IOException if size can't be read
+     */
+    default long getSize() throws IOException {
+        return -1;
+    }
+
+    /**
+     * @return detected charset of the content or null if content is binary
+     * @throws IOException if content can't be read
+     */
+    default Charset detectCharset(List<Charset> fallbackCharsets) throws IOException {
+        try (InputStream content = new BufferedInputStream(openContent())) {
+            return DocumentContentSniffer.detectCharset(content, fallbackCharsets);
+        }
+    }
+
+    /**
+     * @see DocumentContentReader#readTokens(Path, Charset, Tokenizer, long, ContentHasher, DocumentContentReader.LineTokenConsumer)
+     */
+    default void readTokens(Charset charset, Tokenizer tokenizer, long maxBytes, ContentHasher hasher,
+                            DocumentContentReader.LineTokenConsumer consumer) throws IOException {
+        try (InputStream content = openContent()) {
+            DocumentContentReader.readTokens(content, charset, tokenizer, maxBytes, hasher, consumer);
+        }
+    }
+
+    /**
+     * @see DocumentContentReader#hashContent(Path, long, ContentHasher)
+     */
+    default void hashContent(long maxBytes, ContentHasher hasher) throws IOException {
+        try (InputStream content = openContent()) {
+            DocumentContentReader.hashContent(content, maxBytes, hasher);
+        }
+    }
+
+    /**
+     * @return source of the indexed file or archive entry
+     */
+    static DocumentSource of(Path path) {
+        return ArchiveReader.getArchivePath(path) != null ? new ArchiveEntrySource(path) : new FileDocumentSource(path);
+    }
+}
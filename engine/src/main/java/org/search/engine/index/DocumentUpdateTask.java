@@ -1,7 +1,11 @@
 package org.search.engine.index;
 
+import gnu.trove.map.hash.TObjectIntHashMap;
+import org.search.engine.SearchEngineConfiguration;
 import org.search.engine.analyzer.Tokenizer;
 import org.search.engine.model.Document;
+import org.search.engine.model.DocumentLines;
+import org.search.engine.model.DocumentRegistry;
 import org.search.engine.model.EventType;
 import org.search.engine.model.IndexationEvent;
 import org.search.engine.tree.SearchEngineTree;
@@ -9,76 +13,255 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.stream.Stream;
 
 /**
  * Update task compare difference of new file with already indexed and
  * add or remove only old and new tokens. Old tokens which were not changed
- * stay as it is.
+ * stay as it is. If lines of the document are known from the previous update,
+ * only tokens of changed lines are compared. Document which shared its content
+ * with other documents gets all tokens of the new content. Concurrent updates of
+ * one document wait for each other.
  */
 class DocumentUpdateTask implements Runnable {
 
     private static final Logger LOG = LoggerFactory.getLogger(DocumentUpdateTask.class);
 
     private final SearchEngineTree index;
+    private final DocumentRegistry indexedDocuments;
     private final Document updatingDocument;
     private final Tokenizer tokenizer;
+    private final SearchEngineConfiguration configuration;
     private final BlockingQueue<IndexationEvent> documentQueue;
+    // Source is taken once, so all reads of the update see the same content even if source is replaced
+    private DocumentSource source;
 
-    DocumentUpdateTask(Document updatingDocument, SearchEngineTree index, Tokenizer tokenizer, BlockingQueue<IndexationEvent> documentQueue) {
+    DocumentUpdateTask(Document updatingDocument, SearchEngineTree index, DocumentRegistry indexedDocuments, Tokenizer tokenizer,
+                       SearchEngineConfiguration configuration, BlockingQueue<IndexationEvent> documentQueue) {
         this.index = index;
+        this.indexedDocuments = indexedDocuments;
         this.updatingDocument = updatingDocument;
         this.documentQueue = documentQueue;
         this.tokenizer = tokenizer;
+        this.configuration = configuration;
     }
 
+    /**
+     * Updates of the same document are run one by one, so each of them is compared with the lines
+     * left by the previous one and their events are queued in the same order
+     */
     @Override
     public void run() {
+        synchronized (updatingDocument) {
+            update();
+        }
+    }
+
+    private void update() {
         long start = System.currentTimeMillis();
-        int documentId = updatingDocument.getId();
+        source = updatingDocument.getSource();
+        if (isContentUnchanged()) {
+            return;
+        }
+        boolean hasOwnTokens = detachContent();
 
-        //Old tokens which should be removed from index
-        Set<String> oldDocumentTokens = index.getKeys(documentId);
-        Set<String> updatedDocumentTokens = new HashSet<>();
+        ContentHasher hasher = configuration.isContentHashing() ? new ContentHasher() : null;
+        try {
+            long size = source.getSize();
+            boolean keepLines = configuration.isIncrementalUpdate() && size >= 0 && size < configuration.getLargeFileSize();
+            DocumentLines previousLines = hasOwnTokens ? updatingDocument.getLines() : null;
+            boolean completed;
+            if (keepLines && previousLines != null) {
+                completed = updateChangedLines(previousLines, hasher);
+            } else {
+                completed = updateAllTokens(keepLines, hasher, hasOwnTokens);
+            }
+            //Positions of tokens could be changed in any line, so tracked lexeme should be searched again
+            putEvent(EventType.REFRESH, null);
 
-        try (Stream<String> lines = Files.lines(updatingDocument.getPath())) {
-            lines.forEach(line -> tokenizer.tokenize(line).forEach(token -> {
-                String content = token.getContent();
-                if (oldDocumentTokens.contains(content)) {
-                    oldDocumentTokens.remove(content);
-                    updatedDocumentTokens.add(content);
-                } else {
-                    //It's a new token, should be added to the index
-                    try {
-                        documentQueue.put(new IndexationEvent(EventType.ADD, documentId, content));
-                    } catch (InterruptedException ex) {
-                        LOG.warn("Put ADD to queue interrupted", ex);
-                    }
-                }
-            }));
-            updatedDocumentTokens.forEach(it -> {
-                try {
-                    documentQueue.put(new IndexationEvent(EventType.UPDATE, documentId, it));
-                } catch (InterruptedException ex) {
-                    LOG.warn("Put UPDATE to queue interrupted", ex);
-                }
-            });
-            oldDocumentTokens.forEach(it -> {
-                try {
-                    documentQueue.put(new IndexationEvent(EventType.REMOVE, documentId, it));
-                } catch (InterruptedException ex) {
-                    LOG.warn("Put DELETE to queue interrupted", ex);
-                }
-            });
-            updatingDocument.setModificationTimestamp(Files.getLastModifiedTime(updatingDocument.getPath()).toMillis());
+            if (hasher != null && completed) {
+                indexedDocuments.updateContent(updatingDocument, hasher.getLength(), hasher.getValue());
+            } else {
+                indexedDocuments.updateContent(updatingDocument, -1, 0);
+            }
+            updatingDocument.setModificationTimestamp(source.getVersion());
             long end = System.currentTimeMillis();
             LOG.debug("Update index for file: {} took {}ms", updatingDocument.getPath(), (end - start));
         } catch (IOException ex) {
+            updatingDocument.setLines(null);
+            // Content is not known, so the document is not shared and the next update reads it again
+            indexedDocuments.updateContent(updatingDocument, -1, 0);
             LOG.warn("Update index for file: {} finished with exception", updatingDocument.getPath());
         }
     }
+
+    /**
+     * Lines of the new content are compared with the previous lines by fingerprints. Only tokens of lines between
+     * not changed beginning and end of the document are counted, token is added to the index if it appears
+     * in the document and removed if no more lines contain it.
+     *
+     * @return true if all tokens of the document are indexed
+     */
+    private boolean updateChangedLines(DocumentLines previousLines, ContentHasher hasher) throws IOException {
+        DocumentLinesCollector collector = new DocumentLinesCollector(previousLines);
+        source.readTokens(updatingDocument.getCharset(), tokenizer, configuration.getMaxFileSize(), hasher,
+                (token, lineNumber, column) -> collector.accept(token, lineNumber));
+        // Previous lines stay unchanged until the new ones are published by the document
+        TObjectIntHashMap<String> tokenLines = new TObjectIntHashMap<>(previousLines.getTokenLines());
+        DocumentLines lines = collector.toLines(tokenLines);
+
+        int firstChanged = 0;
+        int previousEnd = previousLines.size();
+        int end = lines.size();
+        while (firstChanged < previousEnd && firstChanged < end
+                && previousLines.getFingerprint(firstChanged) == lines.getFingerprint(firstChanged)) {
+            firstChanged++;
+        }
+        while (previousEnd > firstChanged && end > firstChanged
+                && previousLines.getFingerprint(previousEnd - 1) == lines.getFingerprint(end - 1)) {
+            previousEnd--;
+            end--;
+        }
+
+        Set<String> removedTokens = new HashSet<>();
+        Set<String> addedTokens = new HashSet<>();
+        for (int line = firstChanged; line < previousEnd; line++) {
+            for (String token : previousLines.getTokens(line)) {
+                if (tokenLines.adjustOrPutValue(token, -1, 0) <= 0) {
+                    tokenLines.remove(token);
+                    removedTokens.add(token);
+                }
+            }
+        }
+        for (int line = firstChanged; line < end; line++) {
+            for (String token : lines.getTokens(line)) {
+                //Token removed from the changed lines but still present in the new ones is not changed
+                if (tokenLines.adjustOrPutValue(token, 1, 1) == 1 && !removedTokens.remove(token)) {
+                    addedTokens.add(token);
+                }
+            }
+        }
+
+        if (tokenLines.size() >= configuration.getMaxDocumentTerms()) {
+            //Document became too big for keeping it in memory, index is updated by the whole content
+            updatingDocument.setLines(null);
+            if (hasher != null) {
+                hasher.reset();
+            }
+            return updateAllTokens(false, hasher, true);
+        }
+        addedTokens.forEach(it -> putEvent(EventType.ADD, it));
+        removedTokens.forEach(it -> putEvent(EventType.REMOVE, it));
+        updatingDocument.setLines(lines);
+        LOG.debug("Changed lines {}-{} of file: {}, added {} and removed {} tokens", firstChanged + 1, end,
+                updatingDocument.getPath(), addedTokens.size(), removedTokens.size());
+        return true;
+    }
+
+    /**
+     * Tokens of the whole content are compared with the tokens of the document in the index
+     *
+     * @param keepLines    Identify if lines should be collected for the next incremental update
+     * @param hasOwnTokens Identify if the document has tokens in the index, otherwise all tokens are added
+     * @return true if all tokens of the document are indexed
+     */
+    private boolean updateAllTokens(boolean keepLines, ContentHasher hasher, boolean hasOwnTokens) throws IOException {
+        int documentId = updatingDocument.getId();
+        //Old tokens which should be removed from index
+        Set<String> oldDocumentTokens = hasOwnTokens ? index.getKeys(documentId) : new HashSet<>();
+        Set<String> updatedDocumentTokens = new HashSet<>();
+
+        //New tokens which should be added to the index
+        Set<String> newDocumentTokens = new HashSet<>();
+
+        DocumentLinesCollector collector = keepLines ? new DocumentLinesCollector() : null;
+        source.readTokens(updatingDocument.getCharset(), tokenizer, configuration.getMaxFileSize(), hasher,
+                new DocumentContentReader.LineTokenConsumer() {
+                    @Override
+                    public void accept(CharSequence token, int lineNumber, int column) {
+                        String content = collector != null ? collector.accept(token, lineNumber) : token.toString();
+                        if (oldDocumentTokens.remove(content)) {
+                            updatedDocumentTokens.add(content);
+                        } else if (!updatedDocumentTokens.contains(content)) {
+                            //It's a new token, should be added to the index
+                            newDocumentTokens.add(content);
+                        }
+                    }
+
+                    @Override
+                    public boolean isStopped() {
+                        return updatedDocumentTokens.size() + newDocumentTokens.size() >= configuration.getMaxDocumentTerms();
+                    }
+                });
+        newDocumentTokens.forEach(it -> putEvent(EventType.ADD, it));
+        oldDocumentTokens.forEach(it -> putEvent(EventType.REMOVE, it));
+
+        boolean completed = updatedDocumentTokens.size() + newDocumentTokens.size() < configuration.getMaxDocumentTerms();
+        updatingDocument.setLines(collector != null && completed ? collector.toLines() : null);
+        return completed;
+    }
+
+    private void putEvent(EventType type, String content) {
+        try {
+            documentQueue.put(new IndexationEvent(type, updatingDocument.getId(), content));
+        } catch (InterruptedException ex) {
+            LOG.warn("Put {} to queue interrupted", type, ex);
+        }
+    }
+
+    /**
+     * Content of the document is not shared anymore. Duplicate has no tokens, owner passes its
+     * tokens to the other document with the same content.
+     *
+     * @return true if the document still has own tokens in the index
+     */
+    private boolean detachContent() {
+        if (updatingDocument.isDuplicate()) {
+            indexedDocuments.detachContent(updatingDocument);
+            return false;
+        }
+        Document newOwner = indexedDocuments.detachContent(updatingDocument);
+        if (newOwner == null) {
+            return true;
+        }
+        try {
+            documentQueue.put(new IndexationEvent(new ContentTransferTask(updatingDocument.getId(), newOwner.getId(), index,
+                    indexedDocuments)));
+            return false;
+        } catch (InterruptedException ex) {
+            LOG.warn("Put content transfer to queue interrupted", ex);
+            return true;
+        }
+    }
+
+    /**
+     * Touched or rewritten file with the same content is not reindexed. Content is hashed without
+     * tokenization only if length of the file is the same as indexed one.
+     *
+     * @return true if content of the document is the same as indexed
+     */
+    private boolean isContentUnchanged() {
+        if (!configuration.isContentHashing() || !updatingDocument.hasContentHash()) {
+            return false;
+        }
+        try {
+            long size = source.getSize();
+            // Size isn't known for some sources, like compressed files, so only hash is compared
+            if (size >= 0 && Math.min(size, configuration.getMaxFileSize()) != updatingDocument.getContentLength()) {
+                return false;
+            }
+            ContentHasher hasher = new ContentHasher();
+            source.hashContent(configuration.getMaxFileSize(), hasher);
+            if (hasher.getLength() == updatingDocument.getContentLength() && hasher.getValue() == updatingDocument.getContentHash()) {
+                updatingDocument.setModificationTimestamp(source.getVersion());
+                LOG.debug("Content of file: {} is not changed, reindex skipped", updatingDocument.getPath());
+                return true;
+            }
+        } catch (IOException ex) {
+            LOG.warn("Hashing of file: {} finished with exception", updatingDocument.getPath(), ex);
+        }
+        return false;
+    }
 }
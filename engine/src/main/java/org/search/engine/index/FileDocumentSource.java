@@ -0,0 +1,67 @@
+package org.search.engine.index;
+
+import org.search.engine.analyzer.Tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Source of the file on disk. Content is read by the file channel and version is the modification time
+ * of the file.
+ */
+public final class FileDocumentSource implements DocumentSource {
+
+    private final Path path;
+
+    public FileDocumentSource(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public long getVersion() throws IOException {
+        return Files.getLastModifiedTime(path).toMillis();
+    }
+
+    @Override
+    public InputStream openContent() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Size of the compressed file is unknown, because its content is decompressed while it's read
+     */
+    @Override
+    public long getSize() throws IOException {
+        return InflatingChannel.isCompressed(path) ? -1 : Files.size(path);
+    }
+
+    @Override
+    public Charset detectCharset(List<Charset> fallbackCharsets) throws IOException {
+        return DocumentContentSniffer.detectCharset(path, fallbackCharsets);
+    }
+
+    @Override
+    public void readTokens(Charset charset, Tokenizer tokenizer, long maxBytes, ContentHasher hasher,
+                           DocumentContentReader.LineTokenConsumer consumer) throws IOException {
+        DocumentContentReader.readTokens(path, charset, tokenizer, maxBytes, hasher, consumer);
+    }
+
+    @Override
+    public void hashContent(long maxBytes, ContentHasher hasher) throws IOException {
+        DocumentContentReader.hashContent(path, maxBytes, hasher);
+    }
+}
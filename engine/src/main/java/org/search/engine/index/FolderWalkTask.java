@@ -0,0 +1,101 @@
+package org.search.engine.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork join task which walks the folder tree. Each subfolder is listed by the separate forked
+ * task, so folders are listed concurrently and found files go to the visitor without waiting
+ * for the whole tree. Files of one folder are passed together in the listing order, so they
+ * could be read close to each other. Symbolic links are not followed, like in the
+ * {@link Files#walkFileTree(Path, java.nio.file.FileVisitor)}, so links to folders are skipped
+ * and links to files are visited as files.
+ */
+class FolderWalkTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOG = LoggerFactory.getLogger(FolderWalkTask.class);
+    // Files of the big folder are passed by parts, so reading starts before the folder is listed
+    private static final int FILES_CHUNK_SIZE = 1024;
+
+    private final Path folder;
+    private final FolderVisitor visitor;
+
+    FolderWalkTask(Path folder, FolderVisitor visitor) {
+        this.folder = folder;
+        this.visitor = visitor;
+    }
+
+    @Override
+    protected void compute() {
+        List<FolderWalkTask> subfolderTasks = new ArrayList<>();
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(folder)) {
+            for (Path path : directoryStream) {
+                if (visitor.isCanceled()) {
+                    break;
+                }
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    if (visitor.preVisitDirectory(path)) {
+                        FolderWalkTask task = new FolderWalkTask(path, visitor);
+                        task.fork();
+                        subfolderTasks.add(task);
+                    }
+                } else if (Files.isDirectory(path)) {
+                    LOG.debug("Link to folder: {} is not followed", path);
+                } else {
+                    files.add(path);
+                    if (files.size() >= FILES_CHUNK_SIZE) {
+                        visitor.visitFiles(files);
+                        files = new ArrayList<>();
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            LOG.warn("Listing of folder: {} finished with exception", folder, ex);
+        }
+        if (!files.isEmpty() && !visitor.isCanceled()) {
+            visitor.visitFiles(files);
+        }
+        subfolderTasks.forEach(FolderWalkTask::join);
+        if (!visitor.isCanceled()) {
+            visitor.postVisitDirectory(folder);
+        }
+    }
+
+    /**
+     * Visitor of the walked tree, methods are called concurrently from the different threads
+     */
+    interface FolderVisitor {
+
+        /**
+         * @return true if folder should be walked, otherwise the subtree is skipped
+         */
+        boolean preVisitDirectory(Path folder);
+
+        void visitFile(Path file);
+
+        /**
+         * Called with the files of the same folder in the listing order
+         */
+        default void visitFiles(List<Path> files) {
+            files.forEach(this::visitFile);
+        }
+
+        /**
+         * Called when all files and subfolders of the folder are visited
+         */
+        void postVisitDirectory(Path folder);
+
+        boolean isCanceled();
+    }
+}
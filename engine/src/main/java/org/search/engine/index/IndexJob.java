@@ -0,0 +1,97 @@
+package org.search.engine.index;
+
+import org.search.engine.model.IndexationTracker;
+
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Handle of one folder indexation. Several jobs can run in parallel, each of them has its own
+ * progress, cancellation and completion. Completion future is completed when all documents of
+ * the folder are searchable, or exceptionally with {@link CancellationException} when the job
+ * is canceled and its documents are removed from the index.
+ */
+public class IndexJob {
+
+    private final Path folder;
+    private final IndexationTracker tracker;
+    private final IndexationProgress progress;
+    private final Consumer<IndexJob> canceller;
+    private final CompletableFuture<IndexJob> completion = new CompletableFuture<>();
+
+    IndexJob(Path folder, IndexationTracker tracker, IndexationProgress progress, Consumer<IndexJob> canceller) {
+        this.folder = folder;
+        this.tracker = tracker;
+        this.progress = progress;
+        this.canceller = canceller;
+    }
+
+    public Path getFolder() {
+        return folder;
+    }
+
+    /**
+     * @return estimated progress of the job in percents
+     */
+    public int getProgress() {
+        return completion.isDone() && !completion.isCompletedExceptionally() ? 100 : progress.getProgress();
+    }
+
+    public int getFoundFiles() {
+        return progress.getFoundFiles();
+    }
+
+    public int getProcessedFiles() {
+        return progress.getProcessedFiles();
+    }
+
+    public boolean isCanceled() {
+        return tracker.isCanceled();
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * Method stops the job and removes its already indexed documents, job which is done is not changed
+     */
+    public void cancel() {
+        canceller.accept(this);
+    }
+
+    /**
+     * @return future which is completed when documents of the job are searchable or the job is rolled back
+     */
+    public CompletableFuture<IndexJob> getCompletion() {
+        return completion;
+    }
+
+    IndexationTracker getTracker() {
+        return tracker;
+    }
+
+    IndexationProgress getIndexationProgress() {
+        return progress;
+    }
+
+    void complete() {
+        completion.complete(this);
+    }
+
+    void completeCanceled() {
+        completion.completeExceptionally(new CancellationException("Indexation of folder " + folder + " canceled"));
+    }
+
+    @Override
+    public String toString() {
+        return "IndexJob{" +
+                "folder=" + folder +
+                ", progress=" + getProgress() +
+                ", canceled=" + isCanceled() +
+                ", done=" + isDone() +
+                '}';
+    }
+}
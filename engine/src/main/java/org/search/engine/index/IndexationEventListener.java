@@ -1,8 +1,22 @@
 package org.search.engine.index;
 
+import org.search.engine.model.Document;
+
+import java.nio.file.Path;
+import java.util.Collection;
+
 public interface IndexationEventListener {
 
     void onIndexationProgress(int progress);
 
     void onIndexationFinished();
+
+    /**
+     * Method is called periodically during folder indexation, so its progress could be persisted
+     *
+     * @param documents The documents which tokens are already applied to the index
+     * @param folders   The folders which indexation is not finished yet
+     */
+    default void onIndexationCheckpoint(Collection<Document> documents, Collection<Path> folders) {
+    }
 }
@@ -0,0 +1,71 @@
+package org.search.engine.index;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Incremental estimation of folder indexation progress. Files are counted while the folder
+ * is walked, so overall count is not known until the walk is finished. Until that progress
+ * is estimated from the already found files and can't reach the last percents. Listener is
+ * notified only when progress grows, so it never goes back when new files are found.
+ */
+class IndexationProgress {
+
+    // Part of progress which can be reached while files are still found
+    private static final double WALKING_PROGRESS_SHARE = 0.9;
+
+    private final IndexationEventListener listener;
+    private final AtomicInteger foundFiles = new AtomicInteger();
+    private final AtomicInteger processedFiles = new AtomicInteger();
+    private final AtomicInteger reportedProgress = new AtomicInteger();
+    private volatile boolean walkFinished;
+
+    IndexationProgress(IndexationEventListener listener) {
+        this.listener = listener;
+    }
+
+    void onFileFound() {
+        foundFiles.incrementAndGet();
+    }
+
+    /**
+     * Should be called for each found file when it's indexed or skipped
+     */
+    void onFileProcessed() {
+        processedFiles.incrementAndGet();
+        reportProgress();
+    }
+
+    void onWalkFinished() {
+        walkFinished = true;
+        reportProgress();
+    }
+
+    int getFoundFiles() {
+        return foundFiles.get();
+    }
+
+    int getProcessedFiles() {
+        return processedFiles.get();
+    }
+
+    int getProgress() {
+        return reportedProgress.get();
+    }
+
+    private void reportProgress() {
+        int found = foundFiles.get();
+        if (found == 0) {
+            return;
+        }
+        double estimation = (double) Math.min(processedFiles.get(), found) * 100 / found;
+        int progress = (int) (walkFinished ? estimation : estimation * WALKING_PROGRESS_SHARE);
+        int reported = reportedProgress.get();
+        while (progress > reported) {
+            if (reportedProgress.compareAndSet(reported, progress)) {
+                listener.onIndexationProgress(progress);
+                return;
+            }
+            reported = reportedProgress.get();
+        }
+    }
+}
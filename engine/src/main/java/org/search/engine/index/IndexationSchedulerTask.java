@@ -1,6 +1,7 @@
 package org.search.engine.index;
 
 import org.search.engine.analyzer.Tokenizer;
+import org.search.engine.model.EventType;
 import org.search.engine.model.IndexationEvent;
 import org.search.engine.tree.SearchEngineTree;
 import org.slf4j.Logger;
@@ -8,50 +9,77 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
- * Scheduler task responsible for handling document queue and
- * update index
+ * Scheduler task responsible for handling document queues and
+ * update index. Events of interactive and live changes are applied
+ * first and without limit, only tokens of the bulk queue are throttled.
  */
 public class IndexationSchedulerTask implements Runnable {
 
     private static final Logger LOG = LoggerFactory.getLogger(IndexationSchedulerTask.class);
 
+    private final BlockingQueue<IndexationEvent> liveQueue;
     private final BlockingQueue<IndexationEvent> documentLinesQueue;
     private final SearchEngineTree index;
     private final Tokenizer tokenizer;
     private final List<IndexationEventListener> listeners;
+    private final IndexingThrottle throttle;
     private boolean isFinished;
 
     IndexationSchedulerTask(BlockingQueue<IndexationEvent> documentLinesQueue, SearchEngineTree index, Tokenizer tokenizer, List<IndexationEventListener> listeners) {
+        this(documentLinesQueue, index, tokenizer, listeners, new IndexingThrottle(false, 1));
+    }
+
+    IndexationSchedulerTask(BlockingQueue<IndexationEvent> documentLinesQueue, SearchEngineTree index, Tokenizer tokenizer,
+                            List<IndexationEventListener> listeners, IndexingThrottle throttle) {
+        this(new LinkedBlockingQueue<>(), documentLinesQueue, index, tokenizer, listeners, throttle);
+    }
+
+    /**
+     * @param liveQueue          The queue of interactive and live changes which is drained before the bulk one
+     * @param documentLinesQueue The queue of bulk indexation
+     * @param throttle           The throttle which limits count of bulk tokens applied by one run while user searches
+     */
+    IndexationSchedulerTask(BlockingQueue<IndexationEvent> liveQueue, BlockingQueue<IndexationEvent> documentLinesQueue,
+                            SearchEngineTree index, Tokenizer tokenizer, List<IndexationEventListener> listeners,
+                            IndexingThrottle throttle) {
+        this.liveQueue = liveQueue;
         this.documentLinesQueue = documentLinesQueue;
         this.index = index;
         this.tokenizer = tokenizer;
         this.listeners = listeners;
+        this.throttle = throttle;
     }
 
     @Override
     public void run() {
-        while (!documentLinesQueue.isEmpty()) {
-            IndexationEvent indexationEvent = documentLinesQueue.poll();
-            if (indexationEvent != null) {
-                switch (indexationEvent.getType()) {
-                    case ADD:
-                        index.putMergeOnConflict(indexationEvent.getContent(), indexationEvent.getDocumentId());
-                        break;
-                    case ADD_LINE:
-                        int documentId = indexationEvent.getDocumentId();
-                        tokenizer.tokenize(indexationEvent.getContent())
-                                .forEach(token -> index.putMergeOnConflict(token.getContent(), documentId));
-                        break;
-                    case UPDATE:
-                        index.update(indexationEvent.getContent(), indexationEvent.getDocumentId());
-                        break;
-                    case REMOVE:
-                        index.removeByKeyAndValue(indexationEvent.getContent(), indexationEvent.getDocumentId());
-                        break;
+        int batchSize = throttle.getWriteBatchSize();
+        int appliedEvents = 0;
+        while (true) {
+            IndexationEvent indexationEvent = liveQueue.poll();
+            if (indexationEvent == null) {
+                IndexationEvent nextEvent = documentLinesQueue.peek();
+                if (nextEvent == null) {
+                    break;
+                }
+                // Callbacks are not counted and not deferred, only tokens wait for the next run
+                if (nextEvent.getType() != EventType.CALLBACK && appliedEvents >= batchSize) {
+                    // Rest of the queue waits for the next run, so writers don't hold the index while user searches
+                    throttle.onWriteBatchDeferred();
+                    LOG.debug("Indexation throttled, {} events applied", appliedEvents);
+                    return;
+                }
+                indexationEvent = documentLinesQueue.poll();
+                if (indexationEvent == null) {
+                    break;
+                }
+                if (indexationEvent.getType() != EventType.CALLBACK) {
+                    appliedEvents++;
                 }
             }
+            apply(indexationEvent);
             isFinished = true;
         }
 
@@ -61,4 +89,33 @@ public class IndexationSchedulerTask implements Runnable {
             isFinished = false;
         }
     }
+
+    private void apply(IndexationEvent indexationEvent) {
+        switch (indexationEvent.getType()) {
+            case ADD:
+                index.putMergeOnConflict(indexationEvent.getContent(), indexationEvent.getDocumentId());
+                break;
+            case ADD_LINE:
+                int documentId = indexationEvent.getDocumentId();
+                tokenizer.tokenize(indexationEvent.getContent())
+                        .forEach(token -> index.putMergeOnConflict(token.getContent(), documentId));
+                break;
+            case UPDATE:
+                index.update(indexationEvent.getContent(), indexationEvent.getDocumentId());
+                break;
+            case REFRESH:
+                index.refresh(indexationEvent.getDocumentId());
+                break;
+            case REMOVE:
+                index.removeByKeyAndValue(indexationEvent.getContent(), indexationEvent.getDocumentId());
+                break;
+            case CALLBACK:
+                try {
+                    indexationEvent.getCallback().run();
+                } catch (RuntimeException ex) {
+                    LOG.warn("Indexation callback finished with exception", ex);
+                }
+                break;
+        }
+    }
 }
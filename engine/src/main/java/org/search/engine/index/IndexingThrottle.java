@@ -0,0 +1,146 @@
+package org.search.engine.index;
+
+import org.search.engine.ThrottleMetrics;
+import org.search.engine.model.CancellationToken;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive throttle of folder indexation which protects latency of searches. While user types,
+ * count of concurrently read documents and count of events applied to the index by one scheduler
+ * run are lowered, to the minimum if searches are slow. When searches stop the limits grow back
+ * to the full speed gradually.
+ */
+public class IndexingThrottle {
+
+    // Searches which come within this time after the previous one are treated as typing
+    private static final long ACTIVE_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(1500);
+    // Time of growing back to the full speed after typing
+    private static final long RAMP_NANOS = TimeUnit.MILLISECONDS.toNanos(3000);
+    private static final double TARGET_SEARCH_MILLIS = 50;
+    private static final double TYPING_LEVEL = 0.25;
+    // Weight of the last search in the average latency
+    private static final double LATENCY_WEIGHT = 0.3;
+    private static final int MIN_WRITE_BATCH = 2_000;
+    private static final int FULL_WRITE_BATCH = 100_000;
+    private static final long READ_CHECK_MILLIS = 50;
+
+    private final boolean enabled;
+    private final int maxReads;
+    private final LongSupplier clock;
+    private final AtomicInteger activeSearches = new AtomicInteger();
+    private final LongAdder waitedReads = new LongAdder();
+    private final LongAdder deferredWriteBatches = new LongAdder();
+    private volatile long lastSearchNanos;
+    private volatile boolean searched;
+    private volatile double averageSearchMillis;
+    private int runningReads;
+
+    /**
+     * @param maxReads The count of concurrent reads of folder indexation at the full speed
+     */
+    public IndexingThrottle(boolean enabled, int maxReads) {
+        this(enabled, maxReads, System::nanoTime);
+    }
+
+    IndexingThrottle(boolean enabled, int maxReads, LongSupplier clock) {
+        this.enabled = enabled;
+        this.maxReads = Math.max(1, maxReads);
+        this.clock = clock;
+    }
+
+    /**
+     * @return start time of the search which should be passed to {@link #onSearchFinished(long)}
+     */
+    public long onSearchStarted() {
+        long now = clock.getAsLong();
+        activeSearches.incrementAndGet();
+        lastSearchNanos = now;
+        searched = true;
+        return now;
+    }
+
+    public void onSearchFinished(long startNanos) {
+        long now = clock.getAsLong();
+        double latencyMillis = (now - startNanos) / 1e6;
+        synchronized (this) {
+            averageSearchMillis = averageSearchMillis == 0 ? latencyMillis
+                    : averageSearchMillis * (1 - LATENCY_WEIGHT) + latencyMillis * LATENCY_WEIGHT;
+            lastSearchNanos = now;
+            activeSearches.decrementAndGet();
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return share of the full indexing speed from 0 while search is running to 1 when user is idle
+     */
+    public double getLevel() {
+        if (!enabled || !searched) {
+            return 1;
+        }
+        if (activeSearches.get() > 0) {
+            return 0;
+        }
+        double typingLevel = averageSearchMillis > TARGET_SEARCH_MILLIS ? 0 : TYPING_LEVEL;
+        long idleNanos = clock.getAsLong() - lastSearchNanos;
+        if (idleNanos < ACTIVE_WINDOW_NANOS) {
+            return typingLevel;
+        }
+        return Math.min(1, typingLevel + (1 - typingLevel) * (idleNanos - ACTIVE_WINDOW_NANOS) / RAMP_NANOS);
+    }
+
+    public int getReadLimit() {
+        double level = getLevel();
+        return level >= 1 ? maxReads : Math.max(1, (int) (maxReads * level));
+    }
+
+    public int getWriteBatchSize() {
+        double level = getLevel();
+        return level >= 1 ? Integer.MAX_VALUE : Math.max(MIN_WRITE_BATCH, (int) (FULL_WRITE_BATCH * level));
+    }
+
+    /**
+     * Method blocks the caller while count of running reads reaches the current limit
+     *
+     * @return identify if read can be started, false if indexation was canceled or waiting interrupted
+     */
+    public synchronized boolean acquireRead(CancellationToken cancellationToken) {
+        boolean waited = false;
+        while (runningReads >= getReadLimit()) {
+            if (cancellationToken.isCanceled()) {
+                return false;
+            }
+            waited = true;
+            try {
+                wait(READ_CHECK_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        if (waited) {
+            waitedReads.increment();
+        }
+        runningReads++;
+        return true;
+    }
+
+    public synchronized void releaseRead() {
+        runningReads--;
+        notifyAll();
+    }
+
+    void onWriteBatchDeferred() {
+        deferredWriteBatches.increment();
+    }
+
+    public synchronized ThrottleMetrics getMetrics() {
+        double level = getLevel();
+        return new ThrottleMetrics(level, getReadLimit(), runningReads, getWriteBatchSize(), activeSearches.get(),
+                averageSearchMillis, waitedReads.sum(), deferredWriteBatches.sum());
+    }
+}
@@ -0,0 +1,275 @@
+package org.search.engine.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Channel which decompresses gzip or zlib (deflate) stream of the underlying channel while it's read,
+ * so compressed files like rotated logs are tokenized without unpacking them to the disk. Inflater
+ * and input buffer are reused by the thread, so reading of many small compressed files doesn't
+ * allocate native inflater per file. Concatenated gzip members are read as one stream, like it's
+ * done by the gzip tool.
+ */
+final class InflatingChannel implements ReadableByteChannel {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int GZIP_MAGIC_FIRST = 0x1F;
+    private static final int GZIP_MAGIC_SECOND = 0x8B;
+    private static final int GZIP_DEFLATE_METHOD = 8;
+    private static final int GZIP_TRAILER_LENGTH = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final ThreadLocal<InflaterBuffers> inflaterBuffers = ThreadLocal.withInitial(InflaterBuffers::new);
+
+    private final ReadableByteChannel channel;
+    private final boolean isGzip;
+    private final InflaterBuffers buffers;
+    private final Inflater inflater;
+    private final ByteBuffer input;
+    private boolean isFinished;
+
+    /**
+     * @param channel The channel positioned at the start of compressed stream
+     * @param isGzip  True for gzip stream, false for zlib stream
+     */
+    InflatingChannel(ReadableByteChannel channel, boolean isGzip) throws IOException {
+        this.channel = channel;
+        this.isGzip = isGzip;
+        InflaterBuffers pooled = inflaterBuffers.get();
+        // Nested channels of the same thread can't share the pooled inflater
+        this.buffers = pooled.isUsed ? new InflaterBuffers() : pooled;
+        this.buffers.isUsed = true;
+        this.inflater = isGzip ? buffers.gzipInflater : buffers.zlibInflater;
+        this.inflater.reset();
+        this.input = buffers.input;
+        this.input.clear();
+        this.input.flip();
+        if (isGzip && !readGzipHeader()) {
+            isFinished = true;
+        }
+    }
+
+    /**
+     * @return true if the file starts with gzip or zlib header
+     */
+    static boolean isCompressed(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return getFormat(channel) != null;
+        }
+    }
+
+    /**
+     * Method checks the header of the file without changing position of the channel
+     *
+     * @return true for gzip stream, false for zlib stream or null if content is not compressed
+     */
+    static Boolean getFormat(FileChannel channel) throws IOException {
+        ByteBuffer header = inflaterBuffers.get().header;
+        header.clear();
+        int read = 0;
+        while (header.hasRemaining() && read >= 0) {
+            read = channel.read(header, header.position());
+        }
+        header.flip();
+        return getFormat(header);
+    }
+
+    /**
+     * Zlib header is accepted only with the default window size and valid check bits, so plain text
+     * which starts with 'x' is not taken for the compressed stream.
+     *
+     * @return true for gzip stream, false for zlib stream or null if content is not compressed
+     */
+    static Boolean getFormat(ByteBuffer header) {
+        if (header.remaining() < 3) {
+            return null;
+        }
+        int first = header.get(header.position()) & 0xFF;
+        int second = header.get(header.position() + 1) & 0xFF;
+        if (first == GZIP_MAGIC_FIRST && second == GZIP_MAGIC_SECOND && header.get(header.position() + 2) == GZIP_DEFLATE_METHOD) {
+            return true;
+        }
+        if (first == 0x78 && (second == 0x01 || second == 0x9C || second == 0xDA) && (first * 256 + second) % 31 == 0) {
+            return false;
+        }
+        return null;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (isFinished) {
+            return -1;
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        try {
+            while (true) {
+                if (inflater.needsInput()) {
+                    if (!input.hasRemaining() && !fill()) {
+                        // Truncated stream, content which was inflated is still returned
+                        isFinished = true;
+                        return -1;
+                    }
+                    inflater.setInput(input.array(), input.position(), input.remaining());
+                }
+                int inflated = inflate(dst);
+                // Bytes not taken by the inflater stay in the input buffer
+                input.position(input.limit() - inflater.getRemaining());
+                if (inflated > 0) {
+                    return inflated;
+                }
+                if (inflater.finished()) {
+                    if (!isGzip || !skip(GZIP_TRAILER_LENGTH) || !readGzipHeader()) {
+                        isFinished = true;
+                        return -1;
+                    }
+                    inflater.reset();
+                } else if (inflater.needsDictionary()) {
+                    throw new IOException("Compressed stream requires preset dictionary");
+                }
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Malformed compressed stream", ex);
+        }
+    }
+
+    private int inflate(ByteBuffer dst) throws DataFormatException {
+        if (dst.hasArray()) {
+            int inflated = inflater.inflate(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            dst.position(dst.position() + inflated);
+            return inflated;
+        }
+        byte[] output = buffers.output;
+        int inflated = inflater.inflate(output, 0, Math.min(output.length, dst.remaining()));
+        dst.put(output, 0, inflated);
+        return inflated;
+    }
+
+    /**
+     * Method parses the header of the next gzip member and leaves the input positioned at the compressed data
+     *
+     * @return false if there are no more members in the stream
+     */
+    private boolean readGzipHeader() throws IOException {
+        if (!ensure(10)) {
+            return false;
+        }
+        if ((input.get() & 0xFF) != GZIP_MAGIC_FIRST || (input.get() & 0xFF) != GZIP_MAGIC_SECOND) {
+            // Trailing garbage after the last member is ignored
+            return false;
+        }
+        if (input.get() != GZIP_DEFLATE_METHOD) {
+            throw new IOException("Unsupported gzip compression method");
+        }
+        int flags = input.get() & 0xFF;
+        // Modification time, extra flags and operating system
+        input.position(input.position() + 6);
+        if ((flags & FEXTRA) != 0) {
+            if (!ensure(2)) {
+                return false;
+            }
+            int length = (input.get() & 0xFF) | (input.get() & 0xFF) << 8;
+            if (!skip(length)) {
+                return false;
+            }
+        }
+        if ((flags & FNAME) != 0 && !skipZeroTerminated()) {
+            return false;
+        }
+        if ((flags & FCOMMENT) != 0 && !skipZeroTerminated()) {
+            return false;
+        }
+        return (flags & FHCRC) == 0 || skip(2);
+    }
+
+    private boolean skipZeroTerminated() throws IOException {
+        while (ensure(1)) {
+            if (input.get() == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean skip(int count) throws IOException {
+        int remaining = count;
+        while (remaining > 0) {
+            if (!ensure(1)) {
+                return false;
+            }
+            int skipped = Math.min(remaining, input.remaining());
+            input.position(input.position() + skipped);
+            remaining -= skipped;
+        }
+        return true;
+    }
+
+    /**
+     * @return false if end of stream is reached before the count of bytes is available in the input
+     */
+    private boolean ensure(int count) throws IOException {
+        while (input.remaining() < count) {
+            input.compact();
+            int read = channel.read(input);
+            input.flip();
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return false if end of underlying stream is reached
+     */
+    private boolean fill() throws IOException {
+        input.clear();
+        int read = 0;
+        while (read == 0) {
+            read = channel.read(input);
+        }
+        input.flip();
+        return read > 0;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            if (buffers == inflaterBuffers.get()) {
+                buffers.isUsed = false;
+            } else {
+                buffers.gzipInflater.end();
+                buffers.zlibInflater.end();
+            }
+        }
+    }
+
+    /**
+     * Per thread inflaters and buffers which are reused between reading of compressed documents
+     */
+    private static class InflaterBuffers {
+
+        private final Inflater gzipInflater = new Inflater(true);
+        private final Inflater zlibInflater = new Inflater();
+        private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        private final byte[] output = new byte[BUFFER_SIZE];
+        private final ByteBuffer header = ByteBuffer.allocate(3);
+        private boolean isUsed;
+    }
+}
@@ -0,0 +1,52 @@
+package org.search.engine.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Source of the content kept in memory, like generated documents or rows loaded from a database.
+ * Content is held by the source while the document is indexed, because it's read again to find
+ * matched rows. Path only identifies the document, it doesn't have to exist on disk. Documents of
+ * memory sources are not restored after restart of the engine.
+ */
+public final class MemoryDocumentSource implements DocumentSource {
+
+    private final Path path;
+    private final byte[] content;
+    private final long version;
+
+    public MemoryDocumentSource(Path path, byte[] content, long version) {
+        if (path == null || content == null) {
+            throw new IllegalArgumentException("Path and content of the document must not be null");
+        }
+        this.path = path;
+        this.content = content;
+        this.version = version;
+    }
+
+    public MemoryDocumentSource(Path path, String content, long version) {
+        this(path, content.getBytes(StandardCharsets.UTF_8), version);
+    }
+
+    @Override
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public InputStream openContent() {
+        return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public long getSize() {
+        return content.length;
+    }
+}
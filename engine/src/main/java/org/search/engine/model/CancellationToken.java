@@ -0,0 +1,18 @@
+package org.search.engine.model;
+
+/**
+ * Token shared by all tasks of one indexation. Tasks check it before start and during
+ * reading, so cancellation doesn't need to know about each submitted task.
+ */
+public class CancellationToken {
+
+    private volatile boolean canceled;
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    public void cancel() {
+        canceled = true;
+    }
+}
@@ -1,30 +1,60 @@
 package org.search.engine.model;
 
+import org.search.engine.index.DocumentSource;
+
 import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Data class which contains brief information about documents which indexed
  * by the library. Internal identifier of the document in the lib, path to the
  * file itself and to it's parent. Boolean flag if user added this file manually
- * or it was during folder indexation.
+ * or it was during folder indexation. Charset detected during indexation, which
+ * should be used for all further reads of the document. Length and hash of the
+ * indexed content, which allow to skip reindex of not changed document. Document
+ * with the same content as already indexed one has no own tokens in the index, it
+ * refers to the content owner instead. Lines of the document are kept in memory
+ * only after its first update. Content of the document is read from its source,
+ * which is the file or archive entry of the path if other source isn't set.
  */
 public class Document implements Serializable {
 
     private static final long serialVersionUID = 7240996246763128397L;
+    private static final AtomicIntegerFieldUpdater<Document> PENDING_BULK_WRITES =
+            AtomicIntegerFieldUpdater.newUpdater(Document.class, "pendingBulkWrites");
 
     private int id;
     private boolean tracked;
     private Path path;
     private Path parent;
     private long modificationTimestamp;
+    private transient Charset charset;
+    // Negative if hash of the content is unknown
+    private long contentLength = -1;
+    private long contentHash;
+    // Id of the document whose tokens are shared by this one, zero if document has own tokens
+    private int contentOwnerId;
+    // Not persisted, it's built again by the first update after restart
+    private transient volatile DocumentLines lines;
+    // Null for documents of files and archive entries, other sources are not persisted
+    private transient volatile DocumentSource source;
+    // Writes of the document which events wait in the bulk queue of the index
+    private transient volatile int pendingBulkWrites;
 
     public Document(int id, boolean tracked, Path path, long modificationTimestamp) {
+        this(id, tracked, path, modificationTimestamp, StandardCharsets.UTF_8);
+    }
+
+    public Document(int id, boolean tracked, Path path, long modificationTimestamp, Charset charset) {
         this.id = id;
         this.tracked = tracked;
         this.path = path;
         this.parent = path.getParent();
         this.modificationTimestamp = modificationTimestamp;
+        this.charset = charset;
     }
 
     public int getId() {
@@ -66,4 +96,82 @@ public class Document implements Serializable {
     public void setModificationTimestamp(long modificationTimestamp) {
         this.modificationTimestamp = modificationTimestamp;
     }
+
+    public Charset getCharset() {
+        if (charset == null)
+            return StandardCharsets.UTF_8;
+        return charset;
+    }
+
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(long contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public boolean hasContentHash() {
+        return contentLength >= 0;
+    }
+
+    public int getContentOwnerId() {
+        return contentOwnerId;
+    }
+
+    public void setContentOwnerId(int contentOwnerId) {
+        this.contentOwnerId = contentOwnerId;
+    }
+
+    /**
+     * @return true if document shares tokens of other document with the same content
+     */
+    public boolean isDuplicate() {
+        return contentOwnerId > 0;
+    }
+
+    public DocumentSource getSource() {
+        DocumentSource documentSource = source;
+        return documentSource != null ? documentSource : DocumentSource.of(path);
+    }
+
+    public void setSource(DocumentSource source) {
+        this.source = source;
+    }
+
+    public DocumentLines getLines() {
+        return lines;
+    }
+
+    public void setLines(DocumentLines lines) {
+        this.lines = lines;
+    }
+
+    public void onBulkWriteQueued() {
+        PENDING_BULK_WRITES.incrementAndGet(this);
+    }
+
+    public void onBulkWriteApplied() {
+        PENDING_BULK_WRITES.decrementAndGet(this);
+    }
+
+    /**
+     * @return true if events of the document may still wait in the bulk queue, then its next
+     * events should follow them there
+     */
+    public boolean hasPendingBulkWrites() {
+        return pendingBulkWrites > 0;
+    }
 }
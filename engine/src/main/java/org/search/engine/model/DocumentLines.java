@@ -0,0 +1,45 @@
+package org.search.engine.model;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Lines of the indexed document kept for incremental update. Each line is stored as
+ * fingerprint of its tokens and set of its unique tokens, document also has count of lines
+ * containing each token. Unchanged lines are found by fingerprints, so index is updated only
+ * by tokens of the changed lines.
+ */
+public class DocumentLines {
+
+    private final long[] fingerprints;
+    private final String[][] lineTokens;
+    private final TObjectIntHashMap<String> tokenLines;
+
+    public DocumentLines(long[] fingerprints, String[][] lineTokens, TObjectIntHashMap<String> tokenLines) {
+        this.fingerprints = fingerprints;
+        this.lineTokens = lineTokens;
+        this.tokenLines = tokenLines;
+    }
+
+    public int size() {
+        return fingerprints.length;
+    }
+
+    public long getFingerprint(int line) {
+        return fingerprints[line];
+    }
+
+    /**
+     * @param line The index of line starting from zero
+     * @return unique tokens of the line
+     */
+    public String[] getTokens(int line) {
+        return lineTokens[line];
+    }
+
+    /**
+     * @return count of lines containing each token of the document
+     */
+    public TObjectIntHashMap<String> getTokenLines() {
+        return tokenLines;
+    }
+}
@@ -0,0 +1,499 @@
+package org.search.engine.model;
+
+import gnu.trove.iterator.TIntIntIterator;
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Registry of indexed documents with constant time lookup by path and by document id.
+ * Lookup by path is not blocking, lookup by id goes through the primitive map under the read lock,
+ * so file events and search results don't iterate over all documents.
+ * <p>
+ * Documents with the same content length and hash share tokens of the first indexed one, which is
+ * the content owner. Index returns only the owner id, registry maps it to the owner and all its
+ * duplicates. Owner which is removed or changed passes its tokens to one of the duplicates.
+ */
+public class DocumentRegistry {
+
+    private final Map<Path, Document> documentsByPath = new ConcurrentHashMap<>();
+    private final TIntObjectMap<Document> documentsById = new TIntObjectHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TIntObjectMap<TIntSet> duplicatesByOwner = new TIntObjectHashMap<>();
+    private final Map<ContentKey, Integer> ownersByContent = new HashMap<>();
+    // Previous owners mapped to the new ones until tokens are moved in the index
+    private final TIntIntMap transferredOwners = new TIntIntHashMap();
+
+    /**
+     * Method registers the document, document registered by the same path or id before is replaced
+     */
+    public void put(Document document) {
+        lock.writeLock().lock();
+        try {
+            Document previous = documentsByPath.put(document.getPath(), document);
+            if (previous != null && previous.getId() != document.getId()) {
+                documentsById.remove(previous.getId());
+                unlinkContent(previous);
+            }
+            previous = documentsById.put(document.getId(), document);
+            if (previous != null && !previous.getPath().equals(document.getPath())) {
+                documentsByPath.remove(previous.getPath(), previous);
+                unlinkContent(previous);
+            }
+            linkContent(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method registers the document as duplicate of the registered document with the same content,
+     * tokens of the duplicate should not be added to the index
+     *
+     * @return identify if the document was registered, false if there is no document with the same content
+     */
+    public boolean putDuplicate(Document document) {
+        if (!document.hasContentHash()) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            ContentKey key = new ContentKey(document);
+            Integer ownerId = ownersByContent.get(key);
+            Document owner = ownerId != null ? documentsById.get(ownerId) : null;
+            if (owner == null || owner == document || owner.isDuplicate() || !key.equals(new ContentKey(owner))) {
+                return false;
+            }
+            document.setContentOwnerId(owner.getId());
+            put(document);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method stops sharing of the document content before it's changed or removed. Duplicate just
+     * loses the owner, so it has no tokens in the index. Owner passes its tokens to the first of
+     * its duplicates, which becomes owner of the others.
+     *
+     * @return new owner which should get tokens of the document, or null if document has no duplicates
+     * @see #completeTransfer(int)
+     */
+    public Document detachContent(Document document) {
+        lock.writeLock().lock();
+        try {
+            if (document.isDuplicate()) {
+                unlinkContent(document);
+                document.setContentOwnerId(0);
+                return null;
+            }
+            return transferContent(document, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method passes content of the owners from the given documents to their duplicates which are not
+     * in the given documents, it's used before the documents are removed together
+     *
+     * @return ids of the previous owners mapped to the new ones
+     */
+    public TIntIntMap detachContents(TIntSet documentIds) {
+        lock.writeLock().lock();
+        try {
+            TIntIntMap transfers = new TIntIntHashMap();
+            for (TIntIterator iterator = documentIds.iterator(); iterator.hasNext(); ) {
+                Document document = documentsById.get(iterator.next());
+                if (document != null && !document.isDuplicate()) {
+                    Document successor = transferContent(document, documentIds);
+                    if (successor != null) {
+                        transfers.put(document.getId(), successor.getId());
+                    }
+                }
+            }
+            return transfers;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method stores length and hash of the changed content, registered owner is found by the new
+     * content, so documents indexed later with the same content share its tokens
+     *
+     * @param contentLength The length of the content or -1 if content is not hashed
+     */
+    public void updateContent(Document document, long contentLength, long contentHash) {
+        lock.writeLock().lock();
+        try {
+            boolean isRegistered = documentsById.get(document.getId()) == document;
+            if (isRegistered) {
+                unlinkContent(document);
+            }
+            document.setContentLength(contentLength);
+            document.setContentHash(contentHash);
+            if (isRegistered) {
+                linkContent(document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method should be called when tokens of the previous owner are moved to the new one in the index,
+     * until that documents of the new owner are found by id of the previous one
+     */
+    public void completeTransfer(int previousOwnerId) {
+        lock.writeLock().lock();
+        try {
+            transferredOwners.remove(previousOwnerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method removes the document if it's still registered, document which replaced it is kept
+     *
+     * @return identify if the document was removed
+     */
+    public boolean remove(Document document) {
+        lock.writeLock().lock();
+        try {
+            if (documentsByPath.remove(document.getPath(), document)) {
+                documentsById.remove(document.getId());
+                unlinkContent(document);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method removes documents with given ids under one lock, it's used for rollback of the big indexation
+     *
+     * @return count of removed documents
+     */
+    public int removeAll(TIntSet documentIds) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (TIntIterator iterator = documentIds.iterator(); iterator.hasNext(); ) {
+                Document document = documentsById.remove(iterator.next());
+                if (document != null) {
+                    documentsByPath.remove(document.getPath(), document);
+                    unlinkContent(document);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method changes ids of the documents by the mapping under one lock, documents which are not
+     * in the mapping keep their ids
+     *
+     * @param mapping Old ids of the documents mapped to the new ones
+     */
+    public void renumber(TIntIntMap mapping) {
+        lock.writeLock().lock();
+        try {
+            List<Document> renumbered = new ArrayList<>(mapping.size());
+            for (TIntIntIterator iterator = mapping.iterator(); iterator.hasNext(); ) {
+                iterator.advance();
+                Document document = documentsById.remove(iterator.key());
+                if (document != null) {
+                    document.setId(iterator.value());
+                    renumbered.add(document);
+                }
+            }
+            renumbered.forEach(it -> documentsById.put(it.getId(), it));
+            relinkContent(mapping);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Duplicates whose owner is not registered have no tokens in the index, they are removed,
+     * so they are indexed again as new files
+     *
+     * @return count of removed documents
+     */
+    public int removeOrphanDuplicates() {
+        lock.writeLock().lock();
+        try {
+            TIntSet orphanIds = new TIntHashSet();
+            for (Document document : documentsById.valueCollection()) {
+                if (document.isDuplicate()) {
+                    Document owner = documentsById.get(document.getContentOwnerId());
+                    if (owner == null || owner.isDuplicate()) {
+                        orphanIds.add(document.getId());
+                    }
+                }
+            }
+            return removeAll(orphanIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Document get(Path path) {
+        return documentsByPath.get(path);
+    }
+
+    public Document get(int documentId) {
+        lock.readLock().lock();
+        try {
+            return documentsById.get(documentId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return registered documents which tokens are indexed by the id, they are the document itself and its duplicates
+     */
+    public List<Document> getContentDocuments(int documentId) {
+        lock.readLock().lock();
+        try {
+            List<Document> documents = new ArrayList<>();
+            addContentDocuments(documentId, documents);
+            int successorId = transferredOwners.get(documentId);
+            if (successorId > 0 && successorId != documentId) {
+                addContentDocuments(successorId, documents);
+            }
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return ids of the previous and new owners whose tokens are not moved in the index yet
+     */
+    public TIntSet getTransferringIds() {
+        lock.readLock().lock();
+        try {
+            TIntSet ids = new TIntHashSet(transferredOwners.keys());
+            ids.addAll(transferredOwners.values());
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(Path path) {
+        return documentsByPath.containsKey(path);
+    }
+
+    public boolean contains(Document document) {
+        return documentsByPath.get(document.getPath()) == document;
+    }
+
+    /**
+     * @return not modifiable view of the registered paths
+     */
+    public Set<Path> getPaths() {
+        return Collections.unmodifiableSet(documentsByPath.keySet());
+    }
+
+    /**
+     * @return not modifiable view of the registered documents
+     */
+    public Collection<Document> getDocuments() {
+        return Collections.unmodifiableCollection(documentsByPath.values());
+    }
+
+    /**
+     * @return documents placed in the folder or in its subfolders
+     */
+    public Collection<Document> getDocuments(Path folder) {
+        Collection<Document> documents = new ArrayList<>();
+        for (Document document : documentsByPath.values()) {
+            if (document.getPath().startsWith(folder)) {
+                documents.add(document);
+            }
+        }
+        return documents;
+    }
+
+    public int size() {
+        return documentsByPath.size();
+    }
+
+    public boolean isEmpty() {
+        return documentsByPath.isEmpty();
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            documentsByPath.clear();
+            documentsById.clear();
+            duplicatesByOwner.clear();
+            ownersByContent.clear();
+            transferredOwners.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addContentDocuments(int ownerId, List<Document> documents) {
+        Document owner = documentsById.get(ownerId);
+        if (owner != null && !owner.isDuplicate()) {
+            documents.add(owner);
+        }
+        TIntSet duplicates = duplicatesByOwner.get(ownerId);
+        if (duplicates != null) {
+            duplicates.forEach(id -> {
+                Document duplicate = documentsById.get(id);
+                if (duplicate != null) {
+                    documents.add(duplicate);
+                }
+                return true;
+            });
+        }
+    }
+
+    /**
+     * @param removedIds The ids of documents which can't become the new owner, it could be null
+     */
+    private Document transferContent(Document owner, TIntSet removedIds) {
+        if (owner.hasContentHash()) {
+            ownersByContent.remove(new ContentKey(owner), owner.getId());
+        }
+        TIntSet duplicates = duplicatesByOwner.remove(owner.getId());
+        if (duplicates == null) {
+            return null;
+        }
+        Document successor = null;
+        TIntSet successorDuplicates = new TIntHashSet();
+        for (TIntIterator iterator = duplicates.iterator(); iterator.hasNext(); ) {
+            Document duplicate = documentsById.get(iterator.next());
+            if (duplicate == null || removedIds != null && removedIds.contains(duplicate.getId())) {
+                continue;
+            }
+            if (successor == null) {
+                successor = duplicate;
+                successor.setContentOwnerId(0);
+            } else {
+                duplicate.setContentOwnerId(successor.getId());
+                successorDuplicates.add(duplicate.getId());
+            }
+        }
+        if (successor == null) {
+            return null;
+        }
+        if (!successorDuplicates.isEmpty()) {
+            duplicatesByOwner.put(successor.getId(), successorDuplicates);
+        }
+        if (successor.hasContentHash()) {
+            ownersByContent.put(new ContentKey(successor), successor.getId());
+        }
+        transferredOwners.put(owner.getId(), successor.getId());
+        return successor;
+    }
+
+    private void linkContent(Document document) {
+        if (document.isDuplicate()) {
+            TIntSet duplicates = duplicatesByOwner.get(document.getContentOwnerId());
+            if (duplicates == null) {
+                duplicates = new TIntHashSet();
+                duplicatesByOwner.put(document.getContentOwnerId(), duplicates);
+            }
+            duplicates.add(document.getId());
+        } else if (document.hasContentHash()) {
+            ownersByContent.putIfAbsent(new ContentKey(document), document.getId());
+        }
+    }
+
+    private void unlinkContent(Document document) {
+        if (document.isDuplicate()) {
+            TIntSet duplicates = duplicatesByOwner.get(document.getContentOwnerId());
+            if (duplicates != null) {
+                duplicates.remove(document.getId());
+                if (duplicates.isEmpty()) {
+                    duplicatesByOwner.remove(document.getContentOwnerId());
+                }
+            }
+        } else if (document.hasContentHash()) {
+            ownersByContent.remove(new ContentKey(document), document.getId());
+        }
+    }
+
+    /**
+     * Links of the duplicates are built again after their owners got new ids
+     */
+    private void relinkContent(TIntIntMap mapping) {
+        duplicatesByOwner.clear();
+        ownersByContent.clear();
+        for (Document document : documentsById.valueCollection()) {
+            if (document.isDuplicate() && mapping.containsKey(document.getContentOwnerId())) {
+                document.setContentOwnerId(mapping.get(document.getContentOwnerId()));
+            }
+        }
+        for (Document document : documentsById.valueCollection()) {
+            linkContent(document);
+        }
+        TIntIntMap transfers = new TIntIntHashMap(transferredOwners);
+        transferredOwners.clear();
+        for (TIntIntIterator iterator = transfers.iterator(); iterator.hasNext(); ) {
+            iterator.advance();
+            int previousOwnerId = mapping.containsKey(iterator.key()) ? mapping.get(iterator.key()) : iterator.key();
+            int successorId = mapping.containsKey(iterator.value()) ? mapping.get(iterator.value()) : iterator.value();
+            transferredOwners.put(previousOwnerId, successorId);
+        }
+    }
+
+    /**
+     * Length and hash of the document content
+     */
+    private static final class ContentKey {
+
+        private final long length;
+        private final long hash;
+
+        private ContentKey(Document document) {
+            this.length = document.getContentLength();
+            this.hash = document.getContentHash();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ContentKey that = (ContentKey) o;
+            return length == that.length && hash == that.hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(length) + Long.hashCode(hash);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.search.engine.model;
 
 public enum EventType {
-    ADD, REMOVE, ADD_LINE, UPDATE
+    ADD, REMOVE, ADD_LINE, UPDATE, REFRESH,
+    // Callback is run by the scheduler after all events put to the queue before it are applied
+    CALLBACK
 }
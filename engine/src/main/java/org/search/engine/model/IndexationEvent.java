@@ -5,11 +5,23 @@ public class IndexationEvent {
     private final EventType type;
     private final int documentId;
     private final String content;
+    private final Runnable callback;
 
     public IndexationEvent(EventType type, int documentId, String content) {
         this.type = type;
         this.documentId = documentId;
         this.content = content;
+        this.callback = null;
+    }
+
+    /**
+     * @param callback The action which should be run when all previous events are applied to the index
+     */
+    public IndexationEvent(Runnable callback) {
+        this.type = EventType.CALLBACK;
+        this.documentId = 0;
+        this.content = null;
+        this.callback = callback;
     }
 
     public EventType getType() {
@@ -23,4 +35,8 @@ public class IndexationEvent {
     public String getContent() {
         return content;
     }
+
+    public Runnable getCallback() {
+        return callback;
+    }
 }
@@ -0,0 +1,37 @@
+package org.search.engine.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the documents handled by the index manager since engine start.
+ * Counters are updated concurrently by the indexation tasks.
+ */
+public class IndexationStatistics {
+
+    private final AtomicLong indexedDocuments = new AtomicLong();
+    private final AtomicLong skippedBinaryDocuments = new AtomicLong();
+
+    public long getIndexedDocuments() {
+        return indexedDocuments.get();
+    }
+
+    public void incrementIndexedDocuments() {
+        indexedDocuments.incrementAndGet();
+    }
+
+    public long getSkippedBinaryDocuments() {
+        return skippedBinaryDocuments.get();
+    }
+
+    public void incrementSkippedBinaryDocuments() {
+        skippedBinaryDocuments.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "IndexationStatistics{" +
+                "indexedDocuments=" + indexedDocuments +
+                ", skippedBinaryDocuments=" + skippedBinaryDocuments +
+                '}';
+    }
+}
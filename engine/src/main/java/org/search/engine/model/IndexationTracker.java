@@ -1,31 +1,88 @@
 package org.search.engine.model;
 
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
 import org.search.engine.index.IndexationEventListener;
 
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.Future;
 
 public class IndexationTracker {
 
-    private boolean canceled;
+    private final CancellationToken cancellationToken = new CancellationToken();
+    // Documents created by the indexation, they are removed together if indexation is canceled
+    private final TIntHashSet documentIds = new TIntHashSet();
+    // Walk of the folder and submitted reading tasks which are not finished yet
+    private int runningTasks;
     private IndexationEventListener listener;
     private Path indexingFolder;
-    private List<Future> indexingFutures;
 
     public IndexationTracker(IndexationEventListener listener, Path indexingFolder) {
         this.listener = listener;
         this.indexingFolder = indexingFolder;
-        indexingFutures = new ArrayList<>();
     }
 
     public boolean isCanceled() {
-        return canceled;
+        return cancellationToken.isCanceled();
     }
 
-    public void setCanceled(boolean canceled) {
-        this.canceled = canceled;
+    public void cancel() {
+        cancellationToken.cancel();
+    }
+
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    public synchronized void addDocument(int documentId) {
+        documentIds.add(documentId);
+    }
+
+    /**
+     * @return copy of ids of the documents created by the indexation
+     */
+    public synchronized TIntSet getDocumentIds() {
+        return new TIntHashSet(documentIds);
+    }
+
+    public synchronized void onTaskStarted() {
+        runningTasks++;
+    }
+
+    /**
+     * @return false if all tasks are already finished, so the job is being completed and can't get new ones
+     */
+    public synchronized boolean onTaskStartedIfRunning() {
+        if (runningTasks <= 0) {
+            return false;
+        }
+        runningTasks++;
+        return true;
+    }
+
+    /**
+     * @return true if it was the last running task, walk is counted as task, so it happens once
+     */
+    public synchronized boolean onTaskFinished() {
+        runningTasks--;
+        if (runningTasks <= 0) {
+            notifyAll();
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized boolean hasRunningTasks() {
+        return runningTasks > 0;
+    }
+
+    /**
+     * Method waits until the walk and all started reading tasks are finished, so they don't
+     * add anything to the index after that
+     */
+    public synchronized void awaitTasks() throws InterruptedException {
+        while (runningTasks > 0) {
+            wait();
+        }
     }
 
     public IndexationEventListener getListener() {
@@ -43,12 +100,4 @@ public class IndexationTracker {
     public void setIndexingFolder(Path indexingFolder) {
         this.indexingFolder = indexingFolder;
     }
-
-    public List<Future> getIndexingFutures() {
-        return indexingFutures;
-    }
-
-    public void setIndexingFutures(List<Future> indexingFutures) {
-        this.indexingFutures = indexingFutures;
-    }
 }
@@ -0,0 +1,31 @@
+package org.search.engine.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saved state of the indexation. Folders which indexation was not finished are indexed again after
+ * restart, values of the saved index which are not used by the saved documents are removed, they
+ * are not bigger than the last document id.
+ */
+public class SerializableCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 3169740221638195187L;
+
+    private int lastDocumentId;
+    private ArrayList<String> unfinishedFolders;
+
+    public SerializableCheckpoint(int lastDocumentId, List<String> unfinishedFolders) {
+        this.lastDocumentId = lastDocumentId;
+        this.unfinishedFolders = new ArrayList<>(unfinishedFolders);
+    }
+
+    public int getLastDocumentId() {
+        return lastDocumentId;
+    }
+
+    public List<String> getUnfinishedFolders() {
+        return unfinishedFolders;
+    }
+}
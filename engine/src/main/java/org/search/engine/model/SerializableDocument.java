@@ -10,12 +10,25 @@ public class SerializableDocument implements Serializable {
     private boolean tracked;
     private String path;
     private long modificationTimestamp;
+    private String charset;
+    private long contentLength;
+    private long contentHash;
+    private int contentOwnerId;
 
-    public SerializableDocument(int id, boolean tracked, String path, long modificationTimestamp) {
+    public SerializableDocument(int id, boolean tracked, String path, long modificationTimestamp, String charset) {
+        this(id, tracked, path, modificationTimestamp, charset, -1, 0, 0);
+    }
+
+    public SerializableDocument(int id, boolean tracked, String path, long modificationTimestamp, String charset,
+                                long contentLength, long contentHash, int contentOwnerId) {
         this.id = id;
         this.tracked = tracked;
         this.path = path;
         this.modificationTimestamp = modificationTimestamp;
+        this.charset = charset;
+        this.contentLength = contentLength;
+        this.contentHash = contentHash;
+        this.contentOwnerId = contentOwnerId;
     }
 
     public int getId() {
@@ -33,4 +46,20 @@ public class SerializableDocument implements Serializable {
     public long getModificationTimestamp() {
         return modificationTimestamp;
     }
+
+    public String getCharset() {
+        return charset;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public int getContentOwnerId() {
+        return contentOwnerId;
+    }
 }
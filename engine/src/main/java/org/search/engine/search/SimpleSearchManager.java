@@ -2,33 +2,34 @@ package org.search.engine.search;
 
 import io.reactivex.subjects.ReplaySubject;
 import org.search.engine.analyzer.Tokenizer;
+import org.search.engine.index.DocumentContentReader;
 import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
 import org.search.engine.model.EventType;
 import org.search.engine.model.SearchResultEvent;
 import org.search.engine.model.SearchType;
 import org.search.engine.tree.SearchEngineTree;
 import org.search.engine.tree.SearchTreeTrackChangesListener;
+import org.search.engine.tree.util.CharSequencesUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Simple search manager which search by single word and return matched results
- * by mapping them in indexed documents list.
+ * by mapping them in indexed documents list. Found id is mapped to all documents
+ * which share its content.
  */
 public class SimpleSearchManager implements SearchManager, SearchTreeTrackChangesListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(SimpleSearchManager.class);
 
     private final SearchEngineTree index;
-    private final Map<Path, Document> indexedDocuments;
+    private final DocumentRegistry indexedDocuments;
     private final Tokenizer tokenizer;
     private List<DocumentMatchedRows> documentMatchedRowsList;
     private ReplaySubject<SearchResultEvent> subject;
@@ -36,7 +37,7 @@ public class SimpleSearchManager implements SearchManager, SearchTreeTrackChange
     private SearchType trackedSearchType;
     private boolean isCanceled = false;
 
-    public SimpleSearchManager(SearchEngineTree index, Map<Path, Document> indexedDocuments, Tokenizer tokenizer) {
+    public SimpleSearchManager(SearchEngineTree index, DocumentRegistry indexedDocuments, Tokenizer tokenizer) {
         this.index = index;
         this.indexedDocuments = indexedDocuments;
         this.tokenizer = tokenizer;
@@ -61,10 +62,11 @@ public class SimpleSearchManager implements SearchManager, SearchTreeTrackChange
             Set<Integer> values = new LinkedHashSet<>();
             searchQueries.forEach(searchQuery -> values.addAll(index.getValue(searchQuery, searchType)));
             if (!values.isEmpty()) {
-                documentMatchedRowsList = indexedDocuments.entrySet().stream()
-                        .filter(entry -> values.contains(entry.getValue().getId()))
-                        .filter(entry -> Files.exists(entry.getValue().getPath()))
-                        .map(entry -> getDocumentMatchedRows(entry.getValue().getId(), entry.getValue().getPath()))
+                documentMatchedRowsList = values.stream()
+                        .flatMap(id -> indexedDocuments.getContentDocuments(id).stream())
+                        .distinct()
+                        .filter(document -> document.getSource().exists())
+                        .map(this::getDocumentMatchedRows)
                         .filter(it -> !it.rowNumbers.isEmpty())
                         .limit(100)
                         .collect(Collectors.toList());
@@ -104,37 +106,36 @@ public class SimpleSearchManager implements SearchManager, SearchTreeTrackChange
 
     @Override
     public void onTrackedLexemeAdd(int documentId) {
-        if (documentMatchedRowsList.size() < 100) {
-            Optional<Document> optional = indexedDocuments.entrySet().stream()
-                    .filter(entry -> entry.getValue().getId() == documentId)
-                    .map(Map.Entry::getValue)
-                    .findFirst();
+        indexedDocuments.getContentDocuments(documentId).forEach(this::onTrackedLexemeAdd);
+    }
 
+    private void onTrackedLexemeAdd(Document document) {
+        if (documentMatchedRowsList.size() < 100) {
             Optional<DocumentMatchedRows> optionalMatchedRows = documentMatchedRowsList.stream()
-                    .filter(it -> it.getDocumentId() == documentId)
+                    .filter(it -> it.getDocumentId() == document.getId())
                     .findFirst();
-            if (optional.isPresent()) {
-                String fileName;
-                if (!optionalMatchedRows.isPresent()) {
-                    Document document = optional.get();
-                    fileName = document.getPath().toAbsolutePath().toString();
-                    DocumentMatchedRows documentMatchedRows = getDocumentMatchedRows(document.getId(), document.getPath());
-                    for (Map.Entry<Integer, List<Integer>> row : documentMatchedRows.getRowNumbers().entrySet()) {
-                        subject.onNext(new SearchResultEvent(fileName, row.getKey(), row.getValue(), EventType.ADD));
-                    }
-                    documentMatchedRowsList.add(documentMatchedRows);
-                } else {
-                    DocumentMatchedRows oldMatchedRows = optionalMatchedRows.get();
-                    fileName = handleLexemeChange(oldMatchedRows);
+            String fileName;
+            if (!optionalMatchedRows.isPresent()) {
+                fileName = document.getPath().toAbsolutePath().toString();
+                DocumentMatchedRows documentMatchedRows = getDocumentMatchedRows(document);
+                for (Map.Entry<Integer, List<Integer>> row : documentMatchedRows.getRowNumbers().entrySet()) {
+                    subject.onNext(new SearchResultEvent(fileName, row.getKey(), row.getValue(), EventType.ADD));
                 }
-                LOG.debug("Handled add tracked lexeme to document: {}", fileName);
+                documentMatchedRowsList.add(documentMatchedRows);
+            } else {
+                DocumentMatchedRows oldMatchedRows = optionalMatchedRows.get();
+                fileName = handleLexemeChange(oldMatchedRows);
             }
+            LOG.debug("Handled add tracked lexeme to document: {}", fileName);
         }
     }
 
 
     @Override
     public void onTrackedLexemeUpdated(int documentId) {
+        if (documentMatchedRowsList == null) {
+            return;
+        }
         Optional<DocumentMatchedRows> optional = documentMatchedRowsList.stream()
                 .filter(it -> it.getDocumentId() == documentId)
                 .findFirst();
@@ -160,7 +161,10 @@ public class SimpleSearchManager implements SearchManager, SearchTreeTrackChange
     private String handleLexemeChange(DocumentMatchedRows oldMatchedRows) {
         String fileName = oldMatchedRows.getFileName().toAbsolutePath().toString();
         Map<Integer, List<Integer>> oldRowNumbers = oldMatchedRows.getRowNumbers();
-        DocumentMatchedRows newMatchedRows = getDocumentMatchedRows(oldMatchedRows.getDocumentId(), oldMatchedRows.getFileName());
+        // Removed document has no matched rows, changed one is read from its current source
+        Document document = indexedDocuments.get(oldMatchedRows.getDocumentId());
+        DocumentMatchedRows newMatchedRows = document != null ? getDocumentMatchedRows(document)
+                : new DocumentMatchedRows(oldMatchedRows.getDocumentId(), oldMatchedRows.getFileName(), new LinkedHashMap<>());
         newMatchedRows.getRowNumbers().forEach((key, value) -> {
             if (!oldRowNumbers.containsKey(key)) {
                 //Add new matched rows to the results
@@ -184,28 +188,19 @@ public class SimpleSearchManager implements SearchManager, SearchTreeTrackChange
         return fileName;
     }
 
-    private DocumentMatchedRows getDocumentMatchedRows(int documentId, Path filePath) {
+    private DocumentMatchedRows getDocumentMatchedRows(Document document) {
+        int documentId = document.getId();
+        Path filePath = document.getPath();
         if (!isCanceled) {
-            int[] rowNumber = {0};
             Map<Integer, List<Integer>> matchedRows = new LinkedHashMap<>();
-            try (Stream<String> lines = Files.lines(filePath)) {
-                lines.forEach(line -> {
-                    rowNumber[0]++;
-                    List<Integer> positionsInRow = new ArrayList<>();
-                    tokenizer.tokenize(line).forEach(token -> {
-                        if (trackedSearchType == SearchType.EXACT_MATCH && token.getContent().equals(trackedLexeme.get(0))) {
-                            positionsInRow.add(token.getPositionInRow());
-                        } else if (trackedSearchType == SearchType.WITH_SUGGESTIONS && trackedLexeme.contains(token.getContent())) {
-                            positionsInRow.add(token.getPositionInRow());
-                        } else if (trackedSearchType == SearchType.START_WITH && token.getContent().startsWith(trackedLexeme.get(0))) {
-                            positionsInRow.add(token.getPositionInRow());
-                        }
-                    });
-                    if (!positionsInRow.isEmpty()) {
-                        matchedRows.put(rowNumber[0], positionsInRow);
+            try {
+                DocumentContentReader.LineTokenConsumer consumer = (token, lineNumber, column) -> {
+                    if (isTrackedLexeme(token)) {
+                        matchedRows.computeIfAbsent(lineNumber, key -> new ArrayList<>()).add(column);
                     }
-                });
-            } catch (IOException | UncheckedIOException ex) {
+                };
+                document.getSource().readTokens(document.getCharset(), tokenizer, Long.MAX_VALUE, null, consumer);
+            } catch (IOException ex) {
                 LOG.warn("Detecting possible matched rows in file : {} finished with exception", filePath);
             }
             return new DocumentMatchedRows(documentId, filePath, matchedRows);
@@ -213,6 +208,21 @@ public class SimpleSearchManager implements SearchManager, SearchTreeTrackChange
         return new DocumentMatchedRows(documentId, filePath, new LinkedHashMap<>());
     }
 
+    private boolean isTrackedLexeme(CharSequence token) {
+        if (trackedSearchType == SearchType.EXACT_MATCH) {
+            return trackedLexeme.get(0).contentEquals(token);
+        } else if (trackedSearchType == SearchType.WITH_SUGGESTIONS) {
+            for (String lexeme : trackedLexeme) {
+                if (lexeme.contentEquals(token)) {
+                    return true;
+                }
+            }
+        } else if (trackedSearchType == SearchType.START_WITH) {
+            return CharSequencesUtil.startsWith(token, trackedLexeme.get(0));
+        }
+        return false;
+    }
+
     private class DocumentMatchedRows {
 
         private int documentId;
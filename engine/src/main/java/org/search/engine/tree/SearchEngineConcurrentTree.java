@@ -1,5 +1,8 @@
 package org.search.engine.tree;
 
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
 import org.search.engine.model.SearchType;
 import org.search.engine.tree.util.CharSequencesUtil;
@@ -156,6 +159,16 @@ public class SearchEngineConcurrentTree implements SearchEngineTree, Serializabl
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void refresh(int value) {
+        if (trackChangesListener != null && !trackChangesListener.getTrackedLexeme().isEmpty()) {
+            trackChangesListener.onTrackedLexemeUpdated(value);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -279,6 +292,74 @@ public class SearchEngineConcurrentTree implements SearchEngineTree, Serializabl
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * Changed branches are rebuilt aside and published by the replacement of the root, so readers
+     * see the tree either before or after the removal.
+     */
+    @Override
+    public void removeByValues(TIntSet values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            root = rebuildWithoutValues(root, values, true);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Value sets are replaced by new ones, so readers never see partially changed set. Sets without
+     * mapped values are kept.
+     */
+    @Override
+    public void remapValues(TIntIntMap mapping) {
+        if (mapping == null || mapping.isEmpty()) {
+            return;
+        }
+        int[] mappedValues = mapping.keys();
+        writeLock.lock();
+        try {
+            Deque<TreeNode> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                TreeNode current = stack.pop();
+                current.getOutgoingNodes().forEach(stack::push);
+                TIntHashSet values = current.getValue();
+                if (values != null && containsAny(values, mapping, mappedValues)) {
+                    TIntHashSet remappedValues = new TIntHashSet(values.size());
+                    for (TIntIterator iterator = values.iterator(); iterator.hasNext(); ) {
+                        int value = iterator.next();
+                        remappedValues.add(mapping.containsKey(value) ? mapping.get(value) : value);
+                    }
+                    current.setValue(remappedValues);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static boolean containsAny(TIntHashSet values, TIntIntMap mapping, int[] mappedValues) {
+        if (mappedValues.length < values.size()) {
+            for (int value : mappedValues) {
+                if (values.contains(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (TIntIterator iterator = values.iterator(); iterator.hasNext(); ) {
+            if (mapping.containsKey(iterator.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -375,6 +456,59 @@ public class SearchEngineConcurrentTree implements SearchEngineTree, Serializabl
         return false;
     }
 
+    /**
+     * Depth-first rebuilding of the branch without given values. Not changed branches are reused,
+     * empty nodes are dropped and the node without value and with one child is merged with it.
+     *
+     * @return the same node if branch was not changed, new node or null if nothing left in the branch
+     */
+    private TreeNode rebuildWithoutValues(TreeNode node, TIntSet values, boolean isRoot) {
+        boolean changed = false;
+        List<TreeNode> childNodes = new ArrayList<>();
+        for (TreeNode childNode : node.getOutgoingNodes()) {
+            TreeNode rebuiltChild = rebuildWithoutValues(childNode, values, false);
+            if (rebuiltChild != childNode) {
+                changed = true;
+            }
+            if (rebuiltChild != null) {
+                childNodes.add(rebuiltChild);
+            }
+        }
+
+        TIntHashSet nodeValue = node.getValue();
+        if (nodeValue != null && containsAny(nodeValue, values)) {
+            changed = true;
+            nodeValue = new TIntHashSet(nodeValue);
+            nodeValue.removeAll(values);
+            if (nodeValue.isEmpty()) {
+                nodeValue = null;
+            }
+        }
+        if (!changed) {
+            return node;
+        }
+
+        TreeNode rebuiltNode;
+        if (!isRoot && nodeValue == null && childNodes.isEmpty()) {
+            return null;
+        } else if (!isRoot && nodeValue == null && childNodes.size() == 1) {
+            TreeNode child = childNodes.get(0);
+            CharSequence concatenatedEdges = CharSequencesUtil.concatenate(node.getCharSequence(), child.getCharSequence());
+            rebuiltNode = createNode(concatenatedEdges, node.getParent(), child.getValue(), child.getOutgoingNodes(), false);
+            childNodes = child.getOutgoingNodes();
+        } else {
+            rebuiltNode = createNode(node.getCharSequence(), node.getParent(), nodeValue, childNodes, isRoot);
+        }
+        childNodes.forEach(it -> it.setParent(rebuiltNode));
+        return rebuiltNode;
+    }
+
+    private static boolean containsAny(TIntHashSet nodeValue, TIntSet values) {
+        TIntSet smaller = nodeValue.size() <= values.size() ? nodeValue : values;
+        TIntSet bigger = smaller == nodeValue ? values : nodeValue;
+        return !smaller.forEach(it -> !bigger.contains(it));
+    }
+
     private void remove(TreeNode node) {
         List<TreeNode> childEdges = node.getOutgoingNodes();
         if (childEdges.size() > 1) {
@@ -1,5 +1,7 @@
 package org.search.engine.tree;
 
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.set.TIntSet;
 import org.search.engine.model.SearchType;
 
 import java.util.Set;
@@ -30,6 +32,14 @@ public interface SearchEngineTree {
 
     void update(CharSequence key, int value);
 
+    /**
+     * Method notifies the tracking listener that content of the indexed entity was changed,
+     * so positions of any tracked lexeme in it could be changed too.
+     *
+     * @param value Identifier of changed entity
+     */
+    void refresh(int value);
+
     /**
      * Get set of lexeme indexed by the certain value. Dictionary of indexed document.
      * It used for comparing old and new document during document modification to avoid redundant
@@ -63,6 +73,23 @@ public interface SearchEngineTree {
      */
     void removeByValue(int value);
 
+    /**
+     * Remove all given values from the tree by one traversal. Nodes which have no values left
+     * are removed and the tree is compacted, so removing of many entities doesn't walk the tree
+     * for each of them.
+     *
+     * @param values Identifiers of indexed entities which should be removed from all nodes
+     */
+    void removeByValues(TIntSet values);
+
+    /**
+     * Replace values of all nodes by the mapping, values which are not in the mapping are kept.
+     * It's used by compaction of identifiers and when shared content passes to the other document.
+     *
+     * @param mapping Old identifiers of indexed entities mapped to the new ones
+     */
+    void remapValues(TIntIntMap mapping);
+
     /**
      * Return the size of all node in the tree which contains values
      *
@@ -24,6 +24,19 @@ public class CharSequencesUtil {
         return main.subSequence(startIndex, mainLength);
     }
 
+    public static boolean startsWith(CharSequence main, CharSequence prefix) {
+        int prefixLength = prefix.length();
+        if (prefixLength > main.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefixLength; i++) {
+            if (main.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static CharSequence concatenate(final CharSequence first, final CharSequence second) {
         return new StringBuilder().append(first).append(second);
     }
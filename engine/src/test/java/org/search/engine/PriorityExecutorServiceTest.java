@@ -0,0 +1,117 @@
+package org.search.engine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PriorityExecutorServiceTest {
+
+    private PriorityExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        executorService = new PriorityExecutorService(1);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testTasksStartedByPriority() throws Exception {
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<String> started = new CopyOnWriteArrayList<>();
+        executorService.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executorService.submit(() -> started.add("large"), TaskPriority.LARGE_FILE);
+        executorService.submit(() -> started.add("bulk1"), TaskPriority.BULK);
+        executorService.submit(() -> started.add("live"), TaskPriority.LIVE);
+        executorService.submit(() -> started.add("bulk2"), TaskPriority.BULK);
+        executorService.execute(() -> started.add("interactive"));
+        blocker.countDown();
+
+        executorService.shutdown();
+        executorService.awaitTermination(5, TimeUnit.SECONDS);
+        assertEquals("[interactive, live, bulk1, bulk2, large]", started.toString());
+    }
+
+    @Test
+    public void testSubmitWaitsForQueueCapacity() throws Exception {
+        executorService.shutdownNow();
+        executorService = new PriorityExecutorService(1, 1, Executors.defaultThreadFactory());
+        CountDownLatch blocker = new CountDownLatch(1);
+        executorService.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executorService.submit(() -> { }, TaskPriority.BULK);
+
+        Thread submitter = new Thread(() -> executorService.submit(() -> { }, TaskPriority.BULK));
+        submitter.start();
+        submitter.join(200);
+        assertTrue(submitter.isAlive());
+        assertEquals(1, executorService.getQueue().size());
+
+        blocker.countDown();
+        submitter.join(5000);
+        assertFalse(submitter.isAlive());
+        executorService.shutdown();
+        executorService.awaitTermination(5, TimeUnit.SECONDS);
+
+        ExecutorMetrics metrics = executorService.getMetrics("test");
+        assertEquals(3, metrics.getCompletedTasks());
+        assertEquals(0, metrics.getQueueDepth());
+        assertTrue(metrics.getAverageWaitMillis() > 0);
+        assertTrue(metrics.getAverageRunMillis() > 0);
+    }
+
+    @Test
+    public void testUnboundedSubmitDoesNotWait() throws Exception {
+        executorService.shutdownNow();
+        executorService = new PriorityExecutorService(1, 1, Executors.defaultThreadFactory());
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch nestedStarted = new CountDownLatch(1);
+        executorService.execute(() -> {
+            try {
+                blocker.await();
+                // Queue is full again, but worker of the pool doesn't wait for the place
+                executorService.submit(nestedStarted::countDown, TaskPriority.BULK);
+                executorService.submit(() -> { }, TaskPriority.BULK);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executorService.submit(() -> { }, TaskPriority.BULK);
+
+        Thread submitter = new Thread(() -> executorService.executeUnbounded(() -> { }, TaskPriority.BULK));
+        submitter.start();
+        submitter.join(5000);
+        assertFalse(submitter.isAlive());
+        assertEquals(2, executorService.getQueue().size());
+
+        blocker.countDown();
+        assertTrue(nestedStarted.await(5, TimeUnit.SECONDS));
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(5, executorService.getMetrics("test").getCompletedTasks());
+    }
+}
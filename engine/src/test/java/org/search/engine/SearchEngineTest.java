@@ -15,8 +15,10 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class SearchEngineTest {
 
@@ -55,9 +57,9 @@ public class SearchEngineTest {
         LOG.debug("Document1: {}, Document2: {}", results.get(0).getFileName(), results.get(1).getFileName());
 
         resource = SearchEngineTest.class.getResource("/TestFileOne.txt");
-        searchEngine.indexFile(resource.toURI().getRawPath());
+        long sequence = searchEngine.indexFile(resource.toURI().getRawPath());
 
-        Thread.sleep(2000);
+        assertTrue(searchEngine.awaitVisible(sequence, 10, TimeUnit.SECONDS));
 
         searchQuery = "relieve";
         replaySubject = searchEngine.search(Collections.singletonList(searchQuery), SearchType.EXACT_MATCH);
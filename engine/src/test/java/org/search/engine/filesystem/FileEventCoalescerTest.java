@@ -0,0 +1,125 @@
+package org.search.engine.filesystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.search.engine.filesystem.FilesystemEvent.CREATED;
+import static org.search.engine.filesystem.FilesystemEvent.DELETED;
+import static org.search.engine.filesystem.FilesystemEvent.MODIFIED;
+
+public class FileEventCoalescerTest {
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private final List<Thread> listenerThreads = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService executor;
+    private ExecutorService dispatcher;
+    private FileEventCoalescer coalescer;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        dispatcher = Executors.newSingleThreadExecutor();
+        coalescer = new FileEventCoalescer(100, executor, dispatcher, this::onEvent);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        dispatcher.shutdownNow();
+    }
+
+    @Test
+    public void testBurstsCollapsed() throws InterruptedException {
+        Path created = Paths.get("created.txt");
+        Path temporary = Paths.get("temporary.txt");
+        Path modified = Paths.get("modified.txt");
+        Path replaced = Paths.get("replaced.txt");
+
+        coalescer.onFileEvent(CREATED, created);
+        coalescer.onFileEvent(MODIFIED, created);
+        coalescer.onFileEvent(CREATED, temporary);
+        coalescer.onFileEvent(MODIFIED, temporary);
+        coalescer.onFileEvent(DELETED, temporary);
+        coalescer.onFileEvent(MODIFIED, modified);
+        coalescer.onFileEvent(MODIFIED, modified);
+        coalescer.onFileEvent(DELETED, replaced);
+        coalescer.onFileEvent(CREATED, replaced);
+        assertTrue(events.isEmpty());
+
+        waitForSize(3);
+        Thread.sleep(200);
+        assertEquals(Arrays.asList("CREATED created.txt", "MODIFIED modified.txt", "CREATED replaced.txt"), events);
+    }
+
+    @Test
+    public void testReplacedFileIsCreated() throws InterruptedException {
+        //Deleted file could be never seen by the index, so the new one must be indexed
+        Path path = Paths.get("file.txt");
+        coalescer.onFileEvent(MODIFIED, path);
+        coalescer.onFileEvent(DELETED, path);
+        coalescer.onFileEvent(CREATED, path);
+        coalescer.onFileEvent(MODIFIED, path);
+
+        waitForSize(1);
+        Thread.sleep(200);
+        assertEquals(Arrays.asList("CREATED file.txt"), events);
+    }
+
+    @Test
+    public void testEventsPassedByDispatcher() throws Exception {
+        Thread schedulerThread = executor.submit(Thread::currentThread).get();
+        coalescer.onFileEvent(MODIFIED, Paths.get("file.txt"));
+
+        waitForSize(1);
+        assertEquals(1, listenerThreads.size());
+        assertFalse(listenerThreads.contains(schedulerThread));
+    }
+
+    @Test
+    public void testEventWaitsForQuietWindow() throws InterruptedException {
+        Path path = Paths.get("file.txt");
+        for (int i = 0; i < 5; i++) {
+            coalescer.onFileEvent(MODIFIED, path);
+            Thread.sleep(50);
+        }
+        assertTrue(events.isEmpty());
+
+        waitForSize(1);
+        coalescer.onFileEvent(DELETED, path);
+        waitForSize(2);
+        assertEquals(Arrays.asList("MODIFIED file.txt", "DELETED file.txt"), events);
+    }
+
+    @Test
+    public void testWithoutQuietWindow() throws InterruptedException {
+        coalescer = new FileEventCoalescer(0, executor, dispatcher, this::onEvent);
+        coalescer.onFileEvent(CREATED, Paths.get("file.txt"));
+        coalescer.onFileEvent(DELETED, Paths.get("file.txt"));
+        waitForSize(2);
+        assertEquals(Arrays.asList("CREATED file.txt", "DELETED file.txt"), events);
+    }
+
+    private void onEvent(FilesystemEvent event, Path path) {
+        listenerThreads.add(Thread.currentThread());
+        events.add(event + " " + path.getFileName());
+    }
+
+    private void waitForSize(int expectedSize) throws InterruptedException {
+        while (events.size() < expectedSize) {
+            Thread.sleep(10);
+        }
+    }
+}
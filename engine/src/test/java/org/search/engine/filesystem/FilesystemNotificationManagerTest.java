@@ -11,24 +11,28 @@ import java.nio.file.Paths;
 import java.nio.file.WatchService;
 import java.util.HashSet;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.search.engine.filesystem.FilesystemEvent.*;
 
-public class FilesystemNotificationManagerTest implements FilesystemEventListener {
+public class FilesystemNotificationManagerTest {
+
+    // Listeners are called by the indexing pool, so events are waited for
+    private static final long EVENT_TIMEOUT_MILLIS = 5000;
 
     private WatchService watchService;
     private FilesystemNotificationManager notificationManager;
-    private Path lastChangedPath;
-    private FilesystemEvent lastChangedEvent;
-    private ChangedEntity lastChangedEntity;
+    private FilesystemEventListener listener;
 
 
     @Before
     public void setUp() throws IOException {
         watchService = FileSystems.getDefault().newWatchService();
         notificationManager = new FilesystemNotificationManager(watchService, new HashSet<>(), new HashSet<>(), progress -> { });
-        notificationManager.addListener(this);
+        listener = mock(FilesystemEventListener.class);
+        notificationManager.addListener(listener);
     }
 
     @After
@@ -41,7 +45,7 @@ public class FilesystemNotificationManagerTest implements FilesystemEventListene
         Path filePath = Paths.get("./TestFileOne.txt");
         notificationManager.registerFile(filePath);
         notificationManager.onFileEvent(MODIFIED, filePath);
-        assertLastHandledEvent(MODIFIED, filePath, ChangedEntity.FILE);
+        verify(listener, timeout(EVENT_TIMEOUT_MILLIS)).onFileChanged(MODIFIED, filePath);
     }
 
     @Test
@@ -54,9 +58,10 @@ public class FilesystemNotificationManagerTest implements FilesystemEventListene
         Path fileTwoPath = Paths.get("./TestFileTwo.txt");
         notificationManager.onFileEvent(CREATED, fileTwoPath);
 
-        assertNull(lastChangedEvent);
-        assertNull(lastChangedPath);
-        assertNull(lastChangedEntity);
+        //File events are passed one by one, so event of the tracked file comes after the skipped one
+        notificationManager.onFileEvent(MODIFIED, fileOnePath);
+        verify(listener, timeout(EVENT_TIMEOUT_MILLIS)).onFileChanged(MODIFIED, fileOnePath);
+        verify(listener, never()).onFileChanged(CREATED, fileTwoPath);
     }
 
     @Test
@@ -67,12 +72,16 @@ public class FilesystemNotificationManagerTest implements FilesystemEventListene
         //Fire event delete file in the tracked dir, folder should be removed from watcher
         notificationManager.onFileEvent(DELETED, filePath);
 
-        assertLastHandledEvent(DELETED, filePath, ChangedEntity.FILE);
+        verify(listener, timeout(EVENT_TIMEOUT_MILLIS)).onFileChanged(DELETED, filePath);
         notificationManager.unregisterFile(filePath);
 
         notificationManager.onFileEvent(MODIFIED, filePath);
-        //We didn't get events any more
-        assertLastHandledEvent(DELETED, filePath, ChangedEntity.FILE);
+        //We didn't get events any more, the next tracked file gets its event after the skipped one
+        Path otherFilePath = Paths.get("./TestFileTwo.txt");
+        notificationManager.registerFile(otherFilePath);
+        notificationManager.onFileEvent(MODIFIED, otherFilePath);
+        verify(listener, timeout(EVENT_TIMEOUT_MILLIS)).onFileChanged(MODIFIED, otherFilePath);
+        verify(listener, never()).onFileChanged(MODIFIED, filePath);
     }
 
     @Test
@@ -82,7 +91,7 @@ public class FilesystemNotificationManagerTest implements FilesystemEventListene
 
         Path folderPath = Paths.get("./");
         notificationManager.onFolderEvent(DELETED, folderPath.toAbsolutePath());
-        assertLastHandledEvent(DELETED, filePath, ChangedEntity.FILE);
+        verify(listener, timeout(EVENT_TIMEOUT_MILLIS)).onFileChanged(DELETED, filePath);
     }
 
     @Test
@@ -90,7 +99,7 @@ public class FilesystemNotificationManagerTest implements FilesystemEventListene
         Path folderPath = Paths.get("./").toAbsolutePath();
         notificationManager.registerFolder(folderPath);
         notificationManager.onFolderEvent(MODIFIED, folderPath);
-        assertLastHandledEvent(MODIFIED, folderPath, ChangedEntity.FOLDER);
+        verify(listener, timeout(EVENT_TIMEOUT_MILLIS)).onFolderChanged(MODIFIED, folderPath);
     }
 
     @Test
@@ -99,7 +108,7 @@ public class FilesystemNotificationManagerTest implements FilesystemEventListene
         notificationManager.registerFolder(folderPath);
         Path filePath = Paths.get("./TestFileOne.txt").toAbsolutePath();
         notificationManager.onFileEvent(CREATED, filePath);
-        assertLastHandledEvent(CREATED, filePath, ChangedEntity.FILE);
+        verify(listener, timeout(EVENT_TIMEOUT_MILLIS)).onFileChanged(CREATED, filePath);
     }
 
     @Test
@@ -107,30 +116,6 @@ public class FilesystemNotificationManagerTest implements FilesystemEventListene
         Path folderPath = Paths.get("./").toAbsolutePath();
         notificationManager.registerFolder(folderPath);
         notificationManager.onFolderEvent(DELETED, folderPath);
-        assertLastHandledEvent(DELETED, folderPath, ChangedEntity.FOLDER);
-    }
-
-    @Override
-    public void onFileChanged(FilesystemEvent event, Path filePath) {
-        lastChangedEvent = event;
-        lastChangedPath = filePath;
-        lastChangedEntity = ChangedEntity.FILE;
-    }
-
-    @Override
-    public void onFolderChanged(FilesystemEvent event, Path folderPath) {
-        lastChangedEvent = event;
-        lastChangedPath = folderPath;
-        lastChangedEntity = ChangedEntity.FOLDER;
-    }
-
-    private void assertLastHandledEvent(FilesystemEvent event, Path path, ChangedEntity changedEntity) {
-        assertEquals(event, lastChangedEvent);
-        assertEquals(path, lastChangedPath);
-        assertEquals(changedEntity, lastChangedEntity);
-    }
-
-    private enum ChangedEntity {
-        FILE, FOLDER
+        verify(listener, timeout(EVENT_TIMEOUT_MILLIS)).onFolderChanged(DELETED, folderPath);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package org.search.engine.filesystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PathFilterTest {
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Paths.get("./TestPathFilter").normalize();
+        Files.createDirectories(root.resolve("src").resolve("generated"));
+        Files.createDirectories(root.resolve("build"));
+        Files.write(root.resolve(".gitignore"), "# comment\n*.log\n/build/\ngenerated/\n!keep.log\n".getBytes());
+        Files.write(root.resolve("src").resolve(".ignore"), "local.txt\n".getBytes());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(it -> it.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testIncludeAndExcludeGlobs() {
+        PathRules rules = PathRules.builder().include("*.java", "docs/**").exclude("node_modules", "src/test/**").build();
+        PathFilter filter = new PathFilter(PathRules.DEFAULT, Collections.singletonMap(root, rules));
+
+        assertTrue(filter.accept(root.resolve("Main.java"), false));
+        assertTrue(filter.accept(root.resolve("docs").resolve("readme.md"), false));
+        assertFalse(filter.accept(root.resolve("readme.md"), false));
+        assertTrue(filter.accept(root.resolve("docs"), true));
+        assertFalse(filter.accept(root.resolve("web").resolve("node_modules"), true));
+        assertFalse(filter.isIndexed(root.resolve("web").resolve("node_modules").resolve("lib").resolve("A.java"), false));
+        assertFalse(filter.accept(root.resolve("src").resolve("test").resolve("A.java"), false));
+        //Paths outside of the root use default rules
+        assertTrue(filter.accept(Paths.get("other").resolve("readme.md"), false));
+    }
+
+    @Test
+    public void testIgnoreFiles() {
+        PathFilter filter = new PathFilter(PathRules.DEFAULT,
+                Collections.singletonMap(root, PathRules.builder().useIgnoreFiles(true).build()));
+
+        assertFalse(filter.accept(root.resolve("debug.log"), false));
+        assertFalse(filter.accept(root.resolve("src").resolve("debug.log"), false));
+        assertTrue(filter.accept(root.resolve("src").resolve("keep.log"), false));
+        assertFalse(filter.accept(root.resolve("build"), true));
+        assertTrue(filter.accept(root.resolve("src").resolve("build"), true));
+        assertTrue(filter.accept(root.resolve("build.txt"), false));
+        assertFalse(filter.accept(root.resolve("src").resolve("generated"), true));
+        assertTrue(filter.accept(root.resolve("src").resolve("generated.txt"), false));
+        assertFalse(filter.accept(root.resolve("src").resolve("local.txt"), false));
+        assertTrue(filter.accept(root.resolve("local.txt"), false));
+        assertFalse(filter.isIndexed(root.resolve("build").resolve("Main.java"), false));
+    }
+}
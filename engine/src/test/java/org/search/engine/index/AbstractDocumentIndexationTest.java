@@ -1,10 +1,9 @@
 package org.search.engine.index;
 
-import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
 import org.search.engine.tree.SearchEngineTree;
 
 import java.nio.file.Path;
-import java.util.Map;
 
 abstract class AbstractDocumentIndexationTest {
 
@@ -13,6 +12,6 @@ abstract class AbstractDocumentIndexationTest {
     final String folderTitle = "/testFolder";
     final String searchQuery = "surfeits";
     Path filePath;
-    Map<Path, Document> indexedDocuments;
+    DocumentRegistry indexedDocuments;
     SearchEngineTree index;
 }
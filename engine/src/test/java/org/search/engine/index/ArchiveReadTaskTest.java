@@ -0,0 +1,167 @@
+package org.search.engine.index;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.search.engine.SearchEngineConfiguration;
+import org.search.engine.analyzer.StandardTokenizer;
+import org.search.engine.filesystem.PathFilter;
+import org.search.engine.filesystem.PathRules;
+import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
+import org.search.engine.model.IndexationEvent;
+import org.search.engine.model.IndexationStatistics;
+import org.search.engine.model.SearchType;
+import org.search.engine.tree.SearchEngineConcurrentTree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveReadTaskTest extends AbstractDocumentIndexationTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private BlockingQueue<IndexationEvent> documentLinesQueue;
+    private IndexationSchedulerTask scheduler;
+    private IndexationStatistics statistics;
+    private Map<String, byte[]> entries;
+
+    @Before
+    public void setUp() {
+        indexedDocuments = new DocumentRegistry();
+        index = new SearchEngineConcurrentTree();
+        documentLinesQueue = new LinkedBlockingQueue<>();
+        scheduler = new IndexationSchedulerTask(documentLinesQueue, index, new StandardTokenizer(), new ArrayList<>());
+        statistics = new IndexationStatistics();
+        entries = new LinkedHashMap<>();
+        entries.put("src/Archived.java", "class Archived {\n    String surfeits;\n}\n".getBytes(StandardCharsets.UTF_8));
+        entries.put("lib/native.so", new byte[]{0x7F, 'E', 'L', 'F', 0, 0, 1, 2});
+    }
+
+    @Test
+    public void testZipEntriesIndexed() throws IOException {
+        Path archivePath = temporaryFolder.getRoot().toPath().resolve("sources.jar");
+        try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(archivePath))) {
+            output.putNextEntry(new ZipEntry("src/"));
+            output.closeEntry();
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                output.putNextEntry(new ZipEntry(entry.getKey()));
+                output.write(entry.getValue());
+                output.closeEntry();
+            }
+        }
+
+        assertArchiveIndexed(archivePath);
+    }
+
+    @Test
+    public void testTarGzEntriesIndexed() throws IOException {
+        Path archivePath = temporaryFolder.getRoot().toPath().resolve("sources.tar.gz");
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(archivePath))) {
+            writeTarEntry(output, "src/", new byte[0], '5');
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                writeTarEntry(output, entry.getKey(), entry.getValue(), '0');
+            }
+            output.write(new byte[1024]);
+        }
+
+        assertArchiveIndexed(archivePath);
+    }
+
+    @Test
+    public void testEntryPath() {
+        Path archivePath = temporaryFolder.getRoot().toPath().resolve("sources.jar");
+        Path entryPath = ArchiveReader.getEntryPath(archivePath, "src/Archived.java");
+
+        assertTrue(ArchiveReader.isArchive(archivePath));
+        assertEquals(archivePath, ArchiveReader.getArchivePath(entryPath));
+        assertEquals(archivePath, ArchiveReader.getFilePath(entryPath));
+        assertEquals(archivePath, ArchiveReader.getFilePath(archivePath));
+        assertNull(ArchiveReader.getArchivePath(archivePath));
+        assertTrue(entryPath.startsWith(archivePath.getParent()));
+    }
+
+    private void assertArchiveIndexed(Path archivePath) throws IOException {
+        ArchiveReadTask task = new ArchiveReadTask(archivePath, indexedDocuments, documentLinesQueue, new StandardTokenizer(),
+                SearchEngineConfiguration.DEFAULT, new PathFilter(PathRules.DEFAULT, Collections.emptyMap()),
+                new DocumentIdAllocator(new AtomicInteger()), statistics, null, null);
+        task.run();
+        scheduler.run();
+
+        Path entryPath = ArchiveReader.getEntryPath(archivePath, "src/Archived.java");
+        Document document = indexedDocuments.get(entryPath);
+        assertNotNull(document);
+        assertEquals(1, indexedDocuments.size());
+        assertEquals(Files.getLastModifiedTime(archivePath).toMillis(), document.getModificationTimestamp());
+        assertEquals(1, statistics.getSkippedBinaryDocuments());
+        assertFalse(indexedDocuments.contains(ArchiveReader.getEntryPath(archivePath, "lib/native.so")));
+
+        Set<Integer> searchResult = index.getValue(searchQuery, SearchType.EXACT_MATCH);
+        assertEquals(1, searchResult.size());
+        assertTrue(searchResult.contains(document.getId()));
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream input = ArchiveReader.openEntry(entryPath)) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                content.write(buffer, 0, read);
+            }
+        }
+        assertEquals(new String(entries.get("src/Archived.java"), StandardCharsets.UTF_8), content.toString("UTF-8"));
+    }
+
+    private static void writeTarEntry(OutputStream output, String name, byte[] content, char type) throws IOException {
+        byte[] header = new byte[512];
+        putString(header, 0, name);
+        putString(header, 100, "0000644");
+        putString(header, 108, "0000000");
+        putString(header, 116, "0000000");
+        putString(header, 124, String.format("%011o", content.length));
+        putString(header, 136, String.format("%011o", 0));
+        header[156] = (byte) type;
+        putString(header, 257, "ustar");
+        putString(header, 263, "00");
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        int checksum = 0;
+        for (byte value : header) {
+            checksum += value & 0xFF;
+        }
+        putString(header, 148, String.format("%06o", checksum));
+        output.write(header);
+        output.write(content);
+        int padding = (512 - content.length % 512) % 512;
+        output.write(new byte[padding]);
+    }
+
+    private static void putString(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+}
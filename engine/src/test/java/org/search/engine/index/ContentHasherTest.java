@@ -0,0 +1,80 @@
+package org.search.engine.index;
+
+import org.junit.After;
+import org.junit.Test;
+import org.search.engine.analyzer.StandardTokenizer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContentHasherTest {
+
+    private final Path filePath = Paths.get("./TestFileHash.txt");
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(filePath);
+    }
+
+    @Test
+    public void testKnownHashes() {
+        assertEquals(0xEF46DB3751D8E999L, hash(new byte[0]));
+        assertEquals(0xD24EC4F1A98C6E5BL, hash("a".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(0x44BC2CF5AD770999L, hash("abc".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(0x9E3300C1CDE3C58DL, hash(getContent()));
+    }
+
+    @Test
+    public void testStreamingUpdates() {
+        byte[] content = getContent();
+        ContentHasher hasher = new ContentHasher();
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        int position = 0;
+        for (int chunk = 1; position < content.length; chunk += 7) {
+            int end = Math.min(content.length, position + chunk);
+            hasher.update(buffer, position, end);
+            position = end;
+        }
+        assertEquals(content.length, hasher.getLength());
+        assertEquals(hash(content), hasher.getValue());
+    }
+
+    @Test
+    public void testHashContentEqualsHashWhileReading() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 30_000; i++) {
+            content.append("line").append(i).append(" тест\n");
+        }
+        Files.write(filePath, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        ContentHasher readHasher = new ContentHasher();
+        DocumentContentReader.readTokens(filePath, StandardCharsets.UTF_8, new StandardTokenizer(),
+                Long.MAX_VALUE, readHasher, (token, lineNumber, column) -> { });
+        ContentHasher hasher = new ContentHasher();
+        DocumentContentReader.hashContent(filePath, Long.MAX_VALUE, hasher);
+
+        assertEquals(Files.size(filePath), readHasher.getLength());
+        assertEquals(hash(Files.readAllBytes(filePath)), readHasher.getValue());
+        assertEquals(readHasher.getValue(), hasher.getValue());
+    }
+
+    private static byte[] getContent() {
+        byte[] content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ((i * 31 + 7) % 251);
+        }
+        return content;
+    }
+
+    private static long hash(byte[] bytes) {
+        ContentHasher hasher = new ContentHasher();
+        hasher.update(bytes);
+        return hasher.getValue();
+    }
+}
@@ -0,0 +1,124 @@
+package org.search.engine.index;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.search.engine.ExecutorConfiguration;
+import org.search.engine.SearchEngineConfiguration;
+import org.search.engine.SearchEngineExecutors;
+import org.search.engine.analyzer.StandardTokenizer;
+import org.search.engine.filesystem.FilesystemNotifier;
+import org.search.engine.filesystem.PathFilter;
+import org.search.engine.filesystem.PathRules;
+import org.search.engine.model.DocumentRegistry;
+import org.search.engine.model.SearchType;
+import org.search.engine.tree.SearchEngineConcurrentTree;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentCompactionTest extends AbstractDocumentIndexationTest {
+
+    private final Path second = Paths.get("/memory/b/second.txt");
+    private final Path first = Paths.get("/memory/a/first.txt");
+    private SearchEngineExecutors executors;
+    private DocumentIndexManager indexManager;
+
+    @Before
+    public void setUp() throws Exception {
+        executors = new SearchEngineExecutors(ExecutorConfiguration.builder().indexingThreads(2).daemon(true).build());
+        indexedDocuments = new DocumentRegistry();
+        index = new SearchEngineConcurrentTree();
+        indexManager = new DocumentIndexManager(index, indexedDocuments, Mockito.mock(FilesystemNotifier.class), new StandardTokenizer(),
+                new AtomicInteger(), null, SearchEngineConfiguration.DEFAULT, new PathFilter(PathRules.DEFAULT, Collections.emptyMap()),
+                executors);
+        // Ids are given in other order than paths, so compaction renumbers both documents
+        indexManager.awaitVisible(indexManager.indexDocument(new MemoryDocumentSource(second, "second original", 1)))
+                .get(10, TimeUnit.SECONDS);
+        indexManager.awaitVisible(indexManager.indexDocument(new MemoryDocumentSource(first, "first", 1)))
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        executors.shutdown();
+    }
+
+    @Test
+    public void testCompactionWaitsForUpdate() throws Exception {
+        BlockingSource source = new BlockingSource(second, "second updated");
+        long update = indexManager.indexDocument(source);
+        assertTrue(source.entered.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<Boolean> compaction = indexManager.compact();
+        Thread.sleep(300);
+        assertFalse(compaction.isDone());
+        assertEquals(1, indexedDocuments.get(second).getId());
+
+        source.released.countDown();
+        assertTrue(compaction.get(10, TimeUnit.SECONDS));
+        indexManager.awaitVisible(update).get(10, TimeUnit.SECONDS);
+
+        int secondId = indexedDocuments.get(second).getId();
+        int firstId = indexedDocuments.get(first).getId();
+        // Document keeps its id if events of the update are still queued, index follows the registry anyway
+        assertEquals(3, secondId + firstId);
+        assertEquals(Collections.singleton(secondId), index.getValue("updated", SearchType.EXACT_MATCH));
+        assertEquals(Collections.singleton(firstId), index.getValue("first", SearchType.EXACT_MATCH));
+        assertTrue(index.getValue("original", SearchType.EXACT_MATCH).isEmpty());
+        assertEquals(Collections.singleton(secondId), index.getValue("second", SearchType.EXACT_MATCH));
+    }
+
+    private static class BlockingSource implements DocumentSource {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final Path path;
+        private final byte[] content;
+
+        private BlockingSource(Path path, String content) {
+            this.path = path;
+            this.content = content.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Path getPath() {
+            return path;
+        }
+
+        @Override
+        public long getVersion() {
+            return 2;
+        }
+
+        @Override
+        public long getSize() {
+            return content.length;
+        }
+
+        @Override
+        public InputStream openContent() throws IOException {
+            entered.countDown();
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            return new ByteArrayInputStream(content);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.search.engine.index;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.search.engine.analyzer.StandardTokenizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class DocumentContentReaderTest {
+
+    private Path filePath;
+
+    @Before
+    public void setUp() {
+        filePath = Paths.get("./TestFileReader.txt");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(filePath);
+    }
+
+    @Test
+    public void testReadTokensWithLineAndColumn() throws IOException {
+        Files.write(filePath, "first line\r\nсемь дней\n\nlast, word".getBytes(StandardCharsets.UTF_8));
+        List<String> tokens = readTokens();
+        assertEquals("[first:1:0, line:1:6, семь:2:0, дней:2:5, last:4:0, word:4:6]", tokens.toString());
+    }
+
+    @Test
+    public void testReadMappedFile() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 50_000; i++) {
+            content.append("line").append(i).append(" тест\n");
+        }
+        Files.write(filePath, content.toString().getBytes(StandardCharsets.UTF_8));
+        List<String> tokens = readTokens();
+        assertEquals(100_000, tokens.size());
+        assertEquals("line49999:50000:0", tokens.get(99_998));
+        assertEquals("тест:50000:10", tokens.get(99_999));
+    }
+
+    @Test
+    public void testReadWithCharset() throws IOException {
+        Files.write(filePath, "caf\u00e9 first\nsecond".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals("[caf\u00e9:1:0, first:1:5, second:2:0]", readTokens(StandardCharsets.ISO_8859_1).toString());
+
+        Files.write(filePath, "caf\u00e9 first\r\nsecond".getBytes(StandardCharsets.UTF_16));
+        assertEquals("[caf\u00e9:1:0, first:1:5, second:2:0]", readTokens(StandardCharsets.UTF_16).toString());
+
+        Files.write(filePath, "\uFEFFfirst line".getBytes(StandardCharsets.UTF_8));
+        assertEquals("[first:1:0, line:1:6]", readTokens().toString());
+    }
+
+    @Test
+    public void testReadMalformedContent() throws IOException {
+        Files.write(filePath, new byte[]{'o', 'n', 'e', ' ', (byte) 0xFF, '\n', 't', 'w', 'o'});
+        assertEquals("[one:1:0, \uFFFD:1:4, two:2:0]", readTokens().toString());
+    }
+
+    @Test
+    public void testReadVeryLongLine() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            content.append("word").append(i).append(' ');
+        }
+        content.append("\nlast");
+        for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.UTF_16}) {
+            Files.write(filePath, content.toString().getBytes(charset));
+            List<String> tokens = readTokens(charset);
+            assertEquals(100_001, tokens.size());
+            assertEquals("word0:1:0", tokens.get(0));
+            assertEquals("word99999:1:" + content.lastIndexOf("word99999"), tokens.get(99_999));
+            assertEquals("last:2:0", tokens.get(100_000));
+        }
+    }
+
+    @Test
+    public void testReadWithLimits() throws IOException {
+        Files.write(filePath, "first second\nthird".getBytes(StandardCharsets.UTF_16));
+        List<String> tokens = new ArrayList<>();
+        DocumentContentReader.readTokens(filePath, StandardCharsets.UTF_16, new StandardTokenizer(), 2 + 2 * 8,
+                (token, lineNumber, column) -> tokens.add(token.toString()));
+        assertEquals("[first, se]", tokens.toString());
+
+        Files.write(filePath, "first second\nthird".getBytes(StandardCharsets.UTF_8));
+        tokens.clear();
+        DocumentContentReader.readTokens(filePath, StandardCharsets.UTF_8, new StandardTokenizer(), Long.MAX_VALUE,
+                new DocumentContentReader.LineTokenConsumer() {
+                    @Override
+                    public void accept(CharSequence token, int lineNumber, int column) {
+                        tokens.add(token.toString());
+                    }
+
+                    @Override
+                    public boolean isStopped() {
+                        return tokens.size() == 2;
+                    }
+                });
+        assertEquals("[first, second]", tokens.toString());
+    }
+
+    @Test
+    public void testReadCompressedContent() throws IOException {
+        byte[] first = "first line\r\nсемь дней\n".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "\nlast, word".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        // Rotated logs are often concatenated from several gzip members
+        for (byte[] member : new byte[][]{first, second}) {
+            try (OutputStream output = new GZIPOutputStream(content)) {
+                output.write(member);
+            }
+        }
+        Files.write(filePath, content.toByteArray());
+        String expected = "[first:1:0, line:1:6, семь:2:0, дней:2:5, last:4:0, word:4:6]";
+        assertEquals(expected, readTokens().toString());
+
+        ContentHasher compressedHasher = new ContentHasher();
+        DocumentContentReader.hashContent(filePath, Long.MAX_VALUE, compressedHasher);
+        ContentHasher readHasher = new ContentHasher();
+        DocumentContentReader.readTokens(filePath, StandardCharsets.UTF_8, new StandardTokenizer(), Long.MAX_VALUE, readHasher,
+                (token, lineNumber, column) -> {
+                });
+        assertEquals(first.length + second.length, compressedHasher.getLength());
+        assertEquals(compressedHasher.getLength(), readHasher.getLength());
+        assertEquals(compressedHasher.getValue(), readHasher.getValue());
+
+        content.reset();
+        try (OutputStream output = new DeflaterOutputStream(content)) {
+            output.write(first);
+            output.write(second);
+        }
+        Files.write(filePath, content.toByteArray());
+        assertEquals(expected, readTokens().toString());
+    }
+
+    @Test
+    public void testPlainTextLikeZlibHeader() throws IOException {
+        Files.write(filePath, "x^2 + y^2".getBytes(StandardCharsets.UTF_8));
+        assertEquals("[x:1:0, 2:1:2, y:1:6, 2:1:8]", readTokens().toString());
+    }
+
+    private List<String> readTokens() throws IOException {
+        return readTokens(StandardCharsets.UTF_8);
+    }
+
+    private List<String> readTokens(Charset charset) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        DocumentContentReader.readTokens(filePath, charset, new StandardTokenizer(),
+                (token, lineNumber, column) -> tokens.add(token + ":" + lineNumber + ":" + column));
+        return tokens;
+    }
+}
@@ -0,0 +1,80 @@
+package org.search.engine.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.search.engine.SearchEngineConfiguration;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class DocumentContentSnifferTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<Charset> fallbackCharsets = SearchEngineConfiguration.DEFAULT_FALLBACK_CHARSETS;
+
+    @Test
+    public void testTextContent() {
+        assertEquals(StandardCharsets.UTF_8, detect("Simple text\r\n\twith tabs".getBytes(StandardCharsets.UTF_8), false));
+        assertEquals(StandardCharsets.UTF_8, detect("Текст в UTF-8 €".getBytes(StandardCharsets.UTF_8), false));
+        assertEquals(StandardCharsets.UTF_8, detect(new byte[0], false));
+    }
+
+    @Test
+    public void testBinaryContent() {
+        assertNull(detect(new byte[]{'P', 'K', 3, 4, 0, 0}, false));
+        assertNull(detect(new byte[]{1, 2, 3, 'a', 'b', 5, 6, 7}, false));
+        assertNull(DocumentContentSniffer.detectCharset(ByteBuffer.wrap(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE}),
+                false, Collections.emptyList()));
+    }
+
+    @Test
+    public void testSequenceCutBySniffedPart() {
+        byte[] content = "Текст".getBytes(StandardCharsets.UTF_8);
+        byte[] cut = new byte[content.length - 1];
+        System.arraycopy(content, 0, cut, 0, cut.length);
+        assertEquals(StandardCharsets.UTF_8, detect(cut, true));
+        assertNotEquals(StandardCharsets.UTF_8, detect(cut, false));
+    }
+
+    @Test
+    public void testCharsetDetection() {
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'a'};
+        assertEquals(StandardCharsets.UTF_8, detect(bom, false));
+        assertEquals(StandardCharsets.UTF_16, detect("text".getBytes(StandardCharsets.UTF_16), false));
+        assertEquals(fallbackCharsets.get(0), detect("café naïve".getBytes(StandardCharsets.ISO_8859_1), false));
+    }
+
+    @Test
+    public void testCompressedContent() throws IOException {
+        Path textPath = temporaryFolder.newFile("server.log.gz").toPath();
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(textPath))) {
+            output.write("2024-01-01 INFO Server started\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(StandardCharsets.UTF_8, DocumentContentSniffer.detectCharset(textPath, fallbackCharsets));
+
+        Path binaryPath = temporaryFolder.newFile("library.so.gz").toPath();
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(binaryPath))) {
+            output.write(new byte[]{0x7F, 'E', 'L', 'F', 0, 0, 1, 2});
+        }
+        assertNull(DocumentContentSniffer.detectCharset(binaryPath, fallbackCharsets));
+    }
+
+    private Charset detect(byte[] content, boolean isTruncated) {
+        return DocumentContentSniffer.detectCharset(ByteBuffer.wrap(content), isTruncated, fallbackCharsets);
+    }
+}
@@ -0,0 +1,209 @@
+package org.search.engine.index;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.search.engine.SearchEngineConfiguration;
+import org.search.engine.analyzer.StandardTokenizer;
+import org.search.engine.filesystem.FilesystemNotifier;
+import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
+import org.search.engine.model.IndexationEvent;
+import org.search.engine.model.SearchType;
+import org.search.engine.tree.SearchEngineConcurrentTree;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class DocumentDeduplicationTest extends AbstractDocumentIndexationTest {
+
+    private static final String CONTENT = "class Vendored {\n    String surfeits;\n}\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private BlockingQueue<IndexationEvent> documentLinesQueue;
+    private IndexationSchedulerTask scheduler;
+    private FilesystemNotifier notificationManager;
+    private Document original;
+    private Document copy;
+
+    @Before
+    public void setUp() throws IOException {
+        indexedDocuments = new DocumentRegistry();
+        index = new SearchEngineConcurrentTree();
+        documentLinesQueue = new LinkedBlockingQueue<>();
+        notificationManager = mock(FilesystemNotifier.class);
+        scheduler = new IndexationSchedulerTask(documentLinesQueue, index, new StandardTokenizer(), new ArrayList<>());
+        original = readDocument(1, "original.java", CONTENT);
+        copy = readDocument(2, "copy.java", CONTENT);
+        scheduler.run();
+    }
+
+    @Test
+    public void testIdenticalContentIndexedOnce() throws IOException {
+        assertTrue(copy.isDuplicate());
+        assertEquals(Collections.singleton(1), index.getValue(searchQuery, SearchType.EXACT_MATCH));
+        assertTrue(index.getKeys(2).isEmpty());
+        assertEquals(2, indexedDocuments.getContentDocuments(1).size());
+
+        Document different = readDocument(3, "different.java", CONTENT + "// changed\n");
+        scheduler.run();
+        assertFalse(different.isDuplicate());
+        assertEquals(2, index.getValue(searchQuery, SearchType.EXACT_MATCH).size());
+    }
+
+    @Test
+    public void testRemovedOwnerPassesTokensToDuplicate() {
+        new DocumentRemoveTask(original, index, indexedDocuments, documentLinesQueue, notificationManager).run();
+        scheduler.run();
+
+        assertFalse(copy.isDuplicate());
+        assertEquals(Collections.singleton(2), index.getValue(searchQuery, SearchType.EXACT_MATCH));
+        assertEquals(Collections.singletonList(copy), indexedDocuments.getContentDocuments(2));
+
+        new DocumentRemoveTask(copy, index, indexedDocuments, documentLinesQueue, notificationManager).run();
+        scheduler.run();
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testModifiedDuplicateGetsOwnTokens() throws IOException {
+        Files.write(copy.getPath(), (CONTENT + "int added;\n").getBytes(StandardCharsets.UTF_8));
+        new DocumentUpdateTask(copy, index, indexedDocuments, new StandardTokenizer(), SearchEngineConfiguration.DEFAULT,
+                documentLinesQueue).run();
+        scheduler.run();
+
+        assertFalse(copy.isDuplicate());
+        assertEquals(2, index.getValue(searchQuery, SearchType.EXACT_MATCH).size());
+        assertEquals(Collections.singleton(2), index.getValue("added", SearchType.EXACT_MATCH));
+        assertEquals(Collections.singletonList(original), indexedDocuments.getContentDocuments(1));
+    }
+
+    @Test
+    public void testModifiedOwnerKeepsContentOfDuplicate() throws IOException {
+        Files.write(original.getPath(), "class rewritten {\n}\n".getBytes(StandardCharsets.UTF_8));
+        new DocumentUpdateTask(original, index, indexedDocuments, new StandardTokenizer(), SearchEngineConfiguration.DEFAULT,
+                documentLinesQueue).run();
+        scheduler.run();
+
+        assertEquals(Collections.singleton(2), index.getValue(searchQuery, SearchType.EXACT_MATCH));
+        assertEquals(Collections.singleton(1), index.getValue("rewritten", SearchType.EXACT_MATCH));
+    }
+
+    @Test
+    public void testModifiedOwnerSharesNewContent() throws IOException {
+        String rewritten = "class rewritten {\n}\n";
+        Files.write(original.getPath(), rewritten.getBytes(StandardCharsets.UTF_8));
+        new DocumentUpdateTask(original, index, indexedDocuments, new StandardTokenizer(), SearchEngineConfiguration.DEFAULT,
+                documentLinesQueue).run();
+        scheduler.run();
+
+        Document rewrittenCopy = readDocument(3, "rewritten.java", rewritten);
+        Document lateCopy = readDocument(4, "late.java", CONTENT);
+        scheduler.run();
+
+        assertEquals(1, rewrittenCopy.getContentOwnerId());
+        assertEquals(2, lateCopy.getContentOwnerId());
+        assertEquals(Collections.singleton(1), index.getValue("rewritten", SearchType.EXACT_MATCH));
+        assertEquals(Collections.singleton(2), index.getValue(searchQuery, SearchType.EXACT_MATCH));
+    }
+
+    @Test
+    public void testFailedReadNotDeduplicated() {
+        Path path = temporaryFolder.getRoot().toPath().resolve("failed.java");
+        Document failed = new Document(3, false, path, 1);
+        failed.setSource(new FailingSource(path, CONTENT));
+        new DocumentReadTask(failed, indexedDocuments, documentLinesQueue, new StandardTokenizer(), SearchEngineConfiguration.DEFAULT,
+                notificationManager).run();
+        scheduler.run();
+
+        assertFalse(failed.hasContentHash());
+        assertFalse(failed.isDuplicate());
+        assertFalse(indexedDocuments.contains(path));
+        assertEquals(2, indexedDocuments.getContentDocuments(1).size());
+        assertTrue(index.getKeys(3).isEmpty());
+    }
+
+    @Test
+    public void testOwnerWithFailedUpdateNotShared() throws IOException {
+        original.setSource(new FailingSource(original.getPath(), CONTENT));
+        new DocumentUpdateTask(original, index, indexedDocuments, new StandardTokenizer(), SearchEngineConfiguration.DEFAULT,
+                documentLinesQueue).run();
+        scheduler.run();
+
+        assertFalse(original.hasContentHash());
+        assertFalse(copy.isDuplicate());
+        Document lateCopy = readDocument(3, "late.java", CONTENT);
+        scheduler.run();
+        assertEquals(2, lateCopy.getContentOwnerId());
+
+        //File is readable again, its content is the same but tokens must be indexed
+        original.setSource(null);
+        new DocumentUpdateTask(original, index, indexedDocuments, new StandardTokenizer(), SearchEngineConfiguration.DEFAULT,
+                documentLinesQueue).run();
+        scheduler.run();
+
+        assertTrue(original.hasContentHash());
+        assertFalse(original.isDuplicate());
+        assertTrue(index.getValue(searchQuery, SearchType.EXACT_MATCH).contains(1));
+    }
+
+    private Document readDocument(int id, String fileName, String content) throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve(fileName);
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        Document document = new Document(id, false, path, 1);
+        new DocumentReadTask(document, indexedDocuments, documentLinesQueue, new StandardTokenizer(), SearchEngineConfiguration.DEFAULT,
+                notificationManager).run();
+        return document;
+    }
+
+    /**
+     * Source which content can't be read to the end, content before the failure is read normally
+     */
+    private static class FailingSource implements DocumentSource {
+
+        private final Path path;
+        private final byte[] content;
+
+        private FailingSource(Path path, String content) {
+            this.path = path;
+            this.content = content.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Path getPath() {
+            return path;
+        }
+
+        @Override
+        public long getVersion() {
+            return 2;
+        }
+
+        @Override
+        public InputStream openContent() {
+            return new SequenceInputStream(new ByteArrayInputStream(content), new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw new IOException("Device is not ready");
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.search.engine.index;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentIdAllocatorTest {
+
+    private AtomicInteger lastId;
+    private DocumentIdAllocator allocator;
+
+    @Before
+    public void setUp() {
+        lastId = new AtomicInteger();
+        allocator = new DocumentIdAllocator(lastId);
+    }
+
+    @Test
+    public void testReleasedIdsReused() {
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(i, allocator.allocate());
+        }
+
+        allocator.release(4);
+        allocator.release(2);
+        allocator.release(2);
+
+        assertEquals(2, allocator.getFreeCount());
+        assertEquals(2, allocator.allocate());
+        assertEquals(4, allocator.allocate());
+        assertEquals(6, allocator.allocate());
+        assertEquals(6, lastId.get());
+    }
+
+    @Test
+    public void testReset() {
+        allocator.reset(6, id -> id % 2 == 0);
+
+        assertEquals(3, allocator.getFreeCount());
+        assertTrue(allocator.isFree(1));
+        assertFalse(allocator.isFree(2));
+        assertEquals(1, allocator.allocate());
+
+        allocator.reset(0, id -> true);
+        assertEquals(0, allocator.getFreeCount());
+        assertEquals(1, allocator.allocate());
+    }
+}
@@ -0,0 +1,69 @@
+package org.search.engine.index;
+
+import gnu.trove.set.hash.TIntHashSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
+import org.search.engine.model.SearchType;
+import org.search.engine.tree.SearchEngineConcurrentTree;
+import org.search.engine.tree.SearchEngineTree;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentIdCompactorTest {
+
+    private final Path first = Paths.get("/folder/b/first.txt");
+    private final Path second = Paths.get("/folder/a/second.txt");
+    private final Path third = Paths.get("/folder/b/third.txt");
+    private DocumentRegistry indexedDocuments;
+    private SearchEngineTree index;
+
+    @Before
+    public void setUp() {
+        indexedDocuments = new DocumentRegistry();
+        index = new SearchEngineConcurrentTree();
+        addDocument(40, first, "common");
+        addDocument(7, second, "second");
+        addDocument(12, third, "common");
+    }
+
+    @Test
+    public void testIdsRenumberedByPath() {
+        int lastId = DocumentIdCompactor.compact(index, indexedDocuments, new TIntHashSet());
+
+        assertEquals(3, lastId);
+        assertEquals(1, indexedDocuments.get(second).getId());
+        assertEquals(2, indexedDocuments.get(first).getId());
+        assertEquals(3, indexedDocuments.get(third).getId());
+        assertSame(indexedDocuments.get(first), indexedDocuments.get(2));
+
+        Set<Integer> values = index.getValue("common", SearchType.EXACT_MATCH);
+        assertEquals(2, values.size());
+        assertTrue(values.contains(2));
+        assertTrue(values.contains(3));
+        assertTrue(index.getValue("second", SearchType.EXACT_MATCH).contains(1));
+    }
+
+    @Test
+    public void testReservedIdsKept() {
+        int lastId = DocumentIdCompactor.compact(index, indexedDocuments, new TIntHashSet(new int[]{2, 12}));
+
+        assertEquals(12, lastId);
+        assertEquals(1, indexedDocuments.get(second).getId());
+        assertEquals(3, indexedDocuments.get(first).getId());
+        assertEquals(12, indexedDocuments.get(third).getId());
+        assertTrue(index.getValue("common", SearchType.EXACT_MATCH).contains(3));
+    }
+
+    private void addDocument(int id, Path path, String token) {
+        indexedDocuments.put(new Document(id, false, path, 1));
+        index.putMergeOnConflict(token, id);
+    }
+}
@@ -8,7 +8,7 @@ import org.search.engine.analyzer.StandardTokenizer;
 import org.search.engine.filesystem.FilesystemEvent;
 import org.search.engine.filesystem.FilesystemNotificationManager;
 import org.search.engine.filesystem.FilesystemNotifier;
-import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
 import org.search.engine.model.SearchType;
 import org.search.engine.tree.SearchEngineConcurrentTree;
 import org.search.engine.tree.SearchEngineTree;
@@ -19,7 +19,6 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
@@ -39,7 +38,7 @@ public class DocumentIndexManagerTest extends AbstractDocumentIndexationTest {
     public void setUp() throws IOException, InterruptedException {
         watchService = FileSystems.getDefault().newWatchService();
         notificationManager = new FilesystemNotificationManager(watchService, new HashSet<>(), new HashSet<>(), progress -> { });
-        indexedDocuments = new ConcurrentHashMap<>();
+        indexedDocuments = new DocumentRegistry();
         index = new SearchEngineConcurrentTree();
         indexManager = new DocumentIndexManager(index, indexedDocuments, notificationManager, new StandardTokenizer(), new AtomicInteger(), null);
         listener = new IndexationEventListener() {
@@ -114,6 +113,28 @@ public class DocumentIndexManagerTest extends AbstractDocumentIndexationTest {
         assertEquals(1, searchResult.size());
     }
 
+    @Test
+    public void testReplaceIndexedFile() throws InterruptedException, IOException, URISyntaxException {
+        URL resource = DocumentIndexManagerTest.class.getResource(folderTitle);
+        createdFile = Paths.get(resource.toURI().getRawPath() + "/four.txt");
+        Files.write(createdFile, Collections.singletonList("Text example"), StandardCharsets.UTF_8, StandardOpenOption.CREATE);
+        new Thread(() -> indexManager.indexFile(createdFile.toString())).start();
+
+        waitForSize(index, 2);
+        assertEquals(1, indexedDocuments.size());
+
+        //Atomic save replaces the file, so created event comes for the indexed path
+        Files.write(createdFile, Collections.singletonList("Text replaced"), StandardCharsets.UTF_8,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        new Thread(() -> indexManager.onFileChanged(FilesystemEvent.CREATED, createdFile)).start();
+
+        while (index.getValue("replaced", SearchType.EXACT_MATCH).isEmpty()) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, indexedDocuments.size());
+        assertTrue(index.getValue("example", SearchType.EXACT_MATCH).isEmpty());
+    }
+
     @Test
     public void testDeleteIndexedFile() throws URISyntaxException, InterruptedException {
         URL resource = DocumentIndexManagerTest.class.getResource(fileTitle);
@@ -195,7 +216,7 @@ public class DocumentIndexManagerTest extends AbstractDocumentIndexationTest {
         assertTrue(searchResult.isEmpty());
     }
 
-    private void waitForSize(Map<Path, Document> map, int expectedSize) throws InterruptedException {
+    private void waitForSize(DocumentRegistry map, int expectedSize) throws InterruptedException {
         while (map.size() != expectedSize) {
             Thread.sleep(100);
         }
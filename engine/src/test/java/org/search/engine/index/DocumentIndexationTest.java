@@ -4,9 +4,12 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.search.engine.SearchEngineConfiguration;
 import org.search.engine.analyzer.StandardTokenizer;
 import org.search.engine.filesystem.FilesystemNotifier;
+import org.search.engine.model.CancellationToken;
 import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
 import org.search.engine.model.IndexationEvent;
 import org.search.engine.model.SearchType;
 import org.search.engine.tree.SearchEngineConcurrentTree;
@@ -38,10 +41,11 @@ public class DocumentIndexationTest extends AbstractDocumentIndexationTest {
         URL resource = DocumentIndexationTest.class.getResource(fileTitle);
         filePath = Paths.get(resource.toURI());
         indexingDocument = new Document(documentId, true, filePath, 1);
-        indexedDocuments = new ConcurrentHashMap<>();
+        indexedDocuments = new DocumentRegistry();
         index = new SearchEngineConcurrentTree();
         BlockingQueue<IndexationEvent> documentLinesQueue = new LinkedBlockingQueue<>();
-        task = new DocumentReadTask(indexingDocument, indexedDocuments, documentLinesQueue, notificationManager);
+        task = new DocumentReadTask(indexingDocument, indexedDocuments, documentLinesQueue, new StandardTokenizer(),
+                SearchEngineConfiguration.DEFAULT, notificationManager);
         scheduler = new IndexationSchedulerTask(documentLinesQueue, index, new StandardTokenizer(), new ArrayList<>());
     }
 
@@ -56,11 +60,33 @@ public class DocumentIndexationTest extends AbstractDocumentIndexationTest {
 
         assertEquals(7, index.size());
         assertEquals(1, indexedDocuments.size());
-        assertTrue(indexedDocuments.containsValue(indexingDocument));
+        assertTrue(indexedDocuments.contains(indexingDocument));
 
         Set<Integer> searchResult = index.getValue(searchQuery, SearchType.EXACT_MATCH);
         assertEquals(1, searchResult.size());
         assertTrue(searchResult.contains(documentId));
     }
 
+    @Test
+    public void testCanceledDocumentIndexation() {
+        BlockingQueue<IndexationEvent> documentLinesQueue = new LinkedBlockingQueue<>();
+        CancellationToken cancellationToken = new CancellationToken();
+        IndexationProgress progress = new IndexationProgress(new IndexationEventListener() {
+            @Override
+            public void onIndexationProgress(int value) {
+            }
+
+            @Override
+            public void onIndexationFinished() {
+            }
+        });
+        DocumentReadWithTrackProgressTask progressTask = new DocumentReadWithTrackProgressTask(indexingDocument, indexedDocuments,
+                documentLinesQueue, new StandardTokenizer(), SearchEngineConfiguration.DEFAULT, progress, cancellationToken);
+        cancellationToken.cancel();
+        progressTask.run();
+
+        assertTrue(documentLinesQueue.isEmpty());
+        assertTrue(indexedDocuments.isEmpty());
+    }
+
 }
\ No newline at end of file
@@ -4,20 +4,23 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.search.engine.SearchEngineConfiguration;
 import org.search.engine.analyzer.StandardTokenizer;
 import org.search.engine.filesystem.FilesystemNotifier;
 import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
 import org.search.engine.model.IndexationEvent;
 import org.search.engine.model.SearchType;
 import org.search.engine.tree.SearchEngineConcurrentTree;
 
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import static org.junit.Assert.assertEquals;
@@ -29,6 +32,7 @@ public class DocumentRemoveTaskTest extends AbstractDocumentIndexationTest {
 
     private DocumentRemoveTask removeTask;
     private IndexationSchedulerTask scheduler;
+    private BlockingQueue<IndexationEvent> documentLinesQueue;
     @Mock
     private FilesystemNotifier notificationManager;
 
@@ -38,10 +42,11 @@ public class DocumentRemoveTaskTest extends AbstractDocumentIndexationTest {
         URL resource = DocumentRemoveTaskTest.class.getResource(fileTitle);
         filePath = Paths.get(resource.toURI());
         Document removableDocument = new Document(documentId, true, filePath, 1);
-        indexedDocuments = new ConcurrentHashMap<>();
+        indexedDocuments = new DocumentRegistry();
         index = new SearchEngineConcurrentTree();
-        BlockingQueue<IndexationEvent> documentLinesQueue = new LinkedBlockingQueue<>();
-        DocumentReadTask indexTask = new DocumentReadTask(removableDocument, indexedDocuments, documentLinesQueue, notificationManager);
+        documentLinesQueue = new LinkedBlockingQueue<>();
+        DocumentReadTask indexTask = new DocumentReadTask(removableDocument, indexedDocuments, documentLinesQueue, new StandardTokenizer(),
+                SearchEngineConfiguration.DEFAULT, notificationManager);
         scheduler = new IndexationSchedulerTask(documentLinesQueue, index, new StandardTokenizer(), new ArrayList<>());
         indexTask.run();
         scheduler.run();
@@ -66,4 +71,30 @@ public class DocumentRemoveTaskTest extends AbstractDocumentIndexationTest {
         assertTrue(searchResult.isEmpty());
     }
 
+    @Test
+    public void testDocumentRemovedBeforeTokensApplied() {
+        Document removableDocument = readDocument(2, "removed.txt", "alpha beta");
+        new DocumentRemoveTask(removableDocument, index, indexedDocuments, documentLinesQueue, notificationManager).run();
+        scheduler.run();
+
+        assertTrue(index.getValue("alpha", SearchType.EXACT_MATCH).isEmpty());
+        assertTrue(index.getKeys(2).isEmpty());
+
+        //Released id is given to the next document, it must not get tokens of the removed one
+        readDocument(2, "reused.txt", "gamma");
+        scheduler.run();
+
+        assertTrue(index.getValue("alpha", SearchType.EXACT_MATCH).isEmpty());
+        assertEquals(Collections.singleton(2), index.getValue("gamma", SearchType.EXACT_MATCH));
+    }
+
+    private Document readDocument(int id, String fileName, String content) {
+        Path path = Paths.get("/memory", fileName);
+        Document document = new Document(id, false, path, 1);
+        document.setSource(new MemoryDocumentSource(path, content, 1));
+        new DocumentReadTask(document, indexedDocuments, documentLinesQueue, new StandardTokenizer(), SearchEngineConfiguration.DEFAULT,
+                notificationManager).run();
+        return document;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package org.search.engine.index;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.search.engine.SearchEngineConfiguration;
+import org.search.engine.analyzer.StandardTokenizer;
+import org.search.engine.filesystem.FilesystemNotifier;
+import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
+import org.search.engine.model.IndexationEvent;
+import org.search.engine.model.SearchResultEvent;
+import org.search.engine.model.SearchType;
+import org.search.engine.search.SimpleSearchManager;
+import org.search.engine.tree.SearchEngineConcurrentTree;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class DocumentSourceTest extends AbstractDocumentIndexationTest {
+
+    private BlockingQueue<IndexationEvent> documentLinesQueue;
+    private IndexationSchedulerTask scheduler;
+    private Document document;
+
+    @Before
+    public void setUp() {
+        filePath = Paths.get("/memory/Generated.java");
+        indexedDocuments = new DocumentRegistry();
+        index = new SearchEngineConcurrentTree();
+        documentLinesQueue = new LinkedBlockingQueue<>();
+        scheduler = new IndexationSchedulerTask(documentLinesQueue, index, new StandardTokenizer(), new ArrayList<>());
+
+        document = new Document(documentId, false, filePath, 1);
+        document.setSource(new MemoryDocumentSource(filePath, "class Generated {\n    String surfeits;\n}\n", 1));
+        new DocumentReadTask(document, indexedDocuments, documentLinesQueue, new StandardTokenizer(), SearchEngineConfiguration.DEFAULT,
+                mock(FilesystemNotifier.class)).run();
+        scheduler.run();
+    }
+
+    @Test
+    public void testMemoryDocumentSearched() {
+        assertEquals(Collections.singleton(documentId), index.getValue(searchQuery, SearchType.EXACT_MATCH));
+
+        SimpleSearchManager searchManager = new SimpleSearchManager(index, indexedDocuments, new StandardTokenizer());
+        List<SearchResultEvent> events = searchManager.searchByQuery(Collections.singletonList(searchQuery), SearchType.EXACT_MATCH)
+                .test().values();
+        assertEquals(1, events.size());
+        assertEquals(filePath.toAbsolutePath().toString(), events.get(0).getFileName());
+        assertEquals(2, events.get(0).getRowNumber());
+        assertEquals(Collections.singletonList(11), events.get(0).getPositions());
+    }
+
+    @Test
+    public void testMemoryDocumentUpdated() {
+        document.setSource(new MemoryDocumentSource(filePath, "class Generated {\n    String replaced;\n}\n", 2));
+        new DocumentUpdateTask(document, index, indexedDocuments, new StandardTokenizer(), SearchEngineConfiguration.DEFAULT,
+                documentLinesQueue).run();
+        scheduler.run();
+
+        assertTrue(index.getValue(searchQuery, SearchType.EXACT_MATCH).isEmpty());
+        assertEquals(Collections.singleton(documentId), index.getValue("replaced", SearchType.EXACT_MATCH));
+        assertEquals(2, document.getModificationTimestamp());
+    }
+
+    @Test
+    public void testDefaultSourceOfPath() {
+        Path archivePath = Paths.get("/sources.jar");
+        assertTrue(new Document(2, false, archivePath, 1).getSource() instanceof FileDocumentSource);
+        Document entry = new Document(3, false, ArchiveReader.getEntryPath(archivePath, "src/Archived.java"), 1);
+        assertTrue(entry.getSource() instanceof ArchiveEntrySource);
+        assertFalse(entry.getSource().exists());
+    }
+}
@@ -3,27 +3,36 @@ package org.search.engine.index;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.search.engine.SearchEngineConfiguration;
 import org.search.engine.analyzer.StandardTokenizer;
 import org.search.engine.analyzer.Tokenizer;
 import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
 import org.search.engine.model.IndexationEvent;
 import org.search.engine.model.SearchType;
 import org.search.engine.tree.SearchEngineConcurrentTree;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 public class DocumentUpdateTaskTest extends AbstractDocumentIndexationTest {
@@ -31,6 +40,8 @@ public class DocumentUpdateTaskTest extends AbstractDocumentIndexationTest {
     private DocumentUpdateTask updateTask;
     private IndexationSchedulerTask scheduler;
     private Path filePath;
+    private Document updatedDocument;
+    private BlockingQueue<IndexationEvent> documentLinesQueue;
 
     @Before
     public void setUp() throws IOException {
@@ -38,16 +49,18 @@ public class DocumentUpdateTaskTest extends AbstractDocumentIndexationTest {
         Files.write(filePath, Collections.singletonList("Example of text for test file"), StandardCharsets.UTF_8,
                 StandardOpenOption.CREATE);
 
-        Document updatedDocument = new Document(documentId, false, filePath, 1);
-        indexedDocuments = new ConcurrentHashMap<>();
+        updatedDocument = new Document(documentId, false, filePath, 1);
+        indexedDocuments = new DocumentRegistry();
         index = new SearchEngineConcurrentTree();
         Tokenizer tokenizer = new StandardTokenizer();
-        BlockingQueue<IndexationEvent> documentLinesQueue = new LinkedBlockingQueue<>();
-        DocumentReadTask indexTask = new DocumentReadTask(updatedDocument, indexedDocuments, documentLinesQueue, null);
+        documentLinesQueue = new LinkedBlockingQueue<>();
+        DocumentReadTask indexTask = new DocumentReadTask(updatedDocument, indexedDocuments, documentLinesQueue, tokenizer,
+                SearchEngineConfiguration.DEFAULT, null);
         scheduler = new IndexationSchedulerTask(documentLinesQueue, index, new StandardTokenizer(), new ArrayList<>());
         indexTask.run();
         scheduler.run();
-        updateTask = new DocumentUpdateTask(updatedDocument, index, tokenizer, documentLinesQueue);
+        updateTask = new DocumentUpdateTask(updatedDocument, index, indexedDocuments, tokenizer, SearchEngineConfiguration.DEFAULT,
+                documentLinesQueue);
     }
 
     @After
@@ -73,4 +86,120 @@ public class DocumentUpdateTaskTest extends AbstractDocumentIndexationTest {
         assertEquals(1, searchResult.size());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testChangedLinesUpdateIndex() throws IOException {
+        Files.write(filePath, Arrays.asList("first line here", "second line", "third line"), StandardCharsets.UTF_8);
+        updateTask.run();
+        scheduler.run();
+        assertNotNull(updatedDocument.getLines());
+
+        Files.write(filePath, Arrays.asList("first line here", "second changed", "third line"), StandardCharsets.UTF_8);
+        updateTask.run();
+        assertEquals(Arrays.asList("ADD changed", "REFRESH null"), drainEvents());
+
+        Files.write(filePath, Arrays.asList("inserted", "first line here", "second changed"), StandardCharsets.UTF_8);
+        updateTask.run();
+        List<String> events = drainEvents();
+        assertEquals(Arrays.asList("ADD inserted", "REMOVE third", "REFRESH null"), events);
+        assertEquals(1, index.getValue("line", SearchType.EXACT_MATCH).size());
+        assertTrue(index.getValue("third", SearchType.EXACT_MATCH).isEmpty());
+    }
+
+    @Test
+    public void testNotChangedDocumentSkipped() throws IOException {
+        assertTrue(updatedDocument.hasContentHash());
+        Files.write(filePath, Collections.singletonList("Example of text for test file"), StandardCharsets.UTF_8);
+        updatedDocument.setModificationTimestamp(1);
+        updateTask.run();
+
+        assertTrue(documentLinesQueue.isEmpty());
+        assertTrue(updatedDocument.getModificationTimestamp() > 1);
+    }
+
+    @Test
+    public void testConcurrentUpdatesOfDocument() throws Exception {
+        Files.write(filePath, Arrays.asList("first line", "second line"), StandardCharsets.UTF_8);
+        updateTask.run();
+        scheduler.run();
+        assertNotNull(updatedDocument.getLines());
+
+        BlockingSource source = new BlockingSource("first line\nchanged line\n");
+        updatedDocument.setSource(source);
+        Thread firstUpdate = new Thread(updateTask);
+        firstUpdate.start();
+        assertTrue(source.entered.await(10, TimeUnit.SECONDS));
+        source.content = "first line\nother words\n";
+        Thread secondUpdate = new Thread(new DocumentUpdateTask(updatedDocument, index, indexedDocuments, new StandardTokenizer(),
+                SearchEngineConfiguration.DEFAULT, documentLinesQueue));
+        secondUpdate.start();
+        Thread.sleep(200);
+        // Second update waits until the first one publishes its lines
+        assertEquals(1, source.openedContents.get());
+
+        source.released.countDown();
+        firstUpdate.join(10_000);
+        secondUpdate.join(10_000);
+        scheduler.run();
+
+        assertEquals(2, source.openedContents.get());
+        assertEquals(Collections.singleton(documentId), index.getValue("other", SearchType.EXACT_MATCH));
+        assertEquals(Collections.singleton(documentId), index.getValue("line", SearchType.EXACT_MATCH));
+        assertTrue(index.getValue("changed", SearchType.EXACT_MATCH).isEmpty());
+        assertTrue(index.getValue("second", SearchType.EXACT_MATCH).isEmpty());
+        assertEquals(4, updatedDocument.getLines().getTokenLines().size());
+        assertEquals(1, updatedDocument.getLines().getTokenLines().get("line"));
+    }
+
+    private List<String> drainEvents() {
+        List<String> events = new ArrayList<>();
+        for (IndexationEvent event : documentLinesQueue) {
+            events.add(event.getType() + " " + event.getContent());
+        }
+        scheduler.run();
+        return events;
+    }
+
+    /**
+     * Source which takes the content when it's opened and blocks the first reading until it's released
+     */
+    private class BlockingSource implements DocumentSource {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final AtomicInteger openedContents = new AtomicInteger();
+        private volatile String content;
+
+        private BlockingSource(String content) {
+            this.content = content;
+        }
+
+        @Override
+        public Path getPath() {
+            return filePath;
+        }
+
+        @Override
+        public long getVersion() {
+            return 2;
+        }
+
+        @Override
+        public long getSize() {
+            return content.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public InputStream openContent() throws IOException {
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            if (openedContents.incrementAndGet() == 1) {
+                entered.countDown();
+                try {
+                    released.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+            return new ByteArrayInputStream(bytes);
+        }
+    }
+}
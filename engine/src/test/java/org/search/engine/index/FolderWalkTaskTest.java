@@ -0,0 +1,138 @@
+package org.search.engine.index;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FolderWalkTaskTest {
+
+    private Path folderPath;
+
+    @Before
+    public void setUp() throws IOException {
+        folderPath = Paths.get("./TestFolderWalk");
+        for (int i = 0; i < 10; i++) {
+            Path subfolder = Files.createDirectories(folderPath.resolve("folder" + i).resolve("nested"));
+            Files.write(subfolder.resolve("file.txt"), "content".getBytes());
+            Files.write(subfolder.getParent().resolve("file.txt"), "content".getBytes());
+        }
+        Path hiddenFolder = Files.createDirectories(folderPath.resolve(".hidden"));
+        Files.write(hiddenFolder.resolve("file.txt"), "content".getBytes());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(folderPath)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(it -> it.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testWalkFolder() {
+        Set<Path> files = ConcurrentHashMap.newKeySet();
+        List<Path> visitedFolders = new CopyOnWriteArrayList<>();
+        new ForkJoinPool(4).invoke(new FolderWalkTask(folderPath, new CollectingVisitor(files, visitedFolders)));
+
+        assertEquals(20, files.size());
+        assertFalse(files.contains(folderPath.resolve(".hidden").resolve("file.txt")));
+        assertEquals(21, visitedFolders.size());
+        //Folder is visited after all its subfolders
+        assertEquals(folderPath, visitedFolders.get(20));
+        assertTrue(visitedFolders.indexOf(folderPath.resolve("folder0").resolve("nested"))
+                < visitedFolders.indexOf(folderPath.resolve("folder0")));
+    }
+
+    @Test
+    public void testLinksNotFollowed() throws IOException {
+        try {
+            Files.createSymbolicLink(folderPath.resolve("linkedFolder"), folderPath.resolve("folder0").toAbsolutePath());
+            Files.createSymbolicLink(folderPath.resolve("linkedFile.txt"), folderPath.resolve("folder0").resolve("file.txt").toAbsolutePath());
+        } catch (UnsupportedOperationException ex) {
+            Assume.assumeNoException(ex);
+        }
+        Set<Path> files = ConcurrentHashMap.newKeySet();
+        List<Path> visitedFolders = new CopyOnWriteArrayList<>();
+        new ForkJoinPool(4).invoke(new FolderWalkTask(folderPath, new CollectingVisitor(files, visitedFolders)));
+
+        //Link to the file is visited as a file, link to the folder is skipped
+        assertEquals(21, files.size());
+        assertTrue(files.contains(folderPath.resolve("linkedFile.txt")));
+        assertFalse(files.contains(folderPath.resolve("linkedFolder")));
+        assertFalse(files.contains(folderPath.resolve("linkedFolder").resolve("file.txt")));
+        assertEquals(21, visitedFolders.size());
+        assertFalse(visitedFolders.contains(folderPath.resolve("linkedFolder")));
+    }
+
+    @Test
+    public void testIndexationProgress() {
+        List<Integer> reported = new CopyOnWriteArrayList<>();
+        IndexationProgress progress = new IndexationProgress(new IndexationEventListener() {
+            @Override
+            public void onIndexationProgress(int value) {
+                reported.add(value);
+            }
+
+            @Override
+            public void onIndexationFinished() {
+            }
+        });
+        progress.onFileFound();
+        progress.onFileFound();
+        progress.onFileProcessed();
+        progress.onFileFound();
+        progress.onFileFound();
+        progress.onFileProcessed();
+        progress.onWalkFinished();
+        progress.onFileProcessed();
+        progress.onFileProcessed();
+        assertEquals("[45, 50, 75, 100]", reported.toString());
+    }
+
+    private static class CollectingVisitor implements FolderWalkTask.FolderVisitor {
+
+        private final Set<Path> files;
+        private final List<Path> visitedFolders;
+
+        private CollectingVisitor(Set<Path> files, List<Path> visitedFolders) {
+            this.files = files;
+            this.visitedFolders = visitedFolders;
+        }
+
+        @Override
+        public boolean preVisitDirectory(Path folder) {
+            return !folder.getFileName().toString().startsWith(".");
+        }
+
+        @Override
+        public void visitFile(Path file) {
+            files.add(file);
+        }
+
+        @Override
+        public void postVisitDirectory(Path folder) {
+            visitedFolders.add(folder);
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package org.search.engine.index;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.search.engine.ExecutorConfiguration;
+import org.search.engine.SearchEngineConfiguration;
+import org.search.engine.SearchEngineExecutors;
+import org.search.engine.TaskPriority;
+import org.search.engine.analyzer.StandardTokenizer;
+import org.search.engine.filesystem.FilesystemEvent;
+import org.search.engine.filesystem.FilesystemNotifier;
+import org.search.engine.filesystem.PathFilter;
+import org.search.engine.filesystem.PathRules;
+import org.search.engine.model.Document;
+import org.search.engine.model.DocumentRegistry;
+import org.search.engine.model.SearchType;
+import org.search.engine.tree.SearchEngineConcurrentTree;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IndexJobTest extends AbstractDocumentIndexationTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SearchEngineExecutors executors;
+    private DocumentIndexManager indexManager;
+
+    @Before
+    public void setUp() {
+        executors = new SearchEngineExecutors(ExecutorConfiguration.builder().indexingThreads(1).daemon(true).build());
+        indexedDocuments = new DocumentRegistry();
+        index = new SearchEngineConcurrentTree();
+        indexManager = new DocumentIndexManager(index, indexedDocuments, Mockito.mock(FilesystemNotifier.class), new StandardTokenizer(),
+                new AtomicInteger(), null, SearchEngineConfiguration.DEFAULT, new PathFilter(PathRules.DEFAULT, Collections.emptyMap()),
+                executors);
+    }
+
+    @After
+    public void tearDown() {
+        executors.shutdown();
+    }
+
+    @Test
+    public void testParallelJobsCompleted() throws Exception {
+        Path firstFolder = createFolder("first", "alpha");
+        Path secondFolder = createFolder("second", "beta");
+        CountingListener firstListener = new CountingListener();
+        CountingListener secondListener = new CountingListener();
+
+        IndexJob firstJob = indexManager.indexFolder(firstFolder.toString(), firstListener);
+        IndexJob secondJob = indexManager.indexFolder(secondFolder.toString(), secondListener);
+        firstJob.getCompletion().get(10, TimeUnit.SECONDS);
+        secondJob.getCompletion().get(10, TimeUnit.SECONDS);
+
+        assertEquals(100, firstJob.getProgress());
+        assertEquals(3, firstJob.getProcessedFiles());
+        assertEquals(1, firstListener.finished.get());
+        assertEquals(1, secondListener.finished.get());
+        assertEquals(3, index.getValue("alpha", SearchType.EXACT_MATCH).size());
+        assertEquals(3, index.getValue("beta", SearchType.EXACT_MATCH).size());
+        assertTrue(indexManager.getIndexJobs().isEmpty());
+    }
+
+    @Test
+    public void testCanceledJobRolledBack() throws Exception {
+        Path folder = createFolder("canceled", "gamma");
+        CountDownLatch blocker = new CountDownLatch(1);
+        executors.getExecutorService().submit(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, TaskPriority.INTERACTIVE);
+        CountingListener listener = new CountingListener();
+
+        IndexJob job = indexManager.indexFolder(folder.toString(), listener);
+        assertEquals(1, indexManager.getIndexJobs().size());
+        job.cancel();
+        blocker.countDown();
+        try {
+            job.getCompletion().get(10, TimeUnit.SECONDS);
+            fail("Canceled job must not be completed normally");
+        } catch (CancellationException ex) {
+            assertTrue(job.getCompletion().isCompletedExceptionally());
+        }
+
+        assertTrue(job.isCanceled());
+        assertEquals(1, listener.finished.get());
+        assertTrue(indexedDocuments.isEmpty());
+        assertTrue(index.getValue("gamma", SearchType.EXACT_MATCH).isEmpty());
+        assertTrue(indexManager.getIndexJobs().isEmpty());
+    }
+
+    @Test
+    public void testCacheInvalidatedAfterRollback() throws Exception {
+        Path folder = createFolder("invalidated", "theta");
+        CountDownLatch blocker = new CountDownLatch(1);
+        executors.getExecutorService().submit(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, TaskPriority.INTERACTIVE);
+
+        IndexJob job = indexManager.indexFolder(folder.toString(), new CountingListener());
+        //Reading tasks wait behind the blocker, so the rollback can't be finished until it's released
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (executors.getExecutorService().getQueue().isEmpty()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        Thread invalidation = new Thread(indexManager::invalidateCache);
+        invalidation.start();
+        while (!job.isCanceled()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        //Rollback waits for the blocked reading tasks and invalidation waits for the rollback
+        assertTrue(invalidation.isAlive());
+        assertFalse(job.getCompletion().isDone());
+
+        blocker.countDown();
+        invalidation.join(10_000);
+        assertFalse(invalidation.isAlive());
+        assertTrue(job.getCompletion().isCompletedExceptionally());
+        assertTrue(indexManager.getIndexJobs().isEmpty());
+        assertTrue(indexedDocuments.isEmpty());
+        assertTrue(index.getValue("theta", SearchType.EXACT_MATCH).isEmpty());
+    }
+
+    @Test
+    public void testCheckpointsDuringIndexation() throws Exception {
+        indexManager = new DocumentIndexManager(index, indexedDocuments, Mockito.mock(FilesystemNotifier.class), new StandardTokenizer(),
+                new AtomicInteger(), null, SearchEngineConfiguration.builder().checkpointInterval(2).build(),
+                new PathFilter(PathRules.DEFAULT, Collections.emptyMap()), executors);
+        Path folder = createFolder("checkpoint", "delta");
+        List<Collection<Path>> checkpointFolders = new CopyOnWriteArrayList<>();
+        AtomicInteger notAppliedDocuments = new AtomicInteger();
+        indexManager.addListener(new CountingListener() {
+            @Override
+            public void onIndexationCheckpoint(Collection<Document> documents, Collection<Path> folders) {
+                documents.stream().filter(it -> index.getKeys(it.getId()).isEmpty()).forEach(it -> notAppliedDocuments.incrementAndGet());
+                checkpointFolders.add(folders);
+            }
+        });
+
+        indexManager.indexFolder(folder.toString(), new CountingListener()).getCompletion().get(10, TimeUnit.SECONDS);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (checkpointFolders.isEmpty() || !checkpointFolders.get(checkpointFolders.size() - 1).isEmpty()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+
+        assertTrue(checkpointFolders.size() >= 2);
+        assertEquals(Collections.singletonList(folder), new ArrayList<>(checkpointFolders.get(0)));
+        assertEquals(0, notAppliedDocuments.get());
+    }
+
+    @Test
+    public void testResumedFolderSkipsIndexedFiles() throws Exception {
+        Path folder = createFolder("resumed", "epsilon");
+        indexManager.indexFolder(folder.toString(), new CountingListener()).getCompletion().get(10, TimeUnit.SECONDS);
+        Files.write(folder.resolve("added.txt"), "epsilon added".getBytes(StandardCharsets.UTF_8));
+
+        IndexJob job = indexManager.resumeFolder(folder.toString(), new CountingListener());
+        job.getCompletion().get(10, TimeUnit.SECONDS);
+
+        assertEquals(4, indexedDocuments.size());
+        assertEquals(4, job.getProcessedFiles());
+        assertEquals(4, index.getValue("epsilon", SearchType.EXACT_MATCH).size());
+    }
+
+    @Test
+    public void testSmallFilesReadInBatches() throws Exception {
+        indexManager = new DocumentIndexManager(index, indexedDocuments, Mockito.mock(FilesystemNotifier.class), new StandardTokenizer(),
+                new AtomicInteger(), null, SearchEngineConfiguration.builder().readBatchSize(4).largeFileSize(1024).build(),
+                new PathFilter(PathRules.DEFAULT, Collections.emptyMap()), executors);
+        Path folder = temporaryFolder.newFolder("batched").toPath();
+        for (int i = 0; i < 10; i++) {
+            Files.write(folder.resolve("file" + i + ".txt"), ("zeta document " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder largeContent = new StringBuilder();
+        while (largeContent.length() < 2048) {
+            largeContent.append("zeta large ");
+        }
+        Files.write(folder.resolve("large.txt"), largeContent.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(folder.resolve("binary.bin"), new byte[]{0, 1, 2, 3});
+
+        IndexJob job = indexManager.indexFolder(folder.toString(), new CountingListener());
+        job.getCompletion().get(10, TimeUnit.SECONDS);
+
+        assertEquals(12, job.getFoundFiles());
+        assertEquals(12, job.getProcessedFiles());
+        assertEquals(11, indexedDocuments.size());
+        assertEquals(11, index.getValue("zeta", SearchType.EXACT_MATCH).size());
+        assertEquals(1, index.getValue("large", SearchType.EXACT_MATCH).size());
+    }
+
+    @Test
+    public void testCreatedFolderIndexedByJob() throws Exception {
+        indexManager = new DocumentIndexManager(index, indexedDocuments, Mockito.mock(FilesystemNotifier.class), new StandardTokenizer(),
+                new AtomicInteger(), null, SearchEngineConfiguration.builder().maxPendingDocuments(4).build(),
+                new PathFilter(PathRules.DEFAULT, Collections.emptyMap()), executors);
+        Path folder = temporaryFolder.newFolder("created").toPath();
+        for (int i = 0; i < 20; i++) {
+            Files.write(folder.resolve("file" + i + ".txt"), ("iota document " + i).getBytes(StandardCharsets.UTF_8));
+        }
+
+        //Notifications are dispatched by the only indexing thread, so the walk must not wait for reading there
+        executors.getExecutorService().executeUnbounded(() -> indexManager.onFolderChanged(FilesystemEvent.CREATED, folder),
+                TaskPriority.LIVE);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (index.getValue("iota", SearchType.EXACT_MATCH).size() < 20 || !indexManager.getIndexJobs().isEmpty()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+
+        assertEquals(20, indexedDocuments.size());
+    }
+
+    @Test
+    public void testCreatedFolderJobCanceled() throws Exception {
+        Path folder = createFolder("created", "kappa");
+        CountDownLatch blocker = new CountDownLatch(1);
+        executors.getExecutorService().submit(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, TaskPriority.INTERACTIVE);
+
+        indexManager.onFolderChanged(FilesystemEvent.CREATED, folder);
+        assertEquals(1, indexManager.getIndexJobs().size());
+        IndexJob job = indexManager.getIndexJobs().iterator().next();
+        assertEquals(folder, job.getFolder());
+        indexManager.cancelIndexation();
+        blocker.countDown();
+        try {
+            job.getCompletion().get(10, TimeUnit.SECONDS);
+            fail("Canceled job must not be completed normally");
+        } catch (CancellationException ex) {
+            assertTrue(job.isCanceled());
+        }
+
+        assertTrue(indexedDocuments.isEmpty());
+        assertTrue(index.getValue("kappa", SearchType.EXACT_MATCH).isEmpty());
+    }
+
+    private Path createFolder(String name, String word) throws IOException {
+        Path folder = temporaryFolder.newFolder(name).toPath();
+        for (int i = 0; i < 3; i++) {
+            Files.write(folder.resolve("file" + i + ".txt"), (word + " document " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        return folder;
+    }
+
+    private static class CountingListener implements IndexationEventListener {
+
+        private final AtomicInteger finished = new AtomicInteger();
+
+        @Override
+        public void onIndexationProgress(int progress) {
+        }
+
+        @Override
+        public void onIndexationFinished() {
+            finished.incrementAndGet();
+        }
+    }
+}
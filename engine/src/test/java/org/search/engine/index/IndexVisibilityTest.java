@@ -0,0 +1,82 @@
+package org.search.engine.index;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.search.engine.ExecutorConfiguration;
+import org.search.engine.SearchEngineConfiguration;
+import org.search.engine.SearchEngineExecutors;
+import org.search.engine.analyzer.StandardTokenizer;
+import org.search.engine.filesystem.FilesystemNotifier;
+import org.search.engine.filesystem.PathFilter;
+import org.search.engine.filesystem.PathRules;
+import org.search.engine.model.DocumentRegistry;
+import org.search.engine.model.SearchType;
+import org.search.engine.tree.SearchEngineConcurrentTree;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IndexVisibilityTest extends AbstractDocumentIndexationTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SearchEngineExecutors executors;
+    private DocumentIndexManager indexManager;
+
+    @Before
+    public void setUp() {
+        executors = new SearchEngineExecutors(ExecutorConfiguration.builder().indexingThreads(1).daemon(true).build());
+        indexedDocuments = new DocumentRegistry();
+        index = new SearchEngineConcurrentTree();
+        indexManager = new DocumentIndexManager(index, indexedDocuments, Mockito.mock(FilesystemNotifier.class), new StandardTokenizer(),
+                new AtomicInteger(), null, SearchEngineConfiguration.DEFAULT, new PathFilter(PathRules.DEFAULT, Collections.emptyMap()),
+                executors);
+    }
+
+    @After
+    public void tearDown() {
+        executors.shutdown();
+    }
+
+    @Test
+    public void testIndexedFileVisible() throws Exception {
+        Path first = temporaryFolder.newFile("first.txt").toPath();
+        Path second = temporaryFolder.newFile("second.txt").toPath();
+        Files.write(first, "visible alpha".getBytes(StandardCharsets.UTF_8));
+        Files.write(second, "visible beta".getBytes(StandardCharsets.UTF_8));
+
+        long firstSequence = indexManager.indexFile(first.toString());
+        long secondSequence = indexManager.indexFile(second.toString());
+        assertTrue(secondSequence > firstSequence);
+
+        indexManager.awaitVisible(secondSequence).get(10, TimeUnit.SECONDS);
+        assertEquals(2, indexedDocuments.size());
+        assertEquals(2, index.getValue("visible", SearchType.EXACT_MATCH).size());
+        assertEquals(1, index.getValue("alpha", SearchType.EXACT_MATCH).size());
+    }
+
+    @Test
+    public void testSkippedFileVisible() throws Exception {
+        Path file = temporaryFolder.newFile("indexed.txt").toPath();
+        Files.write(file, "visible twice".getBytes(StandardCharsets.UTF_8));
+        indexManager.awaitVisible(indexManager.indexFile(file.toString())).get(10, TimeUnit.SECONDS);
+
+        long sequence = indexManager.indexFile(file.toString());
+
+        indexManager.awaitVisible(sequence).get(10, TimeUnit.SECONDS);
+        assertEquals(1, indexedDocuments.size());
+        assertTrue(indexManager.awaitVisible(sequence).isDone());
+    }
+}
@@ -0,0 +1,159 @@
+package org.search.engine.index;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.search.engine.analyzer.StandardTokenizer;
+import org.search.engine.model.CancellationToken;
+import org.search.engine.model.EventType;
+import org.search.engine.model.IndexationEvent;
+import org.search.engine.model.SearchType;
+import org.search.engine.tree.SearchEngineConcurrentTree;
+import org.search.engine.tree.SearchEngineTree;
+
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndexingThrottleTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private IndexingThrottle throttle;
+
+    @Before
+    public void setUp() {
+        throttle = new IndexingThrottle(true, 8, clock::get);
+    }
+
+    @Test
+    public void testLevelFollowsSearches() {
+        assertEquals(1, throttle.getLevel(), 0);
+        assertEquals(8, throttle.getReadLimit());
+        assertEquals(Integer.MAX_VALUE, throttle.getWriteBatchSize());
+
+        long start = throttle.onSearchStarted();
+        assertEquals(0, throttle.getLevel(), 0);
+        assertEquals(1, throttle.getReadLimit());
+
+        advance(10);
+        throttle.onSearchFinished(start);
+        assertEquals(0.25, throttle.getLevel(), 0);
+        assertEquals(2, throttle.getReadLimit());
+        assertEquals(25_000, throttle.getWriteBatchSize());
+
+        advance(3000);
+        assertTrue(throttle.getLevel() > 0.25 && throttle.getLevel() < 1);
+
+        advance(2000);
+        assertEquals(1, throttle.getLevel(), 0);
+        assertFalse(throttle.getMetrics().isThrottled());
+    }
+
+    @Test
+    public void testSlowSearchesThrottleToMinimum() {
+        long start = throttle.onSearchStarted();
+        advance(200);
+        throttle.onSearchFinished(start);
+
+        assertEquals(0, throttle.getLevel(), 0);
+        assertEquals(1, throttle.getReadLimit());
+        assertEquals(2_000, throttle.getWriteBatchSize());
+        assertEquals(200, throttle.getMetrics().getAverageSearchMillis(), 0.001);
+    }
+
+    @Test
+    public void testReadsLimited() {
+        throttle.onSearchStarted();
+        CancellationToken cancellationToken = new CancellationToken();
+
+        assertTrue(throttle.acquireRead(cancellationToken));
+        cancellationToken.cancel();
+        assertFalse(throttle.acquireRead(cancellationToken));
+
+        throttle.releaseRead();
+        assertTrue(throttle.acquireRead(cancellationToken));
+        assertEquals(1, throttle.getMetrics().getRunningReads());
+    }
+
+    @Test
+    public void testSchedulerAppliesBatch() {
+        BlockingQueue<IndexationEvent> queue = new LinkedBlockingQueue<>();
+        SearchEngineTree index = new SearchEngineConcurrentTree();
+        for (int i = 0; i < 3_000; i++) {
+            queue.add(new IndexationEvent(EventType.ADD, 1, "token" + i));
+        }
+        long start = throttle.onSearchStarted();
+        advance(200);
+        throttle.onSearchFinished(start);
+        IndexationSchedulerTask scheduler = new IndexationSchedulerTask(queue, index, new StandardTokenizer(), new ArrayList<>(), throttle);
+
+        scheduler.run();
+        assertEquals(1_000, queue.size());
+        assertEquals(1, throttle.getMetrics().getDeferredWriteBatches());
+
+        advance(5000);
+        scheduler.run();
+        assertTrue(queue.isEmpty());
+        assertEquals(3_000, index.size());
+    }
+
+    @Test
+    public void testLiveEventsNotThrottled() {
+        BlockingQueue<IndexationEvent> liveQueue = new LinkedBlockingQueue<>();
+        BlockingQueue<IndexationEvent> queue = new LinkedBlockingQueue<>();
+        SearchEngineTree index = new SearchEngineConcurrentTree();
+        for (int i = 0; i < 5_000; i++) {
+            queue.add(new IndexationEvent(EventType.ADD, 1, "token" + i));
+        }
+        liveQueue.add(new IndexationEvent(EventType.ADD, 2, "edited"));
+        long start = throttle.onSearchStarted();
+        advance(200);
+        throttle.onSearchFinished(start);
+        IndexationSchedulerTask scheduler = new IndexationSchedulerTask(liveQueue, queue, index, new StandardTokenizer(),
+                new ArrayList<>(), throttle);
+
+        scheduler.run();
+        assertTrue(liveQueue.isEmpty());
+        assertEquals(3_000, queue.size());
+        assertEquals(2_001, index.size());
+
+        liveQueue.add(new IndexationEvent(EventType.REMOVE, 2, "edited"));
+        scheduler.run();
+        assertTrue(liveQueue.isEmpty());
+        assertTrue(index.getValue("edited", SearchType.EXACT_MATCH).isEmpty());
+        assertEquals(1_000, queue.size());
+    }
+
+    @Test
+    public void testCallbacksNotDeferred() {
+        BlockingQueue<IndexationEvent> queue = new LinkedBlockingQueue<>();
+        SearchEngineTree index = new SearchEngineConcurrentTree();
+        AtomicInteger callbacks = new AtomicInteger();
+        queue.add(new IndexationEvent(callbacks::incrementAndGet));
+        for (int i = 0; i < 3_000; i++) {
+            queue.add(new IndexationEvent(EventType.ADD, 1, "token" + i));
+            if (i == 1_999) {
+                queue.add(new IndexationEvent(callbacks::incrementAndGet));
+            }
+        }
+        long start = throttle.onSearchStarted();
+        advance(200);
+        throttle.onSearchFinished(start);
+        IndexationSchedulerTask scheduler = new IndexationSchedulerTask(queue, index, new StandardTokenizer(), new ArrayList<>(), throttle);
+
+        scheduler.run();
+        assertEquals(2, callbacks.get());
+        assertEquals(1_000, queue.size());
+        assertEquals(2_000, index.size());
+    }
+
+    private void advance(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
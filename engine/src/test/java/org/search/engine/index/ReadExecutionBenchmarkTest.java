@@ -0,0 +1,106 @@
+package org.search.engine.index;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.search.engine.ReadExecutionMode;
+import org.search.engine.SearchEngineConfiguration;
+import org.search.engine.analyzer.StandardTokenizer;
+import org.search.engine.filesystem.FilesystemNotifier;
+import org.search.engine.filesystem.PathFilter;
+import org.search.engine.filesystem.PathRules;
+import org.search.engine.model.DocumentRegistry;
+import org.search.engine.tree.SearchEngineConcurrentTree;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Compares throughput of folder indexation by platform and virtual reading threads. For cold cache numbers
+ * generate the tree once, then drop the page cache (sync; echo 3 > /proc/sys/vm/drop_caches) and run each
+ * mode separately with -Dbenchmark.folder=path. Without the property tree is generated in the temp folder
+ * and read from the warm cache.
+ */
+@Ignore("Benchmark, run it manually on the storage which should be measured")
+public class ReadExecutionBenchmarkTest {
+
+    private static final int FOLDERS = 50;
+    private static final int FILES_IN_FOLDER = 400;
+
+    private Path folder;
+    private long filesCount;
+
+    @Before
+    public void setUp() throws IOException {
+        String folderProperty = System.getProperty("benchmark.folder");
+        if (folderProperty != null && Files.isDirectory(Paths.get(folderProperty))) {
+            folder = Paths.get(folderProperty);
+        } else {
+            folder = folderProperty != null ? Files.createDirectories(Paths.get(folderProperty))
+                    : Files.createTempDirectory("search-engine-benchmark");
+            generateTree(folder);
+        }
+        try (Stream<Path> files = Files.walk(folder)) {
+            filesCount = files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    public void testPlatformThreads() throws InterruptedException {
+        indexFolder(ReadExecutionMode.PLATFORM);
+    }
+
+    @Test
+    public void testVirtualThreads() throws InterruptedException {
+        indexFolder(ReadExecutionMode.VIRTUAL);
+    }
+
+    private void indexFolder(ReadExecutionMode mode) throws InterruptedException {
+        SearchEngineConfiguration configuration = SearchEngineConfiguration.builder()
+                .readExecutionMode(mode)
+                .build();
+        DocumentRegistry indexedDocuments = new DocumentRegistry();
+        DocumentIndexManager indexManager = new DocumentIndexManager(new SearchEngineConcurrentTree(), indexedDocuments,
+                Mockito.mock(FilesystemNotifier.class), new StandardTokenizer(), new AtomicInteger(), null, configuration,
+                new PathFilter(PathRules.DEFAULT, Collections.emptyMap()));
+
+        long start = System.nanoTime();
+        indexManager.indexFolder(folder.toString(), new IndexationEventListener() {
+            @Override
+            public void onIndexationProgress(int progress) {
+            }
+
+            @Override
+            public void onIndexationFinished() {
+            }
+        });
+        while (indexedDocuments.size() < filesCount) {
+            Thread.sleep(10);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(mode + ": " + filesCount + " files read in " + millis + "ms, "
+                + (filesCount * 1000 / Math.max(millis, 1)) + " files/s");
+    }
+
+    private static void generateTree(Path root) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            lines.add("line " + i + " of the benchmark document with some searchable words " + (i * 31));
+        }
+        for (int i = 0; i < FOLDERS; i++) {
+            Path folder = Files.createDirectories(root.resolve("folder" + i));
+            for (int j = 0; j < FILES_IN_FOLDER; j++) {
+                Files.write(folder.resolve("file" + j + ".txt"), lines, StandardCharsets.UTF_8);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.search.engine.model;
+
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentRegistryTest {
+
+    private final Path firstPath = Paths.get("/folder/first.txt");
+    private final Path secondPath = Paths.get("/folder/inner/second.txt");
+    private DocumentRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new DocumentRegistry();
+    }
+
+    @Test
+    public void testLookupByPathAndId() {
+        Document first = new Document(1, false, firstPath, 1);
+        Document second = new Document(2, false, secondPath, 1);
+        registry.put(first);
+        registry.put(second);
+
+        assertEquals(2, registry.size());
+        assertSame(first, registry.get(firstPath));
+        assertSame(second, registry.get(2));
+        assertNull(registry.get(3));
+        assertEquals(1, registry.getDocuments(Paths.get("/folder/inner")).size());
+        assertEquals(2, registry.getDocuments(Paths.get("/folder")).size());
+    }
+
+    @Test
+    public void testReplaceDocumentOfTheSamePath() {
+        Document oldDocument = new Document(1, false, firstPath, 1);
+        Document newDocument = new Document(2, false, firstPath, 2);
+        registry.put(oldDocument);
+        registry.put(newDocument);
+
+        assertEquals(1, registry.size());
+        assertNull(registry.get(1));
+        assertSame(newDocument, registry.get(2));
+
+        //Removing of the replaced document doesn't touch the new one
+        assertFalse(registry.remove(oldDocument));
+        assertTrue(registry.contains(newDocument));
+        assertTrue(registry.remove(newDocument));
+        assertTrue(registry.isEmpty());
+        assertNull(registry.get(2));
+    }
+
+    @Test
+    public void testRemoveAllByIds() {
+        Document first = new Document(1, false, firstPath, 1);
+        Document second = new Document(2, false, secondPath, 1);
+        registry.put(first);
+        registry.put(second);
+
+        assertEquals(1, registry.removeAll(new TIntHashSet(new int[]{1, 3})));
+        assertEquals(1, registry.size());
+        assertFalse(registry.contains(firstPath));
+        assertNull(registry.get(1));
+        assertSame(second, registry.get(secondPath));
+    }
+
+    @Test
+    public void testDuplicatesShareContentOwner() {
+        Document owner = createDocument(1, firstPath);
+        Document duplicate = createDocument(2, secondPath);
+        Document other = createDocument(3, Paths.get("/other/third.txt"));
+        registry.put(owner);
+
+        assertFalse(registry.putDuplicate(owner));
+        assertTrue(registry.putDuplicate(duplicate));
+        assertTrue(registry.putDuplicate(other));
+        assertEquals(1, duplicate.getContentOwnerId());
+        assertEquals(new HashSet<>(Arrays.asList(owner, duplicate, other)), new HashSet<>(registry.getContentDocuments(1)));
+        assertTrue(registry.getContentDocuments(2).isEmpty());
+
+        //Owner passes the content to the duplicate, which is found by the previous owner id until tokens are moved
+        Document newOwner = registry.detachContent(owner);
+        assertNotNull(newOwner);
+        assertFalse(newOwner.isDuplicate());
+        assertEquals(3, registry.getContentDocuments(1).size());
+        registry.completeTransfer(1);
+        assertEquals(Arrays.asList(owner), registry.getContentDocuments(1));
+        assertEquals(2, registry.getContentDocuments(newOwner.getId()).size());
+
+        //Removed duplicate is not found by the owner
+        Document lastDuplicate = newOwner == duplicate ? other : duplicate;
+        assertTrue(registry.remove(lastDuplicate));
+        assertEquals(Arrays.asList(newOwner), registry.getContentDocuments(newOwner.getId()));
+    }
+
+    @Test
+    public void testDetachContentsOfRemovedDocuments() {
+        registry.put(createDocument(1, firstPath));
+        registry.putDuplicate(createDocument(2, secondPath));
+        registry.putDuplicate(createDocument(3, Paths.get("/other/third.txt")));
+
+        TIntIntMap transfers = registry.detachContents(new TIntHashSet(new int[]{1, 2}));
+        assertEquals(1, transfers.size());
+        assertEquals(3, transfers.get(1));
+        assertEquals(2, registry.removeAll(new TIntHashSet(new int[]{1, 2})));
+        assertFalse(registry.get(3).isDuplicate());
+        registry.completeTransfer(1);
+
+        //Content of the documents is owned by the new owner after renumbering too
+        registry.putDuplicate(createDocument(4, firstPath));
+        TIntIntMap mapping = new TIntIntHashMap(new int[]{3, 4}, new int[]{1, 2});
+        registry.renumber(mapping);
+        assertEquals(1, registry.get(2).getContentOwnerId());
+        assertEquals(2, registry.getContentDocuments(1).size());
+    }
+
+    @Test
+    public void testOrphanDuplicatesRemoved() {
+        Document duplicate = createDocument(2, secondPath);
+        duplicate.setContentOwnerId(1);
+        registry.put(duplicate);
+
+        assertEquals(1, registry.removeOrphanDuplicates());
+        assertTrue(registry.isEmpty());
+    }
+
+    private static Document createDocument(int id, Path path) {
+        Document document = new Document(id, false, path, 1);
+        document.setContentLength(10);
+        document.setContentHash(42);
+        return document;
+    }
+}
@@ -1,5 +1,8 @@
 package org.search.engine.tree;
 
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.set.hash.TIntHashSet;
 import org.junit.Before;
 import org.junit.Test;
 import org.search.engine.model.SearchType;
@@ -343,4 +346,48 @@ public class SearchEngineTreeTest {
         assertTrue(keys.contains("TOOST"));
     }
 
+    @Test
+    public void testRemoveByValues() {
+        tree.putMergeOnConflict("TEST", 1);
+        tree.putMergeOnConflict("TEAM", 2);
+        tree.putMergeOnConflict("TOAST", 3);
+        tree.putMergeOnConflict("TOAST", 1);
+        tree.putMergeOnConflict("TOOST", 2);
+        tree.putMergeOnConflict("TE", 2);
+
+        tree.removeByValues(new TIntHashSet(new int[]{2, 3}));
+
+        String expected = "○\n" +
+                "└── ○ T\n" +
+                "    ├── ○ EST {1}\n" +
+                "    └── ○ OAST {1}\n";
+        assertEquals(expected, tree.toString());
+
+        Set<String> keys = tree.getKeys(1);
+        assertEquals(2, keys.size());
+        assertTrue(keys.contains("TEST"));
+        assertTrue(keys.contains("TOAST"));
+
+        tree.removeByValues(new TIntHashSet(new int[]{1}));
+        assertEquals(0, tree.size());
+    }
+
+    @Test
+    public void testRemapValues() {
+        tree.putMergeOnConflict("TEST", 5);
+        tree.putMergeOnConflict("TEST", 7);
+        tree.putMergeOnConflict("TOAST", 9);
+
+        TIntIntMap mapping = new TIntIntHashMap();
+        mapping.put(5, 1);
+        mapping.put(9, 2);
+        tree.remapValues(mapping);
+
+        Set<Integer> values = tree.getValue("TEST", SearchType.EXACT_MATCH);
+        assertEquals(2, values.size());
+        assertTrue(values.contains(1));
+        assertTrue(values.contains(7));
+        assertTrue(tree.getValue("TOAST", SearchType.EXACT_MATCH).contains(2));
+        assertTrue(tree.getKeys(9).isEmpty());
+    }
 }
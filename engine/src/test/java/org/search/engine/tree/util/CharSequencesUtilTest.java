@@ -3,6 +3,8 @@ package org.search.engine.tree.util;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class CharSequencesUtilTest {
 
@@ -26,6 +28,15 @@ public class CharSequencesUtilTest {
         assertEquals("", CharSequencesUtil.subtractPrefix("", "BANANAS"));
     }
 
+    @Test
+    public void testStartsWith() {
+        assertTrue(CharSequencesUtil.startsWith("BANANA", "BAN"));
+        assertTrue(CharSequencesUtil.startsWith("BANANA", "BANANA"));
+        assertTrue(CharSequencesUtil.startsWith("BANANA", ""));
+        assertFalse(CharSequencesUtil.startsWith("BANANA", "BANANAS"));
+        assertFalse(CharSequencesUtil.startsWith("BANANA", "ANA"));
+    }
+
     @Test
     public void testConcatenate() {
         CharSequence first = "APPLE";